@@ -15,14 +15,12 @@
  */
 package de.ddb.labs.zdbdump;
 
-import jakarta.annotation.PreDestroy;
+import de.ddb.labs.zdbdump.cronjobs.DatasetProperties;
 import java.io.IOException;
 import java.net.http.HttpClient;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
-import org.h2.mvstore.MVMap;
-import org.h2.mvstore.MVStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -30,10 +28,13 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.client.JdkClientHttpRequestFactory;
-import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.resilience.annotation.EnableResilientMethods;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestClient;
@@ -41,8 +42,9 @@ import org.springframework.web.client.RestClient;
 @SpringBootApplication
 @EnableScheduling
 @ConditionalOnProperty(name = "scheduler.enabled", matchIfMissing = true)
-@EnableRetry
+@EnableResilientMethods
 @EnableAsync
+@EnableConfigurationProperties(DatasetProperties.class)
 public class Application {
 
     private static final Logger log = LoggerFactory.getLogger(Application.class);
@@ -53,13 +55,6 @@ public class Application {
     @Value("${zdbdump.path.output}")
     private String outputPath;
 
-    @Value("${zdbdump.database}")
-    private String databaseName;
-
-    private MVStore mvStore; // Key-Value-Store
-
-    private MVMap<String, String> mvStoreZdbData;
-
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
     }
@@ -70,41 +65,11 @@ public class Application {
         Files.createDirectories(Path.of(outputPath));
     }
 
-    @PreDestroy
-    private void destroy() {
-        log.info("Destroy callback triggered: Closing database ...");
-        try {
-            if (mvStore != null) {
-                mvStore.close();
-            }
-        } catch (Exception e) {
-            log.error("Could not close connection to database. {}", e.getMessage());
-        }
-    }
-
-    private void initMvStore() {
-        if (mvStore == null) {
-            try {
-                final Path tempDirectory = Path.of(tempPath);
-                Files.createDirectories(tempDirectory);
-                mvStore = new MVStore.Builder()
-                        .fileName(tempDirectory.resolve(databaseName).toString())
-                        .compress()
-                        // .compressHigh()
-                        .open();
-            } catch (IOException e) {
-                throw new IllegalStateException("Could not initialize temp directory for MVStore", e);
-            }
-        }
-    }
-
     @Bean
-    protected MVMap<String, String> mvStoreZdbData() {
-        if (mvStoreZdbData == null) {
-            initMvStore();
-            mvStoreZdbData = mvStore.openMap("zdbdump");
-        }
-        return mvStoreZdbData;
+    protected TaskExecutor dumpJobExecutor() {
+        final SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("zdbdump-job-");
+        executor.setVirtualThreads(true);
+        return executor;
     }
 
     @Bean
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.controller;
+
+import de.ddb.labs.zdbdump.cronjobs.ZdbDumpCreationCronJob;
+import de.ddb.labs.zdbdump.store.TripleIndex;
+import java.nio.charset.StandardCharsets;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Triple Pattern Fragments (Linked Data Fragments) over the stored records,
+ * e.g.
+ * {@code GET /fragments/zdb?predicate=http://purl.org/ontology/bibo/issn&object="0028-0836"}.
+ * Terms use the explicit representation of the TPF specification: IRIs as
+ * they are, literals quoted with an optional {@code @lang} or
+ * {@code ^^datatype}, anything else or nothing matches every term.
+ */
+@RestController
+class FragmentsController {
+
+    private static final int PAGE_SIZE = 100;
+    private static final MediaType TEXT_TURTLE_UTF8 = new MediaType("text", "turtle", StandardCharsets.UTF_8);
+
+    @Value("${zdbdump.baseurl}")
+    private String baseurl;
+
+    @Autowired
+    private ZdbDumpCreationCronJob downloadDump;
+
+    @RequestMapping(method = RequestMethod.GET, value = "/fragments/{dataset}")
+    public ResponseEntity<String> fragment(
+            @PathVariable String dataset,
+            @RequestParam(value = "subject", required = false) String subject,
+            @RequestParam(value = "predicate", required = false) String predicate,
+            @RequestParam(value = "object", required = false) String object,
+            @RequestParam(value = "page", defaultValue = "1") long page) {
+        if (!downloadDump.hasDataset(dataset)) {
+            return ResponseEntity.notFound().build();
+        }
+        if (page < 1L) {
+            return ResponseEntity.badRequest().build();
+        }
+        final String s = term(subject);
+        final String p = term(predicate);
+        final String o = term(object);
+        if (s != null && s.startsWith("\"") || p != null && !p.startsWith("<")) {
+            return ResponseEntity.badRequest().build();
+        }
+        final TripleIndex.Fragment fragment = downloadDump.matchTriples(
+                dataset, s, p, o, (page - 1L) * PAGE_SIZE, PAGE_SIZE);
+        if (fragment == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        final String datasetUrl = UriComponentsBuilder.fromUriString(baseurl)
+                .path("/fragments/{dataset}").buildAndExpand(dataset).encode().toUriString();
+        final String fragmentUrl = url(datasetUrl, subject, predicate, object, null);
+        final StringBuilder out = new StringBuilder();
+        out.append("@prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> .\n")
+                .append("@prefix hydra: <http://www.w3.org/ns/hydra/core#> .\n")
+                .append("@prefix void: <http://rdfs.org/ns/void#> .\n\n");
+        out.append('<').append(datasetUrl).append("#dataset> a void:Dataset, hydra:Collection ;\n")
+                .append("    void:subset <").append(fragmentUrl).append("> ;\n")
+                .append("    hydra:search [\n")
+                .append("        hydra:template \"").append(datasetUrl).append("{?subject,predicate,object}\" ;\n")
+                .append("        hydra:variableRepresentation hydra:ExplicitRepresentation ;\n")
+                .append("        hydra:mapping [ hydra:variable \"subject\" ; hydra:property rdf:subject ],\n")
+                .append("            [ hydra:variable \"predicate\" ; hydra:property rdf:predicate ],\n")
+                .append("            [ hydra:variable \"object\" ; hydra:property rdf:object ]\n")
+                .append("    ] .\n\n");
+        out.append('<').append(url(datasetUrl, subject, predicate, object, page)).append(">\n")
+                .append("    a hydra:PartialCollectionView ;\n")
+                .append("    void:subset <").append(fragmentUrl).append("> ;\n")
+                .append("    hydra:first <").append(url(datasetUrl, subject, predicate, object, 1L)).append("> ;\n");
+        if (page > 1L) {
+            out.append("    hydra:previous <").append(url(datasetUrl, subject, predicate, object, page - 1L))
+                    .append("> ;\n");
+        }
+        if (page * PAGE_SIZE < fragment.count()) {
+            out.append("    hydra:next <").append(url(datasetUrl, subject, predicate, object, page + 1L))
+                    .append("> ;\n");
+        }
+        out.append("    hydra:itemsPerPage ").append(PAGE_SIZE).append(" .\n\n");
+        out.append('<').append(fragmentUrl).append(">\n")
+                .append("    void:triples ").append(fragment.count()).append(" ;\n")
+                .append("    hydra:totalItems ").append(fragment.count()).append(" .\n\n");
+        for (final TripleIndex.Triple triple : fragment.triples()) {
+            out.append(triple).append('\n');
+        }
+        return ResponseEntity.ok().contentType(TEXT_TURTLE_UTF8).body(out.toString());
+    }
+
+    private static String url(String datasetUrl, String subject, String predicate, String object, Long page) {
+        final UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(datasetUrl);
+        if (term(subject) != null) {
+            builder.queryParam("subject", subject);
+        }
+        if (term(predicate) != null) {
+            builder.queryParam("predicate", predicate);
+        }
+        if (term(object) != null) {
+            builder.queryParam("object", object);
+        }
+        if (page != null) {
+            builder.queryParam("page", page);
+        }
+        // Query values are not URI templates, encode everything outside the allowed characters
+        return builder.build().encode().toUriString();
+    }
+
+    /**
+     * @return the term in N-Triples syntax or null if it matches any term
+     */
+    private static String term(String value) {
+        if (value == null || value.isEmpty() || value.startsWith("?")) {
+            return null;
+        }
+        if (value.startsWith("_:")) {
+            return value;
+        }
+        if (!value.startsWith("\"")) {
+            return TripleIndex.iri(value);
+        }
+        final int end = value.lastIndexOf('"');
+        if (end == 0) {
+            return TripleIndex.literal(value.substring(1), null, null);
+        }
+        final String lexical = value.substring(1, end);
+        final String suffix = value.substring(end + 1);
+        if (suffix.startsWith("@")) {
+            return TripleIndex.literal(lexical, suffix.substring(1), null);
+        }
+        if (suffix.startsWith("^^")) {
+            final String datatype = suffix.substring(2);
+            return TripleIndex.literal(lexical, null, datatype.startsWith("<") && datatype.endsWith(">")
+                    ? datatype.substring(1, datatype.length() - 1)
+                    : datatype);
+        }
+        return TripleIndex.literal(lexical, null, null);
+    }
+}
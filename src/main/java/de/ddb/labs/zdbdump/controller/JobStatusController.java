@@ -0,0 +1,93 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.controller;
+
+import de.ddb.labs.zdbdump.cronjobs.JobStatus;
+import de.ddb.labs.zdbdump.cronjobs.RunHistory;
+import de.ddb.labs.zdbdump.cronjobs.ZdbDumpCreationCronJob;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+class JobStatusController {
+
+    private static final long STREAM_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+    private static final int MAX_RUNS = 1000;
+
+    @Autowired
+    private ZdbDumpCreationCronJob downloadDump;
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    @RequestMapping(method = RequestMethod.GET, value = "/status", produces = "application/json")
+    @ResponseBody
+    public Map<String, JobStatus.Snapshot> getStatus() {
+        return downloadDump.getStatus();
+    }
+
+    /**
+     * Statistics of the last runs per dataset, newest first, e.g.
+     * {@code GET /runs?limit=5}. Runs slower than the rolling baseline list
+     * the phases concerned as regressions.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/runs", produces = "application/json")
+    public ResponseEntity<Map<String, List<RunHistory.Run>>> getRuns(
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        if (limit < 1 || limit > MAX_RUNS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(downloadDump.getRuns(limit));
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStatus() throws IOException {
+        final SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitter.send(SseEmitter.event().name("status").data(getStatus(), MediaType.APPLICATION_JSON));
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    @Scheduled(fixedRateString = "${zdbdump.status.stream-interval}")
+    void broadcastStatus() {
+        if (emitters.isEmpty()) {
+            return;
+        }
+        final Map<String, JobStatus.Snapshot> snapshot = getStatus();
+        for (final SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(snapshot, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.controller;
+
+import de.ddb.labs.zdbdump.cronjobs.ZdbDumpCreationCronJob;
+import de.ddb.labs.zdbdump.store.TitleIndex;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+class LookupController {
+
+    private static final int LOOKUP_LIMIT = 1000;
+    private static final int MAX_PAGE_SIZE = 100;
+    // Skipped hits are still read, so deep pages are not served
+    private static final long MAX_SEARCH_OFFSET = 10_000L;
+
+    @Autowired
+    private ZdbDumpCreationCronJob downloadDump;
+
+    /**
+     * Answers e.g. {@code GET /lookup?issn=0028-0836} from the secondary
+     * indexes of a dataset, {@code zdb} unless given with {@code dataset}.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/lookup", produces = "application/json")
+    public ResponseEntity<Map<String, Object>> lookup(
+            @RequestParam(value = "dataset", defaultValue = "zdb") String dataset,
+            @RequestParam Map<String, String> params) {
+        if (!downloadDump.hasDataset(dataset)) {
+            return ResponseEntity.notFound().build();
+        }
+        final Map<String, String> query = new LinkedHashMap<>(params);
+        query.remove("dataset");
+        if (query.size() != 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        final Map.Entry<String, String> term = query.entrySet().iterator().next();
+        final List<String> ids = downloadDump.lookup(dataset, term.getKey(), term.getValue(), LOOKUP_LIMIT);
+        if (ids == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("dataset", dataset);
+        result.put("index", term.getKey());
+        result.put("value", term.getValue());
+        result.put("ids", ids);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Type-ahead search over the titles of a dataset, e.g.
+     * {@code GET /search?q=zeitschrift%20fur&page=0&size=20}. Titles starting
+     * with the query by default, containing it with {@code mode=contains}.
+     * {@code truncated} tells that the search gave up before it filled the
+     * page, as the query matched too many candidates; a longer query helps.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/search", produces = "application/json")
+    public ResponseEntity<Map<String, Object>> search(
+            @RequestParam(value = "dataset", defaultValue = "zdb") String dataset,
+            @RequestParam("q") String query,
+            @RequestParam(value = "mode", defaultValue = "prefix") String mode,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        if (!downloadDump.hasDataset(dataset)) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!mode.equals("prefix") && !mode.equals("contains") || page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        final long offset = (long) page * size;
+        if (offset > MAX_SEARCH_OFFSET) {
+            return ResponseEntity.badRequest().build();
+        }
+        // One more to tell whether there is a next page
+        final TitleIndex.Result found = downloadDump.searchTitles(
+                dataset, query, mode.equals("contains"), (int) offset, size + 1);
+        if (found == null) {
+            return ResponseEntity.notFound().build();
+        }
+        final List<TitleIndex.Hit> hits = found.hits();
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("dataset", dataset);
+        result.put("q", query);
+        result.put("mode", mode);
+        result.put("page", page);
+        result.put("size", size);
+        result.put("more", hits.size() > size);
+        result.put("truncated", found.truncated());
+        result.put("hits", hits.subList(0, Math.min(size, hits.size())));
+        return ResponseEntity.ok(result);
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.controller;
+
+import de.ddb.labs.zdbdump.cronjobs.ZdbDumpCreationCronJob;
+import de.ddb.labs.zdbdump.store.DatestampIndex;
+import de.ddb.labs.zdbdump.store.RecordStore;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * OAI-PMH 2.0 provider over the stored records, e.g.
+ * {@code GET /oai?verb=ListRecords&metadataPrefix=RDFxml&from=2026-01-01}.
+ * Every dataset is a set; datestamps are the times the records last changed
+ * or were removed here, deleted records are kept. Pages are written straight
+ * from the store while streaming.
+ */
+@RestController
+class OaiController {
+
+    private static final int PAGE_SIZE = 200;
+    private static final String IDENTIFIER_PREFIX = "oai:zdbdump:";
+    private static final String GRANULARITY = "YYYY-MM-DDThh:mm:ssZ";
+    private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final Pattern DAY = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+    private static final Pattern SECOND = Pattern.compile("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z");
+    private static final MediaType TEXT_XML_UTF8 = new MediaType("text", "xml", StandardCharsets.UTF_8);
+
+    private static final Map<String, Set<String>> ARGUMENTS = Map.of(
+            "Identify", Set.of(),
+            "ListMetadataFormats", Set.of("identifier"),
+            "ListSets", Set.of("resumptionToken"),
+            "GetRecord", Set.of("identifier", "metadataPrefix"),
+            "ListIdentifiers", Set.of("metadataPrefix", "from", "until", "set", "resumptionToken"),
+            "ListRecords", Set.of("metadataPrefix", "from", "until", "set", "resumptionToken"));
+
+    @Value("${zdbdump.baseurl}")
+    private String baseurl;
+
+    @Value("${zdbdump.oai.admin-email}")
+    private String adminEmail;
+
+    @Autowired
+    private ZdbDumpCreationCronJob downloadDump;
+
+    /**
+     * A list request: the datasets still to go, the first of them continued
+     * after the key of the last record sent.
+     */
+    private record ListState(String metadataPrefix, String from, String until, String set,
+            String dataset, String after, long cursor) {
+
+        String token() {
+            final String value = String.join("\n", metadataPrefix, nullToEmpty(from), nullToEmpty(until),
+                    nullToEmpty(set), dataset, nullToEmpty(after), Long.toString(cursor));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static ListState parse(String token) {
+            try {
+                final String[] f = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                        .split("\n", -1);
+                if (f.length != 7) {
+                    return null;
+                }
+                return new ListState(f[0], emptyToNull(f[1]), emptyToNull(f[2]), emptyToNull(f[3]),
+                        f[4], emptyToNull(f[5]), Long.parseLong(f[6]));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private record Entry(String dataset, DatestampIndex.Stamp stamp) {
+    }
+
+    @RequestMapping(method = {RequestMethod.GET, RequestMethod.POST}, value = "/oai")
+    public ResponseEntity<StreamingResponseBody> oai(@RequestParam Map<String, String> params) {
+        final String verb = params.get("verb");
+        final Set<String> allowed = verb != null ? ARGUMENTS.get(verb) : null;
+        if (allowed == null) {
+            return error(null, "badVerb", "Illegal or missing verb");
+        }
+        for (final String name : params.keySet()) {
+            if (!name.equals("verb") && !allowed.contains(name)) {
+                return error(null, "badArgument", "Illegal argument " + name);
+            }
+        }
+        if (params.containsKey("resumptionToken") && params.size() != 2) {
+            return error(null, "badArgument", "resumptionToken is an exclusive argument");
+        }
+        return switch (verb) {
+            case "Identify" -> identify(params);
+            case "ListMetadataFormats" -> listMetadataFormats(params);
+            case "ListSets" -> listSets(params);
+            case "GetRecord" -> getRecord(params);
+            default -> list(params, verb.equals("ListRecords"));
+        };
+    }
+
+    private ResponseEntity<StreamingResponseBody> identify(Map<String, String> params) {
+        String earliest = null;
+        for (final String dataset : downloadDump.oaiDatasets()) {
+            final String first = downloadDump.oaiDatestamps(dataset).earliest();
+            if (first != null && (earliest == null || first.compareTo(earliest) < 0)) {
+                earliest = first;
+            }
+        }
+        final String earliestDatestamp = earliest != null
+                ? earliest
+                : DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        return respond(params, out -> {
+            out.write("<Identify><repositoryName>zdbdump</repositoryName><baseURL>");
+            out.write(escape(baseURL()));
+            out.write("</baseURL><protocolVersion>2.0</protocolVersion><adminEmail>");
+            out.write(escape(adminEmail));
+            out.write("</adminEmail><earliestDatestamp>");
+            out.write(earliestDatestamp);
+            out.write("</earliestDatestamp><deletedRecord>persistent</deletedRecord><granularity>");
+            out.write(GRANULARITY);
+            out.write("</granularity></Identify>\n");
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> listMetadataFormats(Map<String, String> params) {
+        final Set<String> prefixes = new LinkedHashSet<>();
+        final String identifier = params.get("identifier");
+        if (identifier != null) {
+            final String[] parsed = parseIdentifier(identifier);
+            if (parsed == null || downloadDump.oaiDatestamps(parsed[0]).stamp(parsed[1]) == null) {
+                return error(params, "idDoesNotExist", "No record " + identifier);
+            }
+            prefixes.add(downloadDump.metadataPrefix(parsed[0]));
+        } else {
+            downloadDump.oaiDatasets().forEach(dataset -> prefixes.add(downloadDump.metadataPrefix(dataset)));
+        }
+        if (prefixes.isEmpty()) {
+            return error(params, "noMetadataFormats", "No records offered");
+        }
+        return respond(params, out -> {
+            out.write("<ListMetadataFormats>");
+            for (final String prefix : prefixes) {
+                out.write("<metadataFormat><metadataPrefix>");
+                out.write(escape(prefix));
+                out.write("</metadataPrefix><schema>http://www.openarchives.org/OAI/2.0/rdf.xsd</schema>"
+                        + "<metadataNamespace>" + RDF_NS + "</metadataNamespace></metadataFormat>");
+            }
+            out.write("</ListMetadataFormats>\n");
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> listSets(Map<String, String> params) {
+        if (params.containsKey("resumptionToken")) {
+            return error(params, "badResumptionToken", "ListSets is never resumed");
+        }
+        final List<String> datasets = downloadDump.oaiDatasets();
+        return respond(params, out -> {
+            out.write("<ListSets>");
+            for (final String dataset : datasets) {
+                out.write("<set><setSpec>");
+                out.write(escape(dataset));
+                out.write("</setSpec><setName>");
+                out.write(escape(dataset));
+                out.write("</setName></set>");
+            }
+            out.write("</ListSets>\n");
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> getRecord(Map<String, String> params) {
+        final String identifier = params.get("identifier");
+        final String metadataPrefix = params.get("metadataPrefix");
+        if (identifier == null || metadataPrefix == null) {
+            return error(params, "badArgument", "identifier and metadataPrefix are required");
+        }
+        final String[] parsed = parseIdentifier(identifier);
+        if (parsed == null) {
+            return error(params, "idDoesNotExist", "No record " + identifier);
+        }
+        final String dataset = parsed[0];
+        final DatestampIndex.Stamp stamp = downloadDump.oaiDatestamps(dataset).stamp(parsed[1]);
+        final String record = stamp != null && !stamp.deleted() ? downloadDump.oaiRecords(dataset).get(parsed[1]) : null;
+        if (record == null && (stamp == null || !stamp.deleted())) {
+            return error(params, "idDoesNotExist", "No record " + identifier);
+        }
+        if (!metadataPrefix.equals(downloadDump.metadataPrefix(dataset))) {
+            return error(params, "cannotDisseminateFormat", "No " + metadataPrefix + " for " + identifier);
+        }
+        return respond(params, out -> {
+            out.write("<GetRecord>");
+            writeRecord(out, dataset, stamp, record);
+            out.write("</GetRecord>\n");
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> list(Map<String, String> params, boolean withRecords) {
+        final ListState state;
+        if (params.containsKey("resumptionToken")) {
+            state = ListState.parse(params.get("resumptionToken"));
+            if (state == null || downloadDump.oaiDatestamps(state.dataset()) == null) {
+                return error(params, "badResumptionToken", "Illegal or expired resumptionToken");
+            }
+        } else {
+            final String metadataPrefix = params.get("metadataPrefix");
+            if (metadataPrefix == null) {
+                return error(params, "badArgument", "metadataPrefix is required");
+            }
+            final String from = params.get("from");
+            final String until = params.get("until");
+            if (from != null && !isDate(from) || until != null && !isDate(until)
+                    || from != null && until != null && from.length() != until.length()) {
+                return error(params, "badArgument", "from and until must be dates of the same granularity "
+                        + GRANULARITY);
+            }
+            final String lower = from != null && from.length() == 10 ? from + "T00:00:00Z" : from;
+            final String upper = until != null && until.length() == 10 ? until + "T23:59:59Z" : until;
+            if (lower != null && upper != null && lower.compareTo(upper) > 0) {
+                return error(params, "badArgument", "from is after until");
+            }
+            final String set = params.get("set");
+            final List<String> datasets = datasets(metadataPrefix, set);
+            if (datasets.isEmpty()) {
+                return set != null && !downloadDump.oaiDatasets().contains(set)
+                        ? error(params, "noRecordsMatch", "No set " + set)
+                        : error(params, "cannotDisseminateFormat", "No records in " + metadataPrefix);
+            }
+            state = new ListState(metadataPrefix, lower, upper, set, datasets.get(0), null, 0L);
+        }
+
+        // Collect the datestamps of one page and one more to know whether to
+        // resume, the records are read while streaming. Records gone from the
+        // store without being marked deleted are skipped, the page is filled
+        // up from the following datestamps and datasets.
+        final List<String> datasets = datasets(state.metadataPrefix(), state.set());
+        final List<Entry> page = new ArrayList<>();
+        final int first = Math.max(0, datasets.indexOf(state.dataset()));
+        for (int i = first; i < datasets.size() && page.size() <= PAGE_SIZE; i++) {
+            final String dataset = datasets.get(i);
+            final DatestampIndex datestamps = downloadDump.oaiDatestamps(dataset);
+            final RecordStore store = downloadDump.oaiRecords(dataset);
+            String after = dataset.equals(state.dataset()) ? state.after() : null;
+            List<DatestampIndex.Stamp> stamps;
+            int room;
+            do {
+                room = PAGE_SIZE + 1 - page.size();
+                stamps = datestamps.list(state.from(), state.until(), after, room);
+                for (final DatestampIndex.Stamp stamp : stamps) {
+                    if (stamp.deleted() || store.containsKey(stamp.id())) {
+                        page.add(new Entry(dataset, stamp));
+                    }
+                    after = stamp.key();
+                }
+            } while (stamps.size() == room && page.size() <= PAGE_SIZE);
+        }
+        ListState next = null;
+        if (page.size() > PAGE_SIZE) {
+            page.remove(PAGE_SIZE);
+            final Entry last = page.get(PAGE_SIZE - 1);
+            next = new ListState(state.metadataPrefix(), state.from(), state.until(), state.set(),
+                    last.dataset(), last.stamp().key(), state.cursor() + PAGE_SIZE);
+        }
+        // A resumed list can come out empty if its remaining records were removed meanwhile
+        if (page.isEmpty()) {
+            return error(params, "noRecordsMatch", "No records match");
+        }
+
+        final String element = withRecords ? "ListRecords" : "ListIdentifiers";
+        final ListState resumption = next;
+        return respond(params, out -> {
+            out.write("<" + element + ">");
+            String dataset = null;
+            RecordStore store = null;
+            for (final Entry entry : page) {
+                if (!entry.dataset().equals(dataset)) {
+                    dataset = entry.dataset();
+                    store = downloadDump.oaiRecords(dataset);
+                }
+                if (!withRecords) {
+                    writeHeader(out, dataset, entry.stamp());
+                } else if (entry.stamp().deleted()) {
+                    writeRecord(out, dataset, entry.stamp(), null);
+                } else {
+                    // Records removed since the page was collected are skipped
+                    final String record = store.get(entry.stamp().id());
+                    if (record != null) {
+                        writeRecord(out, dataset, entry.stamp(), record);
+                    }
+                }
+            }
+            if (resumption != null) {
+                out.write("<resumptionToken cursor=\"" + state.cursor() + "\">" + resumption.token()
+                        + "</resumptionToken>");
+            } else if (state.cursor() > 0L) {
+                out.write("<resumptionToken cursor=\"" + state.cursor() + "\"/>");
+            }
+            out.write("</" + element + ">\n");
+        });
+    }
+
+    /**
+     * @return the datasets offered in a metadata format, limited to a set if
+     *         given
+     */
+    private List<String> datasets(String metadataPrefix, String set) {
+        final List<String> datasets = new ArrayList<>();
+        for (final String dataset : downloadDump.oaiDatasets()) {
+            if ((set == null || set.equals(dataset)) && metadataPrefix.equals(downloadDump.metadataPrefix(dataset))) {
+                datasets.add(dataset);
+            }
+        }
+        return datasets;
+    }
+
+    /**
+     * @return dataset and record ID or null if not an identifier of an
+     *         offered dataset
+     */
+    private String[] parseIdentifier(String identifier) {
+        if (!identifier.startsWith(IDENTIFIER_PREFIX)) {
+            return null;
+        }
+        final int separator = identifier.indexOf(':', IDENTIFIER_PREFIX.length());
+        if (separator < 0) {
+            return null;
+        }
+        final String dataset = identifier.substring(IDENTIFIER_PREFIX.length(), separator);
+        if (!downloadDump.oaiDatasets().contains(dataset)) {
+            return null;
+        }
+        return new String[]{dataset, identifier.substring(separator + 1)};
+    }
+
+    private static boolean isDate(String value) {
+        try {
+            if (DAY.matcher(value).matches()) {
+                LocalDate.parse(value);
+                return true;
+            }
+            if (SECOND.matcher(value).matches()) {
+                Instant.parse(value);
+                return true;
+            }
+        } catch (DateTimeParseException e) {
+            // not a valid date
+        }
+        return false;
+    }
+
+    private static void writeHeader(Writer out, String dataset, DatestampIndex.Stamp stamp) throws IOException {
+        out.write(stamp.deleted() ? "<header status=\"deleted\"><identifier>" : "<header><identifier>");
+        out.write(escape(IDENTIFIER_PREFIX + dataset + ":" + stamp.id()));
+        out.write("</identifier><datestamp>");
+        out.write(stamp.datestamp());
+        out.write("</datestamp><setSpec>");
+        out.write(escape(dataset));
+        out.write("</setSpec></header>");
+    }
+
+    /**
+     * @param record the stored record or null if deleted
+     */
+    private static void writeRecord(Writer out, String dataset, DatestampIndex.Stamp stamp, String record)
+            throws IOException {
+        out.write("<record>");
+        writeHeader(out, dataset, stamp);
+        if (record == null) {
+            out.write("</record>\n");
+            return;
+        }
+        out.write("<metadata><rdf:RDF xmlns:rdf=\"" + RDF_NS + "\">");
+        // Stored records are complete documents, drop their XML declaration
+        int start = 0;
+        if (record.startsWith("<?xml")) {
+            start = record.indexOf("?>") + 2;
+            while (start < record.length() && Character.isWhitespace(record.charAt(start))) {
+                start++;
+            }
+        }
+        out.write(record, start, record.length() - start);
+        out.write("</rdf:RDF></metadata></record>\n");
+    }
+
+    private String baseURL() {
+        return baseurl + "/oai";
+    }
+
+    @FunctionalInterface
+    private interface Body {
+
+        void write(Writer out) throws IOException;
+    }
+
+    /**
+     * Wraps a response in the OAI-PMH envelope. Arguments are echoed in the
+     * request element, unless the request was rejected as a whole.
+     */
+    private ResponseEntity<StreamingResponseBody> respond(Map<String, String> params, Body body) {
+        final String responseDate = DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        final StreamingResponseBody stream = outputStream -> {
+            final Writer out = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\""
+                    + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                    + " xsi:schemaLocation=\"http://www.openarchives.org/OAI/2.0/"
+                    + " http://www.openarchives.org/OAI/2.0/OAI-PMH.xsd\">\n<responseDate>");
+            out.write(responseDate);
+            out.write("</responseDate>\n<request");
+            if (params != null) {
+                for (final Map.Entry<String, String> param : params.entrySet()) {
+                    out.write(" " + param.getKey() + "=\"" + escape(param.getValue()) + "\"");
+                }
+            }
+            out.write(">");
+            out.write(escape(baseURL()));
+            out.write("</request>\n");
+            body.write(out);
+            out.write("</OAI-PMH>\n");
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(TEXT_XML_UTF8).body(stream);
+    }
+
+    /**
+     * OAI-PMH errors are regular responses with an error element.
+     */
+    private ResponseEntity<StreamingResponseBody> error(Map<String, String> params, String code, String message) {
+        return respond(params, out -> out.write("<error code=\"" + code + "\">" + escape(message) + "</error>\n"));
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
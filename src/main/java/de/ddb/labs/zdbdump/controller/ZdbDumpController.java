@@ -15,33 +15,31 @@
  */
 package de.ddb.labs.zdbdump.controller;
 
+import de.ddb.labs.zdbdump.cronjobs.JobStatus;
 import de.ddb.labs.zdbdump.cronjobs.ZdbDumpCreationCronJob;
+import de.ddb.labs.zdbdump.output.OutputFileInfo;
+import de.ddb.labs.zdbdump.output.OutputIndex;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import javax.xml.stream.XMLStreamException;
-import javax.xml.transform.TransformerConfigurationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 @RestController
@@ -56,19 +54,28 @@ class ZdbDumpController {
     @Autowired
     private ZdbDumpCreationCronJob downloadDump;
 
+    @Autowired
+    private OutputIndex outputIndex;
+
     @RequestMapping(method = RequestMethod.GET, value = "/createdump", produces = "application/json")
-    @Async
-    public void createDump(HttpServletRequest request)
-            throws IOException, FileNotFoundException, XMLStreamException, TransformerConfigurationException {
-        downloadDump.run();
+    public ResponseEntity<Map<String, JobStatus.Snapshot>> createDump(
+            @RequestParam(value = "dataset", required = false) String dataset) {
+        if (dataset != null && !downloadDump.hasDataset(dataset)) {
+            return ResponseEntity.notFound().build();
+        }
+        final boolean submitted = dataset != null ? downloadDump.submit(dataset) : downloadDump.submit();
+        if (!submitted) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(downloadDump.getStatus());
+        }
+        return ResponseEntity.accepted().body(downloadDump.getStatus());
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "/", produces = "application/json")
     @ResponseBody
-    public Map<String, String> getFileList(HttpServletRequest request) {
+    public Map<String, Object> getFileList(HttpServletRequest request) throws IOException {
         final String ruri = request.getRequestURI();
         final File dir = new File(outputPath);
-        final Map<String, String> urlList = new HashMap<>();
+        final Map<String, Object> urlList = new LinkedHashMap<>();
 
         if (!dir.isDirectory()) {
             urlList.put("Status", "Error. Data directory '" + outputPath + "' is not correct configured.");
@@ -80,27 +87,15 @@ class ZdbDumpController {
             return urlList;
         }
 
-        final File[] files = dir.listFiles();
-
-        if (files != null) {
-            for (final File file : files) {
-                if (!file.isFile() || !file.canRead() || file.length() == 0L) {
-                    continue;
-                }
-
-                final Instant instant = Instant.ofEpochMilli(file.lastModified());
-                urlList.put(
-                        baseurl + ruri + file.getName(),
-                        ZonedDateTime.ofInstant(instant, ZoneId.systemDefault())
-                                .format(DateTimeFormatter.ISO_DATE_TIME));
-            }
+        for (final OutputFileInfo file : outputIndex.list()) {
+            urlList.put(baseurl + ruri + file.name(), file);
         }
         return urlList;
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "/{filename}")
     @ResponseBody
-    public ResponseEntity<InputStreamResource> getFile(@PathVariable String filename)
+    public ResponseEntity<Resource> getFile(@PathVariable String filename)
             throws FileNotFoundException, IOException {
         final Path basePath = Path.of(outputPath).toAbsolutePath().normalize();
         final Path filePath = basePath.resolve(filename).normalize();
@@ -119,12 +114,12 @@ class ZdbDumpController {
         final MediaType mediaType = (detectedContentType != null && !detectedContentType.isBlank())
                 ? MediaType.parseMediaType(detectedContentType)
                 : MediaType.APPLICATION_OCTET_STREAM;
-        final InputStreamResource resource = new InputStreamResource(new FileInputStream(file));
+        // A file resource lets Spring answer Range requests with 206 Partial Content
+        final Resource resource = new FileSystemResource(file);
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + file.getName())
                 .contentType(mediaType)
-                .contentLength(file.length()) //
                 .lastModified(file.lastModified())
                 .body(resource);
     }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Namespace;
+
+/**
+ * Writes the dump BGZF block compressed together with an index of the
+ * virtual offset and uncompressed length of every record. With the index a
+ * client can fetch a single record or a range of records by HTTP Range
+ * request and inflate only the blocks it got.
+ */
+final class BgzfDumpSink implements DumpSink {
+
+    private final Path file;
+    private final Path indexFile;
+    private final BgzfOutputStream bgzf;
+    private final RdfDumpWriter writer;
+    private final Writer index;
+    private long records = 0L;
+
+    BgzfDumpSink(Path file, Path indexFile, List<Namespace> namespaces) throws IOException, XMLStreamException {
+        this.file = file;
+        this.indexFile = indexFile;
+        this.bgzf = new BgzfOutputStream(new ChecksummedFileOutputStream(file), Deflater.DEFAULT_COMPRESSION);
+        this.index = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new ChecksummedFileOutputStream(indexFile), 1 << 16),
+                StandardCharsets.UTF_8));
+        this.index.write("# id\tvirtual_offset\tlength\n");
+        RdfDumpWriter w = null;
+        try {
+            w = new RdfDumpWriter(bgzf, namespaces);
+            w.flush();
+        } catch (IOException | XMLStreamException e) {
+            index.close();
+            if (w == null) {
+                bgzf.close();
+            }
+            throw e;
+        }
+        this.writer = w;
+    }
+
+    @Override
+    public String name() {
+        return "bgzf";
+    }
+
+    @Override
+    public void write(String id, String record) throws IOException, XMLStreamException {
+        // The serialized record is a good estimate of its size in the dump
+        bgzf.align(record.length());
+        final long offset = bgzf.virtualOffset();
+        final long start = bgzf.position();
+        writer.write(record);
+        writer.flush();
+        index.append(id).append('\t')
+                .append(Long.toString(offset)).append('\t')
+                .append(Long.toString(bgzf.position() - start)).append('\n');
+        records++;
+    }
+
+    @Override
+    public List<Path> files() {
+        return List.of(file, indexFile);
+    }
+
+    @Override
+    public long records() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            index.close();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a BGZF file: a series of gzip members of at most 64 KiB each, with
+ * the compressed size of the member in a {@code BC} extra field, followed by
+ * the empty end-of-file member. The result is a regular multi-member gzip
+ * file for gunzip, but every member can be inflated on its own, so a record
+ * can be read from its virtual offset
+ * {@code (compressed member offset << 16) | offset in member}.
+ */
+final class BgzfOutputStream extends OutputStream {
+
+    static final int MAX_BLOCK_DATA = 0xff00;
+
+    private static final int HEADER_SIZE = 18;
+    private static final int FOOTER_SIZE = 8;
+    private static final int MAX_BLOCK_SIZE = 0x10000;
+    private static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0, 0, 0, 0, 0, (byte) 0xff, 0x06, 0, 0x42, 0x43, 0x02, 0, 0x1b, 0,
+            0x03, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+    private final OutputStream out;
+    private final byte[] data = new byte[MAX_BLOCK_DATA];
+    private final byte[] block = new byte[MAX_BLOCK_SIZE];
+    private final Deflater deflater;
+    private final Deflater storer = new Deflater(Deflater.NO_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private int fill = 0;
+    private long blockAddress = 0L;
+    private long position = 0L;
+    private boolean closed = false;
+
+    BgzfOutputStream(OutputStream out, int level) {
+        this.out = new BufferedOutputStream(out, 1 << 16);
+        this.deflater = new Deflater(level, true);
+    }
+
+    /**
+     * @return virtual offset of the next byte written
+     */
+    long virtualOffset() {
+        return (blockAddress << 16) | fill;
+    }
+
+    /**
+     * @return number of uncompressed bytes written so far
+     */
+    long position() {
+        return position;
+    }
+
+    /**
+     * Starts a new block unless the given number of bytes still fits into the
+     * current one, so that small records do not span two blocks.
+     */
+    void align(int length) throws IOException {
+        if (fill > 0 && fill + length > MAX_BLOCK_DATA) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (fill == MAX_BLOCK_DATA) {
+            writeBlock();
+        }
+        data[fill++] = (byte) b;
+        position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (fill == MAX_BLOCK_DATA) {
+                writeBlock();
+            }
+            final int n = Math.min(len, MAX_BLOCK_DATA - fill);
+            System.arraycopy(b, off, data, fill, n);
+            fill += n;
+            off += n;
+            len -= n;
+            position += n;
+        }
+    }
+
+    /**
+     * Does not end the current block, blocks are only written when full,
+     * aligned or on close.
+     */
+    @Override
+    public void flush() {
+    }
+
+    private void writeBlock() throws IOException {
+        int compressed = deflate(deflater);
+        if (compressed < 0) {
+            // Incompressible data, stored blocks always fit
+            compressed = deflate(storer);
+        }
+        final int blockSize = HEADER_SIZE + compressed + FOOTER_SIZE;
+        crc.reset();
+        crc.update(data, 0, fill);
+
+        writeHeader(blockSize);
+        out.write(block, 0, compressed);
+        writeIntLE((int) crc.getValue());
+        writeIntLE(fill);
+
+        blockAddress += blockSize;
+        fill = 0;
+    }
+
+    /**
+     * @return compressed size or -1 if the block does not fit
+     */
+    private int deflate(Deflater d) {
+        d.reset();
+        d.setInput(data, 0, fill);
+        d.finish();
+        final int max = MAX_BLOCK_SIZE - HEADER_SIZE - FOOTER_SIZE;
+        final int n = d.deflate(block, 0, max);
+        return d.finished() ? n : -1;
+    }
+
+    private void writeHeader(int blockSize) throws IOException {
+        out.write(0x1f);
+        out.write(0x8b);
+        out.write(0x08); // deflate
+        out.write(0x04); // FEXTRA
+        writeIntLE(0); // mtime
+        out.write(0); // xfl
+        out.write(0xff); // OS unknown
+        writeShortLE(6); // XLEN
+        out.write('B');
+        out.write('C');
+        writeShortLE(2);
+        writeShortLE(blockSize - 1);
+    }
+
+    private void writeShortLE(int v) throws IOException {
+        out.write(v & 0xff);
+        out.write((v >>> 8) & 0xff);
+    }
+
+    private void writeIntLE(int v) throws IOException {
+        writeShortLE(v & 0xffff);
+        writeShortLE((v >>> 16) & 0xffff);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (fill > 0) {
+                writeBlock();
+            }
+            out.write(EOF_BLOCK);
+        } finally {
+            deflater.end();
+            storer.end();
+            out.close();
+        }
+    }
+}
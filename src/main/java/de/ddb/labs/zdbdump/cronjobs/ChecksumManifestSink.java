@@ -0,0 +1,82 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the SHA-256 digest of every serialized record in
+ * {@code sha256sum} format ({@code <digest>  <id>}), gzip compressed. Two
+ * manifests can be diffed to find changed records without comparing dumps.
+ */
+final class ChecksumManifestSink implements DumpSink {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path file;
+    private final Writer writer;
+    private long records = 0L;
+    private final MessageDigest digest;
+
+    ChecksumManifestSink(Path file) throws IOException {
+        this.file = file;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new ChecksummedFileOutputStream(file), 1 << 16),
+                StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String name() {
+        return "checksums";
+    }
+
+    @Override
+    public void write(String id, String record) throws IOException {
+        final byte[] hash = digest.digest(record.getBytes(StandardCharsets.UTF_8));
+        writer.append(HEX.formatHex(hash)).append("  ").append(id).append('\n');
+        records++;
+    }
+
+    @Override
+    public List<Path> files() {
+        return List.of(file);
+    }
+
+    @Override
+    public long records() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * File output stream which computes the SHA-256 digest of the bytes written
+ * and stores it as {@code <file>.sha256} in {@code sha256sum} format on
+ * close, so the digest of a published file comes for free with writing it.
+ */
+final class ChecksummedFileOutputStream extends FilterOutputStream {
+
+    private final Path file;
+    private final MessageDigest digest;
+    private boolean closed = false;
+
+    ChecksummedFileOutputStream(Path file) throws IOException {
+        super(Files.newOutputStream(file));
+        this.file = file;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + ".sha256");
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        digest.update((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        digest.update(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        super.close();
+        Files.writeString(
+                sidecar(file),
+                HexFormat.of().formatHex(digest.digest()) + "  " + file.getFileName() + "\n",
+                StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import de.ddb.labs.zdbdump.monitoring.MemorySample;
+import de.ddb.labs.zdbdump.monitoring.PipelinePhaseEvent;
+import de.ddb.labs.zdbdump.store.DatestampIndex;
+import de.ddb.labs.zdbdump.store.IndexedRecordStore;
+import de.ddb.labs.zdbdump.store.PropertyIndex;
+import de.ddb.labs.zdbdump.store.RecordIndex;
+import de.ddb.labs.zdbdump.store.RecordStore;
+import de.ddb.labs.zdbdump.store.StatisticsIndex;
+import de.ddb.labs.zdbdump.store.StoreManager;
+import de.ddb.labs.zdbdump.store.TitleIndex;
+import de.ddb.labs.zdbdump.store.TripleIndex;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.xml.stream.XMLInputFactory;
+
+/**
+ * State of the dump job for one dataset. A dataset is processed by at most
+ * one thread at a time, so apart from the status and the running flag
+ * nothing here needs to be thread-safe.
+ */
+final class DatasetJob {
+
+    final String name;
+    final DatasetProperties.Dataset dataset;
+    final String storeName;
+    final XMLInputFactory xif;
+    final XmlRecoveryDiagnostics xmlDiagnostics;
+    final RecordBuffer recordBuffer;
+    // The merge engine keeps no complete store, so it offers no OAI-PMH
+    final boolean oai;
+    final JobStatus status = new JobStatus();
+    final AtomicBoolean running = new AtomicBoolean(false);
+
+    int dumpReadCount = 0;
+    int harvestUpdateCount = 0;
+    int harvestDeleteCount = 0;
+    int harvestPageCount = 0;
+    int harvestCachedPageCount = 0;
+    int outputWriteCount = 0;
+    int harvestRetryCount = 0;
+    long xmlRecoveriesAtStart = 0L;
+    Instant runStartedAt;
+    // Phases of the current run, added when they end
+    final List<RunHistory.Phase> phases = new ArrayList<>();
+
+    // Opened with the first run, see openStores()
+    RecordStore store;
+    RecordStore overlay;
+    PropertyIndex index;
+    TitleIndex titles; // null unless enabled
+    DatestampIndex datestamps; // null unless offered via OAI-PMH
+    TripleIndex triples; // null unless enabled
+    StatisticsIndex statistics; // null unless enabled
+    final List<RecordIndex> indexes = new ArrayList<>();
+    HarvestCheckpoint storeCheckpoint;
+    HarvestCheckpoint overlayCheckpoint;
+
+    private PipelinePhaseEvent phaseEvent;
+    private MemorySample phaseStart;
+
+    DatasetJob(String name, DatasetProperties.Dataset dataset, String storeName, XMLInputFactory xif,
+            XmlRecoveryDiagnostics xmlDiagnostics, RecordBuffer recordBuffer, boolean oai) {
+        this.name = name;
+        this.dataset = dataset;
+        this.storeName = storeName;
+        this.xif = xif;
+        this.xmlDiagnostics = xmlDiagnostics;
+        this.recordBuffer = recordBuffer;
+        this.oai = oai;
+    }
+
+    /**
+     * Opens the record stores and checkpoints of the dataset unless already
+     * done. They are not needed to serve files, so the MVStore file is only
+     * touched once a job runs or the index is queried.
+     */
+    synchronized void openStores(StoreManager storeManager) {
+        if (store != null) {
+            return;
+        }
+        index = new PropertyIndex(
+                dataset.indexes(),
+                storeManager.openMap(storeName + "_index"),
+                storeManager.openMap(storeName + "_index_records"));
+        if (!index.isEmpty()) {
+            indexes.add(index);
+        }
+        if (dataset.titles() && dataset.titlePattern() != null && !dataset.titlePattern().isBlank()) {
+            titles = new TitleIndex(
+                    dataset.titlePattern(),
+                    storeManager.openMap(storeName + "_titles"),
+                    storeManager.openMap(storeName + "_title_trigrams"),
+                    storeManager.openMap(storeName + "_title_records"));
+            indexes.add(titles);
+        }
+        if (oai) {
+            datestamps = new DatestampIndex(
+                    storeManager.openMap(storeName + "_datestamps"),
+                    storeManager.openMap(storeName + "_datestamp_records"));
+            indexes.add(datestamps);
+        }
+        if (dataset.triples()) {
+            triples = new TripleIndex(
+                    storeManager.openMap(storeName + "_spo"),
+                    storeManager.openMap(storeName + "_pos"),
+                    storeManager.openMap(storeName + "_osp"),
+                    storeManager.openMap(storeName + "_triple_records"));
+            indexes.add(triples);
+        }
+        if (dataset.statistics()) {
+            statistics = new StatisticsIndex(
+                    storeManager.openMap(storeName + "_statistics_keys"),
+                    storeManager.openMap(storeName + "_statistics_counts"),
+                    storeManager.openMap(storeName + "_statistics_records"));
+            indexes.add(statistics);
+        }
+        overlay = storeManager.open(storeName + "_overlay");
+        storeCheckpoint = new HarvestCheckpoint(storeManager.openMap(HarvestCheckpoint.MAP_NAME),
+                storeManager.physicalName(storeName));
+        overlayCheckpoint = new HarvestCheckpoint(storeManager.openMap(HarvestCheckpoint.MAP_NAME),
+                storeManager.physicalName(storeName + "_overlay"));
+        final RecordStore records = storeManager.open(storeName);
+        store = indexes.isEmpty() ? records : new IndexedRecordStore(records, indexes);
+    }
+
+    void updateIndexes(String id, String record) {
+        for (final RecordIndex i : indexes) {
+            i.update(id, record);
+        }
+    }
+
+    void removeFromIndexes(String id) {
+        for (final RecordIndex i : indexes) {
+            i.remove(id);
+        }
+    }
+
+    void commitIndexes() {
+        for (final RecordIndex i : indexes) {
+            i.commit();
+        }
+    }
+
+    HarvestCheckpoint checkpoint(RecordStore target) {
+        return target == overlay ? overlayCheckpoint : storeCheckpoint;
+    }
+
+    /**
+     * Starts the statistics of a new run.
+     */
+    void resetCounters() {
+        runStartedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        xmlRecoveriesAtStart = xmlDiagnostics.recovered();
+        phases.clear();
+        harvestRetryCount = 0;
+        dumpReadCount = 0;
+        harvestUpdateCount = 0;
+        harvestDeleteCount = 0;
+        harvestPageCount = 0;
+        harvestCachedPageCount = 0;
+        outputWriteCount = 0;
+    }
+
+    void enterPhase(JobStatus.Phase phase) {
+        endPhase();
+        status.phase(phase);
+        phaseEvent = new PipelinePhaseEvent();
+        phaseEvent.dataset = name;
+        phaseEvent.phase = phase.name();
+        phaseEvent.begin();
+        phaseStart = MemorySample.now();
+    }
+
+    void endPhase() {
+        if (phaseEvent != null) {
+            final MemorySample used = MemorySample.now().since(phaseStart);
+            phaseEvent.records = status.recordsProcessed();
+            phaseEvent.allocated = used.allocatedBytes();
+            phaseEvent.gcPauseTime = used.gcPauseMillis();
+            phaseEvent.commit();
+            final long millis = used.nanos() / 1_000_000L;
+            phases.add(new RunHistory.Phase(phaseEvent.phase, millis, phaseEvent.records,
+                    Math.round(phaseEvent.records * 10_000d / Math.max(millis, 1L)) / 10d,
+                    used.allocatedBytes(),
+                    used.allocatedBytes() >= 0L
+                            ? Math.round(used.allocatedBytes() * 10_000d / 1_048_576d / Math.max(millis, 1L)) / 10d
+                            : 0d,
+                    used.gcPauses(),
+                    used.gcPauseMillis(),
+                    null));
+            xmlDiagnostics.summarize(phaseEvent.phase);
+            phaseEvent = null;
+        }
+    }
+}
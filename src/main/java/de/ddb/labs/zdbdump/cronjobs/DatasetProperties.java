@@ -0,0 +1,162 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * The DNB datasets kept fresh by the dump job, configured as
+ * {@code zdbdump.datasets.<name>.*}.
+ */
+@ConfigurationProperties("zdbdump")
+public record DatasetProperties(Map<String, Dataset> datasets) {
+
+    public DatasetProperties {
+        datasets = datasets != null ? datasets : new LinkedHashMap<>();
+    }
+
+    /**
+     * @param dumpUrl        URL of the full dump, e.g.
+     *                       {@code https://data.dnb.de/opendata/zdb_lds.rdf.gz}
+     * @param oaiUrl         OAI-PMH endpoint used to harvest updates since the
+     *                       dump was published
+     * @param harvestSet     OAI set, e.g. {@code zdb} or {@code authorities:person}
+     * @param idPrefix       prefix of {@code rdf:about} stripped to get the
+     *                       record ID
+     * @param outputFilename name of the published dump
+     * @param store          name of the record store, defaults to the dataset
+     *                       name
+     * @param subsets        additional dumps of the records matching a pattern,
+     *                       written in the same pass as the full dump
+     * @param idList         also write a list of all record IDs
+     * @param checksums      also write a manifest with a SHA-256 digest per
+     *                       record
+     * @param blockCompressed write the dump BGZF block compressed with an
+     *                       index of record offsets
+     * @param indexes        secondary indexes of the stored records, a
+     *                       regular expression per index name whose first
+     *                       group captures the value, e.g. an ISSN
+     * @param titlePattern   regular expression whose first group captures a
+     *                       title for the type-ahead title index
+     * @param titles         keep the type-ahead title index, needs a title
+     *                       pattern
+     * @param oai            keep datestamps of the stored records and offer
+     *                       them as an OAI-PMH set, ignored with the merge
+     *                       engine
+     * @param triples        keep the RDF triples of the stored records for
+     *                       triple pattern fragments
+     * @param statistics     keep VoID statistics of the stored records and
+     *                       publish them with the dump
+     * @param zsync          write the gzip dumps rsyncable and publish a zsync
+     *                       control file with each
+     */
+    public record Dataset(
+            @DefaultValue("true") boolean enabled,
+            String dumpUrl,
+            @DefaultValue("https://services.dnb.de/oai/repository") String oaiUrl,
+            @DefaultValue("RDFxml") String metadataPrefix,
+            String harvestSet,
+            String idPrefix,
+            String outputFilename,
+            String store,
+            Map<String, Subset> subsets,
+            @DefaultValue("false") boolean idList,
+            @DefaultValue("false") boolean checksums,
+            @DefaultValue("false") boolean blockCompressed,
+            Map<String, String> indexes,
+            String titlePattern,
+            @DefaultValue("false") boolean titles,
+            @DefaultValue("true") boolean oai,
+            @DefaultValue("false") boolean triples,
+            @DefaultValue("false") boolean statistics,
+            @DefaultValue("false") boolean zsync) {
+
+        public Dataset {
+            subsets = subsets != null ? subsets : new LinkedHashMap<>();
+            indexes = indexes != null ? indexes : new LinkedHashMap<>();
+        }
+
+        public String harvestUrl() {
+            final String url = oaiUrl + "?verb=ListRecords&metadataPrefix=" + metadataPrefix;
+            return harvestSet != null && !harvestSet.isBlank() ? url + "&set=" + harvestSet : url;
+        }
+
+        public String resumptionUrl(String resumptionToken) {
+            return oaiUrl + "?verb=ListRecords&resumptionToken=" + resumptionToken;
+        }
+
+        /**
+         * Name of the cached base dump, e.g. {@code zdb_lds_base.rdf.gz} for
+         * {@code zdb_lds.rdf.gz}.
+         */
+        public String baseDumpFilename() {
+            return outputFilename.endsWith(".rdf.gz")
+                    ? outputFilename.substring(0, outputFilename.length() - ".rdf.gz".length()) + "_base.rdf.gz"
+                    : "base_" + outputFilename;
+        }
+
+        public String baseDumpMetadataFilename() {
+            return baseDumpFilename().replaceFirst("(\\.rdf)?\\.gz$", "") + ".metadata";
+        }
+
+        /**
+         * e.g. {@code zdb_lds_ids.txt.gz}
+         */
+        public String idListFilename() {
+            return stem() + "_ids.txt.gz";
+        }
+
+        /**
+         * e.g. {@code zdb_lds_records.sha256.gz}
+         */
+        public String checksumsFilename() {
+            return stem() + "_records.sha256.gz";
+        }
+
+        /**
+         * e.g. {@code zdb_lds_offsets.tsv.gz}
+         */
+        public String offsetIndexFilename() {
+            return stem() + "_offsets.tsv.gz";
+        }
+
+        /**
+         * e.g. {@code zdb_lds_void.jsonld}
+         */
+        public String statisticsFilename() {
+            return stem() + "_void.jsonld";
+        }
+
+        private String stem() {
+            return outputFilename.replaceFirst("(\\.rdf)?\\.gz$", "");
+        }
+
+        public String recordId(String about) {
+            return idPrefix != null && about.startsWith(idPrefix) ? about.substring(idPrefix.length()) : about;
+        }
+    }
+
+    /**
+     * @param pattern        regular expression searched in the RDF/XML of a
+     *                       record, e.g. a predicate with its object
+     * @param outputFilename name of the published subset dump
+     */
+    public record Subset(String pattern, String outputFilename) {
+    }
+}
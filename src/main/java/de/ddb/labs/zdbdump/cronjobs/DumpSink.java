@@ -0,0 +1,42 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * One output product of a dump run, fed record by record by the
+ * {@link FanOutWriter}. Calls happen on a thread owned by the sink, closing
+ * finishes the files.
+ */
+interface DumpSink extends Closeable {
+
+    String name();
+
+    void write(String id, String record) throws Exception;
+
+    /**
+     * @return files written by the sink, published when the run succeeded
+     */
+    List<Path> files();
+
+    /**
+     * @return number of records written to the files
+     */
+    long records();
+}
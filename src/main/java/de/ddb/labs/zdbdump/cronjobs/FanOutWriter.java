@@ -0,0 +1,222 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Feeds the records of one pass over the store or the base dump into several
+ * {@link DumpSink}s. Every sink has its own thread and a bounded queue of
+ * record batches, so the sinks compress and write in parallel and a slow
+ * sink only stalls the producer once its queue is full. Queued batches are
+ * reserved against the {@link MemoryBudget} until every sink has written them.
+ */
+final class FanOutWriter implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FanOutWriter.class);
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final Batch END = new Batch(List.of(), 0L, new AtomicInteger());
+
+    private record Entry(String id, String record) {
+    }
+
+    /**
+     * @param pending lanes that have not written the batch yet
+     */
+    private record Batch(List<Entry> entries, long bytes, AtomicInteger pending) {
+    }
+
+    private final MemoryBudget memoryBudget;
+    private final List<Lane> lanes = new ArrayList<>();
+    private List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+    private long batchBytes = 0L;
+    private boolean closed = false;
+
+    FanOutWriter(String name, List<DumpSink> sinks, MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        for (final DumpSink sink : sinks) {
+            final Lane lane = new Lane(sink, memoryBudget);
+            lane.thread = Thread.ofPlatform()
+                    .name("zdbdump-sink-" + name + "-" + sink.name())
+                    .start(lane);
+            lanes.add(lane);
+        }
+    }
+
+    void write(String id, String record) throws IOException {
+        batch.add(new Entry(id, record));
+        batchBytes += MemoryBudget.sizeOf(id) + MemoryBudget.sizeOf(record);
+        if (batch.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * @return files written by all sinks with the number of records in them
+     */
+    Map<Path, Long> files() {
+        final Map<Path, Long> files = new LinkedHashMap<>();
+        lanes.forEach(lane -> lane.sink.files().forEach(file -> files.put(file, lane.sink.records())));
+        return files;
+    }
+
+    private void flush() throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // All lanes share the same immutable batch
+        final Batch full = new Batch(List.copyOf(batch), batchBytes, new AtomicInteger(lanes.size()));
+        batch = new ArrayList<>(BATCH_SIZE);
+        batchBytes = 0L;
+        memoryBudget.reserve(full.bytes());
+        int given = 0;
+        try {
+            for (final Lane lane : lanes) {
+                if (lane.failure != null) {
+                    throw new IOException("Output " + lane.sink.name() + " failed", lane.failure);
+                }
+                put(lane, full);
+                given++;
+            }
+        } finally {
+            // The remaining lanes will never see the batch
+            for (int i = given; i < lanes.size(); i++) {
+                lanes.get(i).done(full);
+            }
+        }
+    }
+
+    private static void put(Lane lane, Batch entries) throws IOException {
+        try {
+            lane.queue.put(entries);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing to output " + lane.sink.name());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOException failure = null;
+        try {
+            flush();
+        } catch (IOException e) {
+            failure = e;
+        }
+        for (final Lane lane : lanes) {
+            try {
+                put(lane, END);
+                lane.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                lane.thread.interrupt();
+                // Batches the interrupted lane leaves behind
+                Batch left;
+                while ((left = lane.queue.poll()) != null) {
+                    lane.done(left);
+                }
+            }
+            if (lane.failure != null) {
+                final IOException laneFailure = new IOException("Output " + lane.sink.name() + " failed", lane.failure);
+                if (failure == null) {
+                    failure = laneFailure;
+                } else if (failure.getCause() != lane.failure) {
+                    failure.addSuppressed(laneFailure);
+                }
+            } else {
+                log.info("Output {} wrote {} of {} records to {}",
+                        lane.sink.name(), lane.sink.records(), lane.written, lane.sink.files());
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static final class Lane implements Runnable {
+
+        private final DumpSink sink;
+        private final MemoryBudget memoryBudget;
+        private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private Thread thread;
+        private volatile Throwable failure;
+        private long written = 0L;
+
+        private Lane(DumpSink sink, MemoryBudget memoryBudget) {
+            this.sink = sink;
+            this.memoryBudget = memoryBudget;
+        }
+
+        private void done(Batch entries) {
+            if (entries.pending().decrementAndGet() == 0) {
+                memoryBudget.release(entries.bytes());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Batch entries;
+                while ((entries = queue.take()) != END) {
+                    // After a failure keep draining so the producer never blocks
+                    // and every batch is released, also after an Error
+                    if (failure == null) {
+                        try {
+                            for (final Entry entry : entries.entries()) {
+                                sink.write(entry.id(), entry.record());
+                            }
+                            written += entries.entries().size();
+                        } catch (Throwable e) {
+                            failure = e;
+                        }
+                    }
+                    done(entries);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                try {
+                    sink.close();
+                } catch (Throwable e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+    }
+}
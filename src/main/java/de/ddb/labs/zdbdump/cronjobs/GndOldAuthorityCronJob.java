@@ -0,0 +1,141 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import de.ddb.labs.zdbdump.output.OutputIndex;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+/**
+ * Publishes the old GND authority numbers of the GND person dump as BEACON
+ * and JSON redirect files. Disabled unless {@code zdbdump.gnd-oldauth.cron}
+ * is set.
+ */
+@Service
+public class GndOldAuthorityCronJob {
+
+    private static final Logger log = LoggerFactory.getLogger(GndOldAuthorityCronJob.class);
+
+    @Value("${zdbdump.path.output}")
+    private String outputPath;
+
+    @Value("${zdbdump.path.temp}")
+    private String tempPath;
+
+    @Value("${zdbdump.gnd-oldauth.dump-url}")
+    private String dumpUrl;
+
+    @Value("${zdbdump.gnd-oldauth.beacon-file}")
+    private String beaconFile;
+
+    @Value("${zdbdump.gnd-oldauth.json-file}")
+    private String jsonFile;
+
+    @Value("${zdbdump.gnd-oldauth.threads}")
+    private int threads;
+
+    @Autowired
+    private RestClient restClient;
+
+    @Autowired
+    private OutputIndex outputIndex;
+
+    @Autowired
+    private XmlRecoveryDiagnosticsFactory xmlDiagnosticsFactory;
+
+    private final AtomicBoolean isRunning = new AtomicBoolean(false);
+
+    @Scheduled(cron = "${zdbdump.gnd-oldauth.cron}")
+    public void run() {
+        if (!isRunning.compareAndSet(false, true)) {
+            log.info("GND old authority number extraction already running. Abort.");
+            return;
+        }
+        final Path dumpPath = Path.of(tempPath).resolve("gnd_oldauth_source.rdf.gz");
+        // Relative file names end up next to the dumps, absolute paths are used as is
+        final Path beaconPath = Path.of(outputPath).resolve(beaconFile);
+        final Path jsonPath = Path.of(outputPath).resolve(jsonFile);
+        final Path beaconTempPath = Path.of(tempPath).resolve(beaconPath.getFileName());
+        final Path jsonTempPath = Path.of(tempPath).resolve(jsonPath.getFileName());
+        try {
+            final long startedAt = System.currentTimeMillis();
+            download(dumpPath);
+            final GndOldAuthorityExtractor.Result result = new GndOldAuthorityExtractor(threads, xmlDiagnosticsFactory.create("gnd-oldauth", log))
+                    .extract(dumpPath, beaconTempPath, jsonTempPath);
+            move(beaconTempPath, beaconPath, result.mappings());
+            move(jsonTempPath, jsonPath, result.mappings());
+            log.info("Run statistics: records={}, oldAuthorityNumbers={}, duration={}s, output={}, {}",
+                    result.records(),
+                    result.mappings(),
+                    (System.currentTimeMillis() - startedAt) / 1000,
+                    beaconPath,
+                    jsonPath);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("GND old authority number extraction interrupted", e);
+        } catch (Exception e) {
+            log.error("GND old authority number extraction failed", e);
+        } finally {
+            try {
+                Files.deleteIfExists(dumpPath);
+            } catch (IOException e) {
+                log.warn("Failed to delete {}: {}", dumpPath, e.getMessage());
+            }
+            isRunning.set(false);
+        }
+    }
+
+    private void download(Path target) throws IOException {
+        log.info("Start to download dump from {} to {} ...", dumpUrl, target);
+        Files.createDirectories(target.getParent());
+        restClient.get()
+                .uri(dumpUrl)
+                .exchange((request, response) -> {
+                    if (!response.getStatusCode().is2xxSuccessful()) {
+                        throw new IOException("Download failed with status " + response.getStatusCode().value());
+                    }
+                    try (final InputStream body = response.getBody()) {
+                        if (body == null) {
+                            throw new IOException("Download returned an empty response body.");
+                        }
+                        Files.copy(body, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    return null;
+                });
+        log.info("Successfully downloaded dump.");
+    }
+
+    private void move(Path source, Path target, long records) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.move(
+                ChecksummedFileOutputStream.sidecar(source),
+                ChecksummedFileOutputStream.sidecar(target),
+                StandardCopyOption.REPLACE_EXISTING);
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        outputIndex.published(target, records);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extracts {@code gndo:oldAuthorityNumber} from a GND authority dump and
+ * writes a BEACON file ({@code GNDID|OLDAUTHNO}) and a JSON-LD list of
+ * redirects from the old to the current GND URI.
+ * <p>
+ * The dump is split into chunks of raw records on the calling thread and
+ * the chunks are parsed with StAX on worker threads. Results are written in
+ * dump order.
+ */
+public final class GndOldAuthorityExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(GndOldAuthorityExtractor.class);
+    private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String GNDO_NS = "https://d-nb.info/standards/elementset/gnd#";
+    private static final String GND_PREFIX = "https://d-nb.info/gnd/";
+    private static final Pattern QUALIFIER = Pattern.compile("\\([^)]*\\)");
+    private static final int CHUNK_RECORDS = 1_000;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final int PROGRESS_LOG_STEP = 100_000;
+
+    private static final QName[] OLD_AUTHORITY_NUMBER_PATH = {
+            new QName(RDF_NS, "RDF"),
+            new QName(RDF_NS, "Description"),
+            new QName(GNDO_NS, "oldAuthorityNumber") };
+
+    private final int threads;
+    private final XmlRecoveryDiagnostics xmlDiagnostics;
+    private final ThreadLocal<XMLInputFactory> xif = ThreadLocal.withInitial(GndOldAuthorityExtractor::createXmlInputFactory);
+
+    public record Result(long records, long mappings) {
+    }
+
+    private record Mapping(String gndId, String oldAuthorityNumber) {
+    }
+
+    private record Chunk(int records, List<Mapping> mappings) {
+    }
+
+    /**
+     * @param threads number of parser threads, all available processors if
+     *                zero or less
+     */
+    public GndOldAuthorityExtractor(int threads) {
+        this(threads, new XmlRecoveryDiagnostics("gnd-oldauth", log, 20, Duration.ofMinutes(1), null));
+    }
+
+    GndOldAuthorityExtractor(int threads, XmlRecoveryDiagnostics xmlDiagnostics) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.xmlDiagnostics = xmlDiagnostics;
+    }
+
+    public Result extract(Path dump, Path beaconFile, Path jsonFile) throws IOException, InterruptedException {
+        final ExecutorService workers = Executors.newFixedThreadPool(
+                threads,
+                Thread.ofPlatform().name("gnd-oldauth-", 0).daemon().factory());
+        long records = 0L;
+        long mappings = 0L;
+        try (final BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(dump), IO_BUFFER_SIZE),
+                StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+                final Writer beacon = newWriter(beaconFile);
+                final Writer json = newWriter(jsonFile)) {
+
+            final RdfRecordSplitter splitter = new RdfRecordSplitter(in);
+            final String header = splitter.header();
+            final String footer = splitter.footer();
+            final Deque<Future<Chunk>> pending = new ArrayDeque<>();
+            final StringBuilder chunk = new StringBuilder(header);
+            int chunkRecords = 0;
+
+            json.write('[');
+            String record;
+            while (true) {
+                record = splitter.next();
+                if (record != null) {
+                    chunk.append(record).append('\n');
+                    chunkRecords++;
+                }
+                if (chunkRecords > 0 && (chunkRecords == CHUNK_RECORDS || record == null)) {
+                    final String xml = chunk.append(footer).toString();
+                    pending.add(workers.submit(() -> parse(xml, dump.toString())));
+                    chunk.setLength(0);
+                    chunk.append(header);
+                    chunkRecords = 0;
+                }
+                // Keep the number of chunks in memory bounded and write in order
+                while (!pending.isEmpty() && (pending.size() >= threads * 2 || record == null)) {
+                    final Chunk parsed = await(pending.poll());
+                    mappings = write(parsed, beacon, json, mappings);
+                    final long before = records;
+                    records += parsed.records();
+                    if (records / PROGRESS_LOG_STEP != before / PROGRESS_LOG_STEP) {
+                        log.info("Processed {} GND records, {} old authority numbers ...", records, mappings);
+                    }
+                }
+                if (record == null) {
+                    break;
+                }
+            }
+            json.write("\n]\n");
+        } finally {
+            workers.shutdownNow();
+            xmlDiagnostics.summarize("EXTRACT");
+        }
+        log.info("Finally processed {} GND records, {} old authority numbers", records, mappings);
+        return new Result(records, mappings);
+    }
+
+    private Chunk parse(String xml, String source) throws XMLStreamException {
+        final List<Mapping> mappings = new ArrayList<>();
+        final StaxPathMatcher matcher = new StaxPathMatcher(OLD_AUTHORITY_NUMBER_PATH);
+        final XMLStreamReader xsr = xif.get().createXMLStreamReader(
+                new XmlSanitizingReader(new StringReader(xml), source, xmlDiagnostics));
+        int records = 0;
+        String gndId = null;
+        try {
+            while (xsr.hasNext()) {
+                final int event = xsr.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    matcher.startElement(xsr.getName());
+                    if (matcher.matches(2)) {
+                        gndId = recordId(xsr.getAttributeValue(RDF_NS, "about"));
+                        records++;
+                    } else if (matcher.matches()) {
+                        final String oldAuthorityNumber = QUALIFIER.matcher(xsr.getElementText()).replaceAll("").trim();
+                        matcher.endElement();
+                        if (gndId != null && !oldAuthorityNumber.isEmpty() && !oldAuthorityNumber.equals(gndId)) {
+                            mappings.add(new Mapping(gndId, oldAuthorityNumber));
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    matcher.endElement();
+                }
+            }
+        } finally {
+            xsr.close();
+        }
+        return new Chunk(records, mappings);
+    }
+
+    private static long write(Chunk chunk, Writer beacon, Writer json, long written) throws IOException {
+        for (final Mapping m : chunk.mappings()) {
+            beacon.append(m.gndId()).append('|').append(m.oldAuthorityNumber()).append('\n');
+
+            json.write(written++ == 0 ? "\n" : ",\n");
+            json.append("{\"@id\":\"").append(GND_PREFIX).append(jsonEscape(m.oldAuthorityNumber()))
+                    .append("\",\"http://www.w3.org/2002/07/owl#sameAs\":[{\"@value\":\"")
+                    .append(GND_PREFIX).append(jsonEscape(m.gndId()))
+                    .append("\"}],\"https://d-nb.info/standards/elementset/dnb#canonicalUri\":[{\"@value\":\"")
+                    .append(GND_PREFIX).append(jsonEscape(m.gndId()))
+                    .append("\"}]}");
+        }
+        return written;
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse GND records", e.getCause());
+        }
+    }
+
+    private static Writer newWriter(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        return new BufferedWriter(
+                new OutputStreamWriter(new ChecksummedFileOutputStream(file), StandardCharsets.UTF_8),
+                IO_BUFFER_SIZE);
+    }
+
+    private static String recordId(String about) {
+        if (about == null) {
+            return null;
+        }
+        return about.startsWith(GND_PREFIX) ? about.substring(GND_PREFIX.length()) : about;
+    }
+
+    private static String jsonEscape(String value) {
+        return value.indexOf('"') < 0 && value.indexOf('\\') < 0
+                ? value
+                : value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        return factory;
+    }
+}
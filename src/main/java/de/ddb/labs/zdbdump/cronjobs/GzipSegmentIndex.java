@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offsets of the independent gzip members of a file written by
+ * {@link SegmentedGzipOutputStream}, kept next to the file as
+ * {@code <file>.segments}. The first line holds the size of the file the
+ * index was built for, every further line the compressed offset, compressed
+ * length and uncompressed length of a member, separated by tabs.
+ */
+public record GzipSegmentIndex(long fileSize, List<GzipSegmentIndex.Segment> segments) {
+
+    record Segment(long offset, int length, int size) {
+    }
+
+    static Path indexFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".segments");
+    }
+
+    /**
+     * @return index of the file or null if there is none or it does not
+     *         describe the file as it is now
+     */
+    static GzipSegmentIndex read(Path file) throws IOException {
+        final Path indexFile = indexFile(file);
+        final List<Segment> segments = new ArrayList<>();
+        final long fileSize;
+        try (final BufferedReader in = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            fileSize = Long.parseLong(in.readLine());
+            long expectedOffset = 0L;
+            String line;
+            while ((line = in.readLine()) != null) {
+                final String[] fields = line.split("\t");
+                if (fields.length != 3) {
+                    return null;
+                }
+                final Segment segment = new Segment(
+                        Long.parseLong(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+                if (segment.offset() != expectedOffset) {
+                    return null;
+                }
+                expectedOffset += segment.length();
+                segments.add(segment);
+            }
+            if (expectedOffset != fileSize || !Files.exists(file) || Files.size(file) != fileSize) {
+                return null;
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new GzipSegmentIndex(fileSize, List.copyOf(segments));
+    }
+
+    void write(Path file) throws IOException {
+        final Path indexFile = indexFile(file);
+        final Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (final BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(Long.toString(fileSize));
+            out.write('\n');
+            for (final Segment segment : segments) {
+                out.write(segment.offset() + "\t" + segment.length() + "\t" + segment.size() + "\n");
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void delete(Path file) throws IOException {
+        Files.deleteIfExists(indexFile(file));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.h2.mvstore.MVMap;
+
+/**
+ * Harvest progress of one record store, kept in an auxiliary map next to the
+ * stores: the base dump the store was built from, the end of the last
+ * harvest window applied to it and the windows which failed and wait in
+ * quarantine for another attempt.
+ */
+final class HarvestCheckpoint {
+
+    static final String MAP_NAME = "harvest_checkpoints";
+
+    private static final String BASE = "base";
+    private static final String HARVESTED = "harvested";
+    private static final String QUARANTINE = "quarantine/";
+
+    private final MVMap<String, String> map;
+    private final String prefix;
+
+    HarvestCheckpoint(MVMap<String, String> map, String storeName) {
+        this.map = map;
+        this.prefix = storeName + "/";
+    }
+
+    /**
+     * @return true if the store holds the base dump with the given
+     *         modification date plus harvested updates
+     */
+    boolean isBasedOn(LocalDateTime baseLastModified) {
+        return baseLastModified != null && format(baseLastModified).equals(map.get(prefix + BASE));
+    }
+
+    /**
+     * Forgets all progress, e.g. before the store is cleared.
+     */
+    void invalidate() {
+        // The key set of an MVMap does not support removal through its iterator
+        final List<String> keys = new ArrayList<>();
+        final Iterator<String> it = map.keyIterator(prefix);
+        while (it.hasNext()) {
+            final String key = it.next();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            keys.add(key);
+        }
+        keys.forEach(map::remove);
+        commit();
+    }
+
+    /**
+     * Starts over from a freshly loaded base dump.
+     */
+    void reset(LocalDateTime baseLastModified) {
+        invalidate();
+        map.put(prefix + BASE, format(baseLastModified));
+        map.put(prefix + HARVESTED, format(baseLastModified));
+        commit();
+    }
+
+    LocalDateTime harvestedUntil() {
+        final String value = map.get(prefix + HARVESTED);
+        return value != null ? LocalDateTime.parse(value) : null;
+    }
+
+    void harvestedUntil(LocalDateTime until) {
+        map.put(prefix + HARVESTED, format(until));
+    }
+
+    /**
+     * @return start of all quarantined windows, oldest first
+     */
+    List<LocalDateTime> quarantined() {
+        final List<LocalDateTime> windows = new ArrayList<>();
+        for (final Map.Entry<String, String> e : map.entrySet()) {
+            if (e.getKey().startsWith(prefix + QUARANTINE)) {
+                windows.add(LocalDateTime.parse(e.getKey().substring((prefix + QUARANTINE).length())));
+            }
+        }
+        windows.sort(null);
+        return windows;
+    }
+
+    /**
+     * @return number of failed attempts of the window so far
+     */
+    int quarantine(LocalDateTime windowStart, String error) {
+        final String key = prefix + QUARANTINE + format(windowStart);
+        final String previous = map.get(key);
+        final int attempts = previous != null ? Integer.parseInt(previous.substring(0, previous.indexOf(' '))) + 1 : 1;
+        map.put(key, attempts + " " + error);
+        return attempts;
+    }
+
+    void release(LocalDateTime windowStart) {
+        map.remove(prefix + QUARANTINE + format(windowStart));
+    }
+
+    /**
+     * Makes the checkpoint durable. Call after the store was committed, so the
+     * checkpoint never runs ahead of the records.
+     */
+    void commit() {
+        map.getStore().commit();
+    }
+
+    private static String format(LocalDateTime ldt) {
+        return ldt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+}
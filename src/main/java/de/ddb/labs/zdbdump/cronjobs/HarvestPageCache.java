@@ -0,0 +1,252 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Raw OAI-PMH ListRecords responses of closed harvest windows, gzipped on
+ * disk and keyed by window and resumption token. Retries, re-runs and
+ * offline replays of a harvest read these pages instead of asking the
+ * repository again. Pages not used for {@code max-age} are removed, and the
+ * least recently used ones once the cache grows beyond {@code max-size}.
+ */
+@Component
+class HarvestPageCache {
+
+    private static final Logger log = LoggerFactory.getLogger(HarvestPageCache.class);
+    private static final String PAGE_SUFFIX = ".xml.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    @Value("${zdbdump.path.temp}")
+    private String tempPath;
+
+    @Value("${zdbdump.harvest-cache.max-size}")
+    private long maxSize;
+
+    @Value("${zdbdump.harvest-cache.max-age}")
+    private Duration maxAge;
+
+    boolean isEnabled() {
+        return maxSize > 0L;
+    }
+
+    /**
+     * @param window          URL of the first page of the harvest window
+     * @param resumptionToken token of the page or null for the first page
+     */
+    static String key(String window, String resumptionToken) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(window.getBytes(StandardCharsets.UTF_8));
+            if (resumptionToken != null) {
+                digest.update((byte) '\n');
+                digest.update(resumptionToken.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the decompressed page or null if it is not cached
+     */
+    InputStream open(String key) throws IOException {
+        final Path page = page(key);
+        try {
+            final InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(page)), 65_536);
+            Files.setLastModifiedTime(page, FileTime.from(Instant.now()));
+            return in;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    void remove(String key) {
+        try {
+            Files.deleteIfExists(page(key));
+        } catch (IOException e) {
+            log.warn("Could not remove harvest page {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Wraps a response body so everything read is also written to the cache.
+     * The page only becomes visible with {@link Recording#commit()}, so a
+     * failed or partial response is never cached. Call
+     * {@link Recording#discard()} when done in any case.
+     */
+    Recording record(String key, InputStream body) throws IOException {
+        final Path dir = directory();
+        Files.createDirectories(dir);
+        final Path temp = Files.createTempFile(dir, key, TEMP_SUFFIX);
+        return new Recording(body, temp, page(key));
+    }
+
+    /**
+     * Removes expired pages and then the least recently used ones until the
+     * cache fits into its size limit.
+     */
+    synchronized void evict() {
+        final Path dir = directory();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        record Entry(Path path, long size, Instant lastUsed) {
+        }
+        final Instant expiry = Instant.now().minus(maxAge);
+        final List<Entry> entries = new ArrayList<>();
+        long total = 0L;
+        int removed = 0;
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (final Path path : stream) {
+                final BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue;
+                }
+                final Instant lastUsed = attrs.lastModifiedTime().toInstant();
+                if (lastUsed.isBefore(expiry)) {
+                    removed += Files.deleteIfExists(path) ? 1 : 0;
+                } else if (path.getFileName().toString().endsWith(PAGE_SUFFIX)) {
+                    entries.add(new Entry(path, attrs.size(), lastUsed));
+                    total += attrs.size();
+                }
+            }
+            entries.sort(Comparator.comparing(Entry::lastUsed));
+            for (final Entry entry : entries) {
+                if (total <= maxSize) {
+                    break;
+                }
+                if (Files.deleteIfExists(entry.path())) {
+                    total -= entry.size();
+                    removed++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not evict harvest pages from {}: {}", dir, e.getMessage());
+            return;
+        }
+        log.info("Harvest page cache holds {} bytes after removing {} pages", total, removed);
+    }
+
+    private Path directory() {
+        return Path.of(tempPath).resolve("oai-cache");
+    }
+
+    private Path page(String key) {
+        return directory().resolve(key + PAGE_SUFFIX);
+    }
+
+    static final class Recording extends FilterInputStream {
+
+        private final Path temp;
+        private final Path target;
+        private final OutputStream copy;
+        private boolean eof = false;
+        private boolean done = false;
+
+        private Recording(InputStream in, Path temp, Path target) throws IOException {
+            super(in);
+            this.temp = temp;
+            this.target = target;
+            this.copy = new GZIPOutputStream(Files.newOutputStream(temp), 65_536);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                copy.write(b);
+            } else {
+                eof = true;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                copy.write(b, off, n);
+            } else if (n == -1) {
+                eof = true;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes have to end up in the copy as well
+            final byte[] buffer = new byte[(int) Math.min(n, 8_192L)];
+            final int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        /**
+         * Reads the rest of the response and publishes the page. The XML
+         * parser may already have closed the stream at the end of the
+         * document.
+         */
+        void commit() throws IOException {
+            if (!eof) {
+                transferTo(OutputStream.nullOutputStream());
+            }
+            copy.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            done = true;
+        }
+
+        /**
+         * Drops the page unless it was committed.
+         */
+        void discard() throws IOException {
+            if (!done) {
+                done = true;
+                copy.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the ID of every record, one per line, gzip compressed.
+ */
+final class IdListSink implements DumpSink {
+
+    private final Path file;
+    private final Writer writer;
+    private long records = 0L;
+
+    IdListSink(Path file) throws IOException {
+        this.file = file;
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new ChecksummedFileOutputStream(file), 1 << 16),
+                StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String name() {
+        return "ids";
+    }
+
+    @Override
+    public void write(String id, String record) throws IOException {
+        writer.append(id).append('\n');
+        records++;
+    }
+
+    @Override
+    public List<Path> files() {
+        return List.of(file);
+    }
+
+    @Override
+    public long records() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of the dump job. Written by the job thread, read by the status
+ * endpoints.
+ */
+public final class JobStatus {
+
+    public enum Phase {
+        IDLE, QUEUED, DOWNLOAD, LOAD, HARVEST, WRITE, PUBLISH
+    }
+
+    public record Snapshot(
+            boolean running,
+            Phase phase,
+            String runStartedAt,
+            String phaseStartedAt,
+            long recordsProcessed,
+            double recordsPerSecond,
+            Double progress,
+            Long etaSeconds,
+            String harvestWindow,
+            Long harvestLagMinutes,
+            int quarantinedWindows,
+            String lastFinishedAt,
+            String lastError,
+            String lastErrorAt) {
+    }
+
+    private volatile boolean running = false;
+    private volatile Phase phase = Phase.IDLE;
+    private volatile Instant runStartedAt;
+    private volatile Instant phaseStartedAt;
+    private final AtomicLong recordsProcessed = new AtomicLong();
+    private volatile long progressDone = 0L;
+    private volatile long progressTotal = 0L;
+    private volatile LocalDateTime harvestWindow;
+    private volatile int quarantinedWindows = 0;
+    private volatile Instant lastFinishedAt;
+    private volatile String lastError;
+    private volatile Instant lastErrorAt;
+
+    void started() {
+        running = true;
+        runStartedAt = Instant.now();
+        phase(Phase.IDLE);
+    }
+
+    void phase(Phase newPhase) {
+        phase = newPhase;
+        phaseStartedAt = Instant.now();
+        recordsProcessed.set(0L);
+        progressDone = 0L;
+        progressTotal = 0L;
+        harvestWindow = null;
+    }
+
+    Phase currentPhase() {
+        return phase;
+    }
+
+    long recordsProcessed() {
+        return recordsProcessed.get();
+    }
+
+    void recordProcessed() {
+        recordsProcessed.incrementAndGet();
+    }
+
+    /**
+     * Reports progress of the current phase in arbitrary units, e.g. bytes or
+     * records. A total of zero or less means the total is unknown.
+     */
+    void progress(long done, long total) {
+        progressDone = done;
+        progressTotal = total;
+    }
+
+    /**
+     * @param windowStart start of the harvest window currently processed (UTC)
+     */
+    void harvestWindow(LocalDateTime windowStart) {
+        harvestWindow = windowStart;
+    }
+
+    /**
+     * @param count harvest windows waiting for another attempt
+     */
+    void quarantinedWindows(int count) {
+        quarantinedWindows = count;
+    }
+
+    void failed(Throwable throwable) {
+        lastError = throwable.getMessage() != null ? throwable.getMessage() : throwable.getClass().getName();
+        lastErrorAt = Instant.now();
+    }
+
+    void finished() {
+        lastFinishedAt = Instant.now();
+        running = false;
+        phase(Phase.IDLE);
+    }
+
+    void stopped() {
+        running = false;
+        phase(Phase.IDLE);
+    }
+
+    public Snapshot snapshot() {
+        final Instant now = Instant.now();
+        final Instant phaseStart = phaseStartedAt;
+        final long records = recordsProcessed.get();
+        final double elapsedSeconds = phaseStart != null
+                ? Math.max(Duration.between(phaseStart, now).toMillis() / 1000d, 0.001d)
+                : 0d;
+        final double rate = elapsedSeconds > 0d ? records / elapsedSeconds : 0d;
+
+        final long done = progressDone;
+        final long total = progressTotal;
+        Double progress = null;
+        Long eta = null;
+        if (total > 0L) {
+            final double fraction = Math.min(1d, (double) done / total);
+            progress = Math.round(fraction * 10_000d) / 10_000d;
+            if (fraction > 0d) {
+                eta = Math.round(elapsedSeconds * (1d - fraction) / fraction);
+            }
+        }
+
+        final LocalDateTime window = harvestWindow;
+        final Long lag = window != null
+                ? Duration.between(window, LocalDateTime.now(ZoneOffset.UTC)).toMinutes()
+                : null;
+
+        return new Snapshot(
+                running,
+                phase,
+                format(runStartedAt),
+                format(phaseStart),
+                records,
+                Math.round(rate * 10d) / 10d,
+                progress,
+                eta,
+                window != null ? window.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "Z" : null,
+                lag,
+                quarantinedWindows,
+                format(lastFinishedAt),
+                lastError,
+                format(lastErrorAt));
+    }
+
+    private static String format(Instant instant) {
+        return instant != null ? DateTimeFormatter.ISO_INSTANT.format(instant) : null;
+    }
+}
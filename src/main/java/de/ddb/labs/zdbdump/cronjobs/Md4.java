@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.util.Arrays;
+
+/**
+ * MD4 as specified in RFC 1320, which the JDK does not offer as a
+ * {@link java.security.MessageDigest}. Only used for the block checksums of
+ * zsync control files, where it is part of the format; it is not meant to be
+ * secure.
+ */
+public final class Md4 {
+
+    private static final int[] S1 = {3, 7, 11, 19};
+    private static final int[] S2 = {3, 5, 9, 13};
+    private static final int[] S3 = {3, 9, 11, 15};
+    private static final int[] K3 = {0, 8, 4, 12, 2, 10, 6, 14, 1, 9, 5, 13, 3, 11, 7, 15};
+
+    private final int[] x = new int[16];
+    private final byte[] tail = new byte[128];
+
+    /**
+     * @return the 16 byte digest of the given bytes
+     */
+    public byte[] digest(byte[] data, int off, int len) {
+        int a = 0x67452301;
+        int b = 0xefcdab89;
+        int c = 0x98badcfe;
+        int d = 0x10325476;
+
+        final int full = len & ~63;
+        final int rest = len - full;
+        System.arraycopy(data, off + full, tail, 0, rest);
+        tail[rest] = (byte) 0x80;
+        final int tailLength = rest < 56 ? 64 : 128;
+        Arrays.fill(tail, rest + 1, tailLength, (byte) 0);
+        final long bits = (long) len << 3;
+        for (int i = 0; i < 8; i++) {
+            tail[tailLength - 8 + i] = (byte) (bits >>> (8 * i));
+        }
+
+        for (int pos = 0; pos < full + tailLength; pos += 64) {
+            final byte[] block = pos < full ? data : tail;
+            final int start = pos < full ? off + pos : pos - full;
+            for (int i = 0; i < 16; i++) {
+                final int j = start + 4 * i;
+                x[i] = (block[j] & 0xff) | (block[j + 1] & 0xff) << 8 | (block[j + 2] & 0xff) << 16
+                        | (block[j + 3] & 0xff) << 24;
+            }
+            final int aa = a;
+            final int bb = b;
+            final int cc = c;
+            final int dd = d;
+            for (int i = 0; i < 16; i++) {
+                final int t = a + ((b & c) | (~b & d)) + x[i];
+                a = d;
+                d = c;
+                c = b;
+                b = Integer.rotateLeft(t, S1[i & 3]);
+            }
+            for (int i = 0; i < 16; i++) {
+                final int t = a + ((b & c) | (b & d) | (c & d)) + x[(i & 3) * 4 + (i >> 2)] + 0x5a827999;
+                a = d;
+                d = c;
+                c = b;
+                b = Integer.rotateLeft(t, S2[i & 3]);
+            }
+            for (int i = 0; i < 16; i++) {
+                final int t = a + (b ^ c ^ d) + x[K3[i]] + 0x6ed9eba1;
+                a = d;
+                d = c;
+                c = b;
+                b = Integer.rotateLeft(t, S3[i & 3]);
+            }
+            a += aa;
+            b += bb;
+            c += cc;
+            d += dd;
+        }
+
+        final byte[] digest = new byte[16];
+        final int[] state = {a, b, c, d};
+        for (int i = 0; i < 16; i++) {
+            digest[i] = (byte) (state[i >> 2] >>> (8 * (i & 3)));
+        }
+        return digest;
+    }
+}
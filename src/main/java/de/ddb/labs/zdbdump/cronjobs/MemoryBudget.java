@@ -0,0 +1,215 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.io.InterruptedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounds the record data all dump jobs together keep on the heap. Record
+ * batches waiting in the output queues are reserved until every sink has
+ * written them, and ingest and harvest wait before each record while the
+ * reservations use up the budget. So a write phase with full queues holds
+ * back the other datasets instead of filling the heap. A budget of zero turns
+ * this off.
+ * <p>
+ * I/O buffers such as the segments of the base dump are reserved against a
+ * separate pool of a quarter of the budget, see {@link #buffers()}.
+ */
+@Component
+public class MemoryBudget {
+
+    private static final Logger log = LoggerFactory.getLogger(MemoryBudget.class);
+    // Sort buffers get at most this fraction of the budget
+    private static final int SORT_BUFFER_SHARE = 4;
+    // The buffer pool gets this fraction of the budget on top of it
+    private static final int BUFFER_SHARE = 4;
+
+    @Value("${zdbdump.memory.budget}")
+    private long budget;
+
+    @Value("${zdbdump.memory.spill-threshold}")
+    private int spillThreshold;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private long reserved = 0L; // guarded by this
+    private Counter waits;
+    private MemoryBudget buffers;
+
+    MemoryBudget() {
+    }
+
+    /**
+     * Creates a budget outside the application context, e.g. for checks.
+     */
+    public MemoryBudget(long budget) {
+        this.budget = budget;
+        this.spillThreshold = Integer.MAX_VALUE;
+        this.buffers = new MemoryBudget(budget / BUFFER_SHARE, Integer.MAX_VALUE);
+    }
+
+    private MemoryBudget(long budget, int spillThreshold) {
+        this.budget = budget;
+        this.spillThreshold = spillThreshold;
+    }
+
+    @PostConstruct
+    void init() {
+        buffers = new MemoryBudget(budget / BUFFER_SHARE, spillThreshold);
+        if (!isEnabled()) {
+            return;
+        }
+        log.info("Limiting record data on the heap to {} bytes plus {} bytes of I/O buffers, "
+                + "spilling records above {} bytes to disk", budget, buffers.budget, spillThreshold);
+        final MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            Gauge.builder("zdbdump.memory.reserved", this, MemoryBudget::reserved)
+                    .description("Record data reserved against the memory budget")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("zdbdump.memory.buffers.reserved", buffers, MemoryBudget::reserved)
+                    .description("I/O buffers reserved against the buffer pool of the memory budget")
+                    .baseUnit("bytes")
+                    .register(registry);
+            waits = Counter.builder("zdbdump.memory.waits")
+                    .description("Records and batches that waited for the memory budget")
+                    .register(registry);
+        }
+    }
+
+    boolean isEnabled() {
+        return budget > 0L;
+    }
+
+    /**
+     * @return pool for I/O buffers that a thread holds while it waits in
+     *         {@link #admit(long)}, like the read-ahead and write-behind
+     *         segments of the base dump. Reserved against this budget they
+     *         could take the room that thread waits for and that only it can
+     *         free.
+     */
+    public MemoryBudget buffers() {
+        return buffers;
+    }
+
+    /**
+     * @return size in bytes above which a record is buffered on disk
+     */
+    int spillThreshold() {
+        return isEnabled() ? spillThreshold : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the configured size of a sort buffer, limited to a share of the
+     *         budget
+     */
+    long sortBuffer(long configured) {
+        return isEnabled() ? Math.min(configured, budget / SORT_BUFFER_SHARE) : configured;
+    }
+
+    /**
+     * Estimates the heap taken by a string, two bytes per character.
+     */
+    static long sizeOf(String s) {
+        return 2L * s.length();
+    }
+
+    public synchronized long reserved() {
+        return reserved;
+    }
+
+    /**
+     * Waits until the given amount fits into the budget without reserving
+     * it, e.g. before a record is read into the store.
+     */
+    public void admit(long bytes) throws InterruptedIOException {
+        if (isEnabled()) {
+            synchronized (this) {
+                awaitRoom(bytes);
+            }
+        }
+    }
+
+    /**
+     * Reserves the given amount, waiting until it fits into the budget. An
+     * amount larger than the whole budget is granted once nothing else is
+     * reserved.
+     */
+    public void reserve(long bytes) throws InterruptedIOException {
+        if (isEnabled()) {
+            synchronized (this) {
+                awaitRoom(bytes);
+                reserved += bytes;
+            }
+        }
+    }
+
+    /**
+     * Reserves the given amount only if it fits into the budget right away,
+     * e.g. for reading ahead.
+     *
+     * @return true if reserved
+     */
+    boolean tryReserve(long bytes) {
+        if (!isEnabled()) {
+            return true;
+        }
+        synchronized (this) {
+            if (reserved > 0L && reserved + bytes > budget) {
+                return false;
+            }
+            reserved += bytes;
+            return true;
+        }
+    }
+
+    public void release(long bytes) {
+        if (isEnabled()) {
+            synchronized (this) {
+                reserved -= bytes;
+                notifyAll();
+            }
+        }
+    }
+
+    private void awaitRoom(long bytes) throws InterruptedIOException {
+        if (reserved == 0L || reserved + bytes <= budget) {
+            return;
+        }
+        if (waits != null) {
+            waits.increment();
+        }
+        try {
+            while (reserved > 0L && reserved + bytes > budget) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the memory budget");
+        }
+    }
+}
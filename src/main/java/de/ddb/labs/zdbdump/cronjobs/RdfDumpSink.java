@@ -0,0 +1,113 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Namespace;
+
+/**
+ * Writes the records, or only those matching a pattern, as gzip compressed
+ * RDF/XML dump. Optionally the compression is reset after records chosen by
+ * their ID and a zsync control file is written along, so mirrors can update
+ * their copy by fetching only the blocks around changed records.
+ */
+final class RdfDumpSink implements DumpSink {
+
+    // Compression is reset after one in this many records on average, once
+    // at least twice the deflate window was written since the last reset
+    private static final int RESET_INTERVAL = 8;
+    private static final int RESET_DISTANCE = 64 * 1024;
+
+    private final String name;
+    private final Path file;
+    private final Pattern filter;
+    private final RsyncableGzipOutputStream rsyncable; // null without zsync
+    private final RdfDumpWriter writer;
+    private long records = 0L;
+    private long sinceReset = 0L;
+
+    /**
+     * @param filter         records are written only if the pattern is found
+     *                       in their serialization, all records are written
+     *                       if null
+     * @param zsyncBlockSize block size of the zsync control file, none is
+     *                       written if zero
+     */
+    RdfDumpSink(String name, Path file, List<Namespace> namespaces, Pattern filter, int zsyncBlockSize)
+            throws IOException, XMLStreamException {
+        this.name = name;
+        this.file = file;
+        this.filter = filter;
+        final OutputStream out = new ChecksummedFileOutputStream(file);
+        if (zsyncBlockSize > 0) {
+            rsyncable = new RsyncableGzipOutputStream(new ZsyncOutputStream(out, file, zsyncBlockSize), 1 << 16);
+            writer = new RdfDumpWriter(rsyncable, namespaces);
+        } else {
+            rsyncable = null;
+            writer = new RdfDumpWriter(new GZIPOutputStream(out, 1 << 16), namespaces);
+        }
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void write(String id, String record) throws IOException, XMLStreamException {
+        if (filter == null || filter.matcher(record).find()) {
+            writer.write(record);
+            records++;
+            sinceReset += record.length();
+            if (rsyncable != null && sinceReset >= RESET_DISTANCE && isResetPoint(id)) {
+                writer.flush();
+                rsyncable.reset();
+                sinceReset = 0L;
+            }
+        }
+    }
+
+    /**
+     * Depends on the ID only, so the reset points stay where they are when
+     * records change, come or go, and the output of unchanged records between
+     * them is byte for byte the same.
+     */
+    private static boolean isResetPoint(String id) {
+        final int h = id.hashCode() * 0x9e3779b9;
+        return Integer.remainderUnsigned(h ^ h >>> 16, RESET_INTERVAL) == 0;
+    }
+
+    @Override
+    public List<Path> files() {
+        return rsyncable != null ? List.of(file, ZsyncOutputStream.controlFile(file)) : List.of(file);
+    }
+
+    @Override
+    public long records() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
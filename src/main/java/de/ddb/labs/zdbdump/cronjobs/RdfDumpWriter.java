@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Writes serialized rdf:Description records into a gzip compressed rdf:RDF
+ * document. Header and footer are written on open and close.
+ */
+final class RdfDumpWriter implements Closeable {
+
+    private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+
+    private final Writer writer;
+    private final XMLEventWriter xmlEventWriter;
+    private final XMLEventFactory xmlEventFactory = XMLEventFactory.newFactory();
+    private final XMLInputFactory xmlInFactory = XMLInputFactory.newFactory();
+
+    RdfDumpWriter(String outputFile, List<Namespace> namespaces) throws IOException, XMLStreamException {
+        this(new GZIPOutputStream(new FileOutputStream(outputFile)), namespaces);
+    }
+
+    /**
+     * Writes the uncompressed document to the given stream, which is closed
+     * with the writer.
+     */
+    RdfDumpWriter(OutputStream out, List<Namespace> namespaces) throws IOException, XMLStreamException {
+        writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        try {
+            final XMLOutputFactory xmlOutFactory = XMLOutputFactory.newFactory();
+            xmlOutFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, true);
+            xmlEventWriter = xmlOutFactory.createXMLEventWriter(writer);
+
+            xmlEventWriter.add(xmlEventFactory.createStartDocument("UTF-8", "1.0"));
+            xmlEventWriter.add(xmlEventFactory.createCharacters("\n"));
+            xmlEventWriter.add(xmlEventFactory.createStartElement("rdf", RDF_NS, "RDF", null, namespaces.iterator()));
+            xmlEventWriter.add(xmlEventFactory.createCharacters("\n"));
+        } catch (XMLStreamException e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    void write(String record) throws XMLStreamException {
+        // Reads the string itself instead of an encoded copy of it
+        final XMLEventReader xmlEventReader = xmlInFactory.createXMLEventReader(new StringReader(record));
+        XMLEvent event = xmlEventReader.nextEvent();
+        // Skip ahead in the input to the opening document element
+        while (event.getEventType() != XMLEvent.START_ELEMENT) {
+            event = xmlEventReader.nextEvent();
+        }
+
+        do {
+            xmlEventWriter.add(event);
+            event = xmlEventReader.nextEvent();
+        } while (event.getEventType() != XMLEvent.END_DOCUMENT);
+        xmlEventReader.close();
+        xmlEventWriter.add(xmlEventFactory.createCharacters("\n"));
+    }
+
+    /**
+     * Pushes everything written so far to the underlying stream, e.g. to
+     * learn where the next record starts.
+     */
+    void flush() throws IOException {
+        try {
+            xmlEventWriter.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not flush RDF dump", e);
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xmlEventWriter.add(xmlEventFactory.createEndElement("rdf", RDF_NS, "RDF"));
+            xmlEventWriter.add(xmlEventFactory.createCharacters("\n"));
+            xmlEventWriter.add(xmlEventFactory.createEndDocument());
+            xmlEventWriter.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not finish RDF dump", e);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits an RDF/XML dump into the raw text of its top-level
+ * {@code rdf:Description} records without parsing it, so that the records
+ * can be parsed on several threads. Each chunk of records has to be wrapped
+ * with {@link #header()} and {@link #footer()} to become a well-formed
+ * document again.
+ */
+final class RdfRecordSplitter {
+
+    private static final String OPEN_TAG = "<rdf:Description";
+    private static final String CLOSE_TAG = "</rdf:Description>";
+    private static final Pattern ROOT_ELEMENT = Pattern.compile("<([A-Za-z_][\\w.:-]*)[\\s>]");
+
+    private final BufferedReader in;
+    private final StringBuilder record = new StringBuilder(4096);
+    private String header;
+    private String line;
+    private int pos = 0;
+    private int depth = 0;
+
+    RdfRecordSplitter(Reader reader) {
+        this.in = reader instanceof BufferedReader br ? br : new BufferedReader(reader);
+    }
+
+    /**
+     * @return XML declaration and root start tag of the dump
+     */
+    String header() throws IOException {
+        if (header == null) {
+            final StringBuilder sb = new StringBuilder();
+            while ((line = in.readLine()) != null) {
+                final int start = line.indexOf(OPEN_TAG);
+                if (start >= 0) {
+                    sb.append(line, 0, start);
+                    pos = start;
+                    break;
+                }
+                sb.append(line).append('\n');
+            }
+            header = sb.toString();
+        }
+        return header;
+    }
+
+    /**
+     * @return end tag of the root element
+     */
+    String footer() throws IOException {
+        final Matcher m = ROOT_ELEMENT.matcher(header());
+        return m.find() ? "</" + m.group(1) + ">" : "";
+    }
+
+    /**
+     * @return raw text of the next record or null at the end of the dump
+     */
+    String next() throws IOException {
+        header();
+        record.setLength(0);
+        while (line != null) {
+            int segmentStart = depth == 0 ? -1 : 0;
+            while (pos < line.length()) {
+                if (depth == 0) {
+                    final int start = indexOfOpenTag(pos);
+                    if (start < 0) {
+                        break;
+                    }
+                    segmentStart = start;
+                    pos = start;
+                }
+                final int open = indexOfOpenTag(pos);
+                final int close = line.indexOf(CLOSE_TAG, pos);
+                if (close >= 0 && (open < 0 || close < open)) {
+                    pos = close + CLOSE_TAG.length();
+                    if (--depth == 0) {
+                        record.append(line, segmentStart, pos);
+                        return record.toString();
+                    }
+                } else if (open >= 0) {
+                    final int tagEnd = line.indexOf('>', open);
+                    pos = tagEnd >= 0 ? tagEnd + 1 : open + OPEN_TAG.length();
+                    if (tagEnd < 0 || line.charAt(tagEnd - 1) != '/') {
+                        depth++;
+                    } else if (depth == 0) {
+                        record.append(line, segmentStart, pos);
+                        return record.toString();
+                    }
+                } else {
+                    pos = line.length();
+                }
+            }
+            if (depth > 0 && segmentStart >= 0) {
+                record.append(line, segmentStart, line.length()).append('\n');
+            }
+            line = in.readLine();
+            pos = 0;
+        }
+        return null;
+    }
+
+    private int indexOfOpenTag(int from) {
+        int i = line.indexOf(OPEN_TAG, from);
+        while (i >= 0) {
+            final int after = i + OPEN_TAG.length();
+            if (after >= line.length() || Character.isWhitespace(line.charAt(after))
+                    || line.charAt(after) == '>' || line.charAt(after) == '/') {
+                return i;
+            }
+            i = line.indexOf(OPEN_TAG, after);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Output buffer for one record at a time, reused for all records of a job so
+ * reading a record does not allocate a new stream and writer. Records up to
+ * the spill threshold stay in a byte array kept between records. Larger ones
+ * go to a file so the array never grows beyond the threshold and the record
+ * is only materialized once, as the string handed to the store.
+ */
+final class RecordBuffer extends OutputStream {
+
+    private static final int INITIAL_CAPACITY = 16_384;
+    // A larger array left behind by a big record is dropped on reset
+    private static final int RETAINED_CAPACITY = 1_048_576;
+
+    private final Path spillFile;
+    private final int threshold;
+    private byte[] buf;
+    private int count = 0;
+    private long size = 0L;
+    private OutputStream spill; // null unless the record is spilled
+
+    RecordBuffer(Path spillFile, int threshold) {
+        this.spillFile = spillFile;
+        this.threshold = threshold;
+        this.buf = new byte[Math.min(INITIAL_CAPACITY, threshold)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (spill == null && count == buf.length) {
+            reserve(1);
+        }
+        if (spill != null) {
+            spill.write(b);
+        } else {
+            buf[count++] = (byte) b;
+        }
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (spill == null && count + len > buf.length) {
+            reserve(len);
+        }
+        if (spill != null) {
+            spill.write(b, off, len);
+        } else {
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+        size += len;
+    }
+
+    /**
+     * Grows the array or, beyond the threshold, switches to the spill file.
+     */
+    private void reserve(int len) throws IOException {
+        final long needed = (long) count + len;
+        if (needed > threshold) {
+            Files.createDirectories(spillFile.getParent());
+            spill = new BufferedOutputStream(Files.newOutputStream(spillFile), INITIAL_CAPACITY);
+            spill.write(buf, 0, count);
+            count = 0;
+        } else {
+            buf = Arrays.copyOf(buf, (int) Math.min(threshold, Math.max(needed, 2L * buf.length)));
+        }
+    }
+
+    /**
+     * @return bytes written since the last reset
+     */
+    long size() {
+        return size;
+    }
+
+    boolean isSpilled() {
+        return spill != null;
+    }
+
+    /**
+     * @return the record written since the last reset
+     */
+    String content() throws IOException {
+        if (spill == null) {
+            return new String(buf, 0, count, StandardCharsets.UTF_8);
+        }
+        spill.flush();
+        return Files.readString(spillFile);
+    }
+
+    /**
+     * Discards the record, keeping the array for the next one.
+     */
+    void reset() throws IOException {
+        count = 0;
+        size = 0L;
+        if (buf.length > RETAINED_CAPACITY) {
+            buf = new byte[Math.min(INITIAL_CAPACITY, threshold)];
+        }
+        if (spill != null) {
+            spill.close();
+            spill = null;
+            Files.deleteIfExists(spillFile);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reset();
+    }
+}
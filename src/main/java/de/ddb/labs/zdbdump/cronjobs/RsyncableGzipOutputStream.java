@@ -0,0 +1,49 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip stream that can reset the compression at chosen points, like
+ * {@code gzip --rsyncable}. After a reset the compressed bytes depend only on
+ * the data written from then on, so a change in the data only changes the
+ * compressed bytes up to the next reset and the rest of the file stays the
+ * same, merely shifted. It stays a single gzip member any gunzip reads.
+ */
+public final class RsyncableGzipOutputStream extends GZIPOutputStream {
+
+    public RsyncableGzipOutputStream(OutputStream out, int size) throws IOException {
+        super(out, size);
+    }
+
+    /**
+     * Writes out all pending data and empties the compression dictionary.
+     */
+    public void reset() throws IOException {
+        if (def.finished()) {
+            return;
+        }
+        int len;
+        do {
+            len = def.deflate(buf, 0, buf.length, Deflater.FULL_FLUSH);
+            out.write(buf, 0, len);
+        } while (len == buf.length);
+    }
+}
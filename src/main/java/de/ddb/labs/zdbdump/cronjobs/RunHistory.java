@@ -0,0 +1,209 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import de.ddb.labs.zdbdump.store.StoreManager;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.h2.mvstore.MVMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Statistics of past dump runs, kept as JSON in an auxiliary map next to the
+ * stores. Every run is compared with the rolling baseline of the runs before
+ * it: a phase whose throughput falls more than the configured percentage
+ * below the median of the last successful runs is flagged as a regression.
+ */
+@Component
+public class RunHistory {
+
+    static final String MAP_NAME = "run_history";
+
+    private static final Logger log = LoggerFactory.getLogger(RunHistory.class);
+    private static final char SEPARATOR = '\u0000';
+    // Phases processing fewer records are too noisy to compare
+    private static final long MIN_PHASE_RECORDS = 1_000L;
+    private static final int MIN_BASELINE_RUNS = 3;
+
+    /**
+     * @param records                  records processed in the phase
+     * @param allocatedBytes           bytes allocated by the JVM or -1 if not
+     *                                 measured
+     * @param gcPauses                 garbage collection pauses of the JVM
+     *                                 during the phase
+     * @param baselineRecordsPerSecond median throughput of the phase in the
+     *                                 preceding successful runs or null if
+     *                                 there are too few of them
+     */
+    public record Phase(
+            String name,
+            long millis,
+            long records,
+            double recordsPerSecond,
+            long allocatedBytes,
+            double allocatedMegabytesPerSecond,
+            long gcPauses,
+            long gcPauseMillis,
+            Double baselineRecordsPerSecond) {
+    }
+
+    /**
+     * @param regressions phases slower than their baseline, e.g.
+     *                    {@code LOAD: 812 records/s, 31% below baseline of 1177 records/s}
+     */
+    public record Run(
+            String dataset,
+            String engine,
+            String startedAt,
+            long durationSeconds,
+            boolean succeeded,
+            String error,
+            List<Phase> phases,
+            long dumpRead,
+            long harvestedUpdates,
+            long harvestedDeletions,
+            long harvestPages,
+            long harvestCachedPages,
+            long harvestRetries,
+            long xmlRecoveries,
+            long writtenToDump,
+            long baseDumpBytes,
+            long outputBytes,
+            List<String> regressions) {
+    }
+
+    @Value("${zdbdump.run-history.max-runs}")
+    private int maxRuns;
+
+    @Value("${zdbdump.run-history.baseline-runs}")
+    private int baselineRuns;
+
+    @Value("${zdbdump.run-history.regression-threshold}")
+    private double regressionThreshold;
+
+    @Autowired
+    private StoreManager storeManager;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    private MVMap<String, String> map; // dataset \0 start time -> run as JSON
+
+    private synchronized MVMap<String, String> map() {
+        if (map == null) {
+            map = storeManager.openMap(MAP_NAME);
+        }
+        return map;
+    }
+
+    /**
+     * Adds baselines and regressions to a finished run and keeps it, dropping
+     * the oldest runs of the dataset beyond the limit.
+     *
+     * @return the run as kept
+     */
+    synchronized Run add(Run run) {
+        final List<Run> previous = list(run.dataset(), baselineRuns, true);
+        final List<Phase> phases = new ArrayList<>();
+        final List<String> regressions = new ArrayList<>();
+        for (final Phase phase : run.phases()) {
+            final Double baseline = baseline(previous, phase.name());
+            phases.add(new Phase(phase.name(), phase.millis(), phase.records(), phase.recordsPerSecond(),
+                    phase.allocatedBytes(), phase.allocatedMegabytesPerSecond(), phase.gcPauses(),
+                    phase.gcPauseMillis(), baseline));
+            if (run.succeeded() && baseline != null && phase.records() >= MIN_PHASE_RECORDS
+                    && phase.recordsPerSecond() < baseline * (1d - regressionThreshold / 100d)) {
+                regressions.add(String.format("%s: %.0f records/s, %.0f%% below baseline of %.0f records/s",
+                        phase.name(),
+                        phase.recordsPerSecond(),
+                        (1d - phase.recordsPerSecond() / baseline) * 100d,
+                        baseline));
+            }
+        }
+        final Run kept = new Run(run.dataset(), run.engine(), run.startedAt(), run.durationSeconds(),
+                run.succeeded(), run.error(), phases, run.dumpRead(), run.harvestedUpdates(),
+                run.harvestedDeletions(), run.harvestPages(), run.harvestCachedPages(), run.harvestRetries(),
+                run.xmlRecoveries(), run.writtenToDump(), run.baseDumpBytes(), run.outputBytes(), regressions);
+        if (!regressions.isEmpty()) {
+            log.warn("Throughput regression in run of {} started at {}: {}",
+                    run.dataset(), run.startedAt(), String.join("; ", regressions));
+        }
+
+        final MVMap<String, String> runs = map();
+        final String prefix = run.dataset() + SEPARATOR;
+        runs.put(prefix + run.startedAt(), jsonMapper.writeValueAsString(kept));
+        final List<String> keys = new ArrayList<>();
+        final Iterator<String> it = runs.keyIterator(prefix);
+        while (it.hasNext()) {
+            final String key = it.next();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            keys.add(key);
+        }
+        keys.subList(0, Math.max(0, keys.size() - maxRuns)).forEach(runs::remove);
+        runs.getStore().commit();
+        return kept;
+    }
+
+    /**
+     * @return the newest runs of a dataset, newest first
+     */
+    public List<Run> list(String dataset, int limit) {
+        return list(dataset, limit, false);
+    }
+
+    private List<Run> list(String dataset, int limit, boolean succeededOnly) {
+        final MVMap<String, String> runs = map();
+        final String prefix = dataset + SEPARATOR;
+        final List<Run> result = new ArrayList<>();
+        String key = runs.lowerKey(dataset + (char) (SEPARATOR + 1));
+        while (key != null && key.startsWith(prefix) && result.size() < limit) {
+            final Run run = jsonMapper.readValue(runs.get(key), Run.class);
+            if (!succeededOnly || run.succeeded()) {
+                result.add(run);
+            }
+            key = runs.lowerKey(key);
+        }
+        return result;
+    }
+
+    /**
+     * @return median throughput of a phase in the given runs or null
+     */
+    private static Double baseline(List<Run> runs, String phaseName) {
+        final List<Double> values = new ArrayList<>();
+        for (final Run run : runs) {
+            for (final Phase phase : run.phases()) {
+                if (phase.name().equals(phaseName) && phase.records() >= MIN_PHASE_RECORDS) {
+                    values.add(phase.recordsPerSecond());
+                }
+            }
+        }
+        if (values.size() < MIN_BASELINE_RUNS) {
+            return null;
+        }
+        values.sort(null);
+        final int middle = values.size() / 2;
+        return values.size() % 2 == 1 ? values.get(middle) : (values.get(middle - 1) + values.get(middle)) / 2d;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a file written by {@link SegmentedGzipOutputStream}. The members
+ * listed in its {@link GzipSegmentIndex} are inflated on worker threads a
+ * few segments ahead of the reader and returned in order, so the reader
+ * sees the same bytes as from a {@link GZIPInputStream}. Segments are
+ * reserved against the buffer pool of the {@link MemoryBudget} until they
+ * were read; the reader only reads ahead as far as the pool allows. Reports the
+ * compressed bytes consumed like {@link ProgressInputStream}.
+ */
+public final class SegmentedGzipInputStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Path file;
+    private final FileChannel channel;
+    private final List<GzipSegmentIndex.Segment> segments;
+    private final int ahead;
+    private final MemoryBudget memoryBudget;
+    private final ExecutorService inflaters;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final Deque<GzipSegmentIndex.Segment> pendingSegments = new ArrayDeque<>();
+    private final LongConsumer listener;
+    private byte[] current = EMPTY;
+    private GzipSegmentIndex.Segment currentSegment;
+    private int pos = 0;
+    private int submitted = 0;
+    private long reserved = 0L;
+    private boolean closed = false;
+
+    /**
+     * @param threads      number of inflating threads
+     * @param memoryBudget pool the segments are reserved against, see
+     *                     {@link MemoryBudget#buffers()}
+     */
+    public SegmentedGzipInputStream(Path file, GzipSegmentIndex index, int threads, MemoryBudget memoryBudget,
+            LongConsumer listener) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.segments = index.segments();
+        this.ahead = threads * 2;
+        this.memoryBudget = memoryBudget;
+        this.inflaters = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("inflate-", 0).daemon().factory());
+        this.listener = listener;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == current.length && !nextSegment()) {
+            return -1;
+        }
+        return current[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (pos == current.length) {
+            if (!nextSegment()) {
+                return -1;
+            }
+        }
+        final int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current.length - pos;
+    }
+
+    private boolean nextSegment() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (currentSegment != null) {
+            current = EMPTY;
+            release(currentSegment);
+            currentSegment = null;
+        }
+        submit();
+        if (pending.isEmpty()) {
+            return false;
+        }
+        current = await(pending.poll());
+        pos = 0;
+        currentSegment = pendingSegments.poll();
+        listener.accept(currentSegment.offset() + currentSegment.length());
+        submit();
+        return true;
+    }
+
+    private void submit() throws InterruptedIOException {
+        while (pending.size() < ahead && submitted < segments.size()) {
+            final GzipSegmentIndex.Segment segment = segments.get(submitted);
+            // The next segment is always read, further ones if the budget allows
+            if (pending.isEmpty() && currentSegment == null) {
+                memoryBudget.reserve(bytes(segment));
+            } else if (!memoryBudget.tryReserve(bytes(segment))) {
+                break;
+            }
+            reserved += bytes(segment);
+            submitted++;
+            pending.add(inflaters.submit(() -> inflate(segment)));
+            pendingSegments.add(segment);
+        }
+    }
+
+    /**
+     * @return heap taken by a segment while it is inflated and read
+     */
+    private static long bytes(GzipSegmentIndex.Segment segment) {
+        return (long) segment.length() + segment.size();
+    }
+
+    private void release(GzipSegmentIndex.Segment segment) {
+        reserved -= bytes(segment);
+        memoryBudget.release(bytes(segment));
+    }
+
+    private byte[] inflate(GzipSegmentIndex.Segment segment) throws IOException {
+        final ByteBuffer member = ByteBuffer.allocate(segment.length());
+        while (member.hasRemaining()) {
+            if (channel.read(member, segment.offset() + member.position()) < 0) {
+                throw new EOFException("Segment at offset " + segment.offset() + " of " + file + " is truncated");
+            }
+        }
+        try (final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(member.array()))) {
+            final byte[] data = in.readNBytes(segment.size());
+            if (data.length != segment.size() || in.read() != -1) {
+                throw new IOException("Segment at offset " + segment.offset() + " of " + file
+                        + " does not match its index");
+            }
+            return data;
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while inflating segment");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException("Failed to inflate segment", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current = EMPTY;
+        pending.clear();
+        inflaters.shutdownNow();
+        memoryBudget.release(reserved);
+        reserved = 0L;
+        channel.close();
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a multi-member gzip file whose members hold {@code segmentSize}
+ * uncompressed bytes each. The members are compressed on worker threads
+ * and written in order; {@link #finish()} returns their
+ * {@link GzipSegmentIndex}, so that {@link SegmentedGzipInputStream} can
+ * inflate them on several threads again. For gunzip the file is the same
+ * data as a single-member file. Segment buffers are reserved against the
+ * buffer pool of the {@link MemoryBudget} until their member was written;
+ * fewer members are compressed ahead if the pool is short.
+ */
+public final class SegmentedGzipOutputStream extends OutputStream {
+
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private record Member(byte[] data, int size) {
+    }
+
+    private final OutputStream out;
+    private final int segmentSize;
+    private final int ahead;
+    private final MemoryBudget memoryBudget;
+    private final ExecutorService deflaters;
+    private final Deque<Future<Member>> pending = new ArrayDeque<>();
+    private final List<GzipSegmentIndex.Segment> segments = new ArrayList<>();
+    private byte[] data;
+    private int fill = 0;
+    private long offset = 0L;
+    private long reserved = 0L;
+    private boolean closed = false;
+
+    /**
+     * @param threads      number of compressing threads
+     * @param memoryBudget pool the segments are reserved against, see
+     *                     {@link MemoryBudget#buffers()}
+     */
+    public SegmentedGzipOutputStream(Path file, int segmentSize, int threads, MemoryBudget memoryBudget)
+            throws IOException {
+        memoryBudget.reserve(segmentSize);
+        this.out = new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE);
+        this.segmentSize = segmentSize;
+        this.ahead = threads * 2;
+        this.memoryBudget = memoryBudget;
+        this.deflaters = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("deflate-", 0).daemon().factory());
+        reserved += segmentSize;
+        this.data = new byte[segmentSize];
+    }
+
+    /**
+     * @return stream reading from {@code in} that writes everything read to
+     *         this stream as well
+     */
+    public InputStream tee(InputStream in) {
+        return new FilterInputStream(in) {
+
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b != -1) {
+                    write(b);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                final int n = super.read(b, off, len);
+                if (n > 0) {
+                    write(b, off, n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                // Skipped bytes have to be written as well
+                final byte[] skipped = new byte[(int) Math.min(Math.max(n, 0L), IO_BUFFER_SIZE)];
+                return Math.max(read(skipped, 0, skipped.length), 0);
+            }
+        };
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (fill == segmentSize) {
+            submit();
+        }
+        data[fill++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (fill == segmentSize) {
+                submit();
+            }
+            final int n = Math.min(len, segmentSize - fill);
+            System.arraycopy(b, off, data, fill, n);
+            fill += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes the remaining members and closes the file.
+     */
+    public GzipSegmentIndex finish() throws IOException {
+        if (fill > 0 || segments.size() + pending.size() == 0) {
+            compress();
+        }
+        while (!pending.isEmpty()) {
+            writeMember(await(pending.poll()));
+        }
+        close();
+        return new GzipSegmentIndex(offset, List.copyOf(segments));
+    }
+
+    private void submit() throws IOException {
+        compress();
+        while (pending.size() >= ahead) {
+            writeMember(await(pending.poll()));
+        }
+        // Write members first if the budget has no room for another buffer
+        while (!memoryBudget.tryReserve(segmentSize)) {
+            if (pending.isEmpty()) {
+                memoryBudget.reserve(segmentSize);
+                break;
+            }
+            writeMember(await(pending.poll()));
+        }
+        reserved += segmentSize;
+        data = new byte[segmentSize];
+    }
+
+    private void compress() {
+        final byte[] segment = data;
+        final int size = fill;
+        pending.add(deflaters.submit(() -> deflate(segment, size)));
+        data = null;
+        fill = 0;
+    }
+
+    private static Member deflate(byte[] segment, int size) throws IOException {
+        final ByteArrayOutputStream member = new ByteArrayOutputStream(size / 4 + 64);
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(member, IO_BUFFER_SIZE)) {
+            gzip.write(segment, 0, size);
+        }
+        return new Member(member.toByteArray(), size);
+    }
+
+    private void writeMember(Member member) throws IOException {
+        out.write(member.data());
+        segments.add(new GzipSegmentIndex.Segment(offset, member.data().length, member.size()));
+        offset += member.data().length;
+        reserved -= segmentSize;
+        memoryBudget.release(segmentSize);
+    }
+
+    private static Member await(Future<Member> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing segment");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress segment", e.getCause());
+        }
+    }
+
+    /**
+     * Closes the file without writing pending members unless
+     * {@link #finish()} was called before.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        data = null;
+        pending.clear();
+        deflaters.shutdownNow();
+        memoryBudget.release(reserved);
+        reserved = 0L;
+        out.close();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Matches a fixed element path, e.g. {@code rdf:RDF/rdf:Description/gndo:oldAuthorityNumber},
+ * against the start and end element events of a StAX reader without keeping
+ * a DOM or a stack of names.
+ */
+final class StaxPathMatcher {
+
+    private final QName[] path;
+    private int depth = 0;
+    private int matchedDepth = 0;
+
+    StaxPathMatcher(QName... path) {
+        this.path = path;
+    }
+
+    void startElement(QName name) {
+        depth++;
+        if (matchedDepth == depth - 1 && depth <= path.length && path[depth - 1].equals(name)) {
+            matchedDepth = depth;
+        }
+    }
+
+    void endElement() {
+        if (matchedDepth == depth) {
+            matchedDepth--;
+        }
+        depth--;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    /**
+     * @return true if the current element is the last element of the path
+     */
+    boolean matches() {
+        return matchedDepth == path.length && depth == path.length;
+    }
+
+    /**
+     * @return true if the current element is the given element of the path,
+     *         counted from 1 for the root
+     */
+    boolean matches(int level) {
+        return depth == level && matchedDepth >= level;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.xml.stream.XMLStreamException;
+import org.slf4j.Logger;
+
+/**
+ * Collects the recoveries from malformed XML of one dataset or job: entities
+ * repaired by {@link XmlSanitizingReader} and records skipped because they
+ * could not be parsed. Occurrences are counted per source and pattern, the
+ * first few of each are kept as examples, and at most {@code logLimit}
+ * warnings per {@code logInterval} are logged. {@link #summarize(String)}
+ * logs a table of what happened since the last call. Counts are also
+ * published as the {@code zdbdump.xml.recovered} counter.
+ */
+final class XmlRecoveryDiagnostics {
+
+    private static final int SAMPLES_PER_PATTERN = 3;
+    private static final int MAX_PATTERNS = 64;
+    private static final String OTHER = "other";
+
+    private record Key(String source, String kind, String pattern) {
+    }
+
+    private static final class Stat {
+
+        private final LongAdder count = new LongAdder();
+        private final List<String> samples = new ArrayList<>(SAMPLES_PER_PATTERN);
+        private final Counter counter;
+
+        private Stat(Counter counter) {
+            this.counter = counter;
+        }
+
+        private synchronized boolean wantsSample() {
+            return samples.size() < SAMPLES_PER_PATTERN;
+        }
+
+        private synchronized void sample(String example) {
+            if (samples.size() < SAMPLES_PER_PATTERN) {
+                samples.add(example);
+            }
+        }
+
+        private synchronized List<String> samples() {
+            return List.copyOf(samples);
+        }
+    }
+
+    private final String scope;
+    private final Logger log;
+    private final int logLimit;
+    private final Duration logInterval;
+    private final MeterRegistry registry;
+    private final Map<Key, Stat> stats = new ConcurrentHashMap<>();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger logged = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final LongAdder recovered = new LongAdder();
+
+    /**
+     * @param scope    dataset or job name, used in log messages and as metric
+     *                 tag
+     * @param registry may be null if no metrics are wanted
+     */
+    XmlRecoveryDiagnostics(String scope, Logger log, int logLimit, Duration logInterval, MeterRegistry registry) {
+        this.scope = scope;
+        this.log = log;
+        this.logLimit = logLimit;
+        this.logInterval = logInterval;
+        this.registry = registry;
+    }
+
+    /**
+     * A malformed entity was replaced by {@code &amp;} followed by the
+     * original characters.
+     */
+    void recoveredEntity(String source, String entity, int line, int column, XmlSanitizingReader reader) {
+        final Stat stat = stat(source, "entity", entityPattern(entity));
+        final boolean sample = stat.wantsSample();
+        final boolean logIt = tryLog();
+        if (!sample && !logIt) {
+            return;
+        }
+        final String context = reader.getRecentContext();
+        if (sample) {
+            stat.sample("line " + line + ", column " + column + ": '" + context + "'");
+        }
+        if (logIt) {
+            log.warn("Recovered malformed XML entity in {} at line {}, column {}: '&{}'",
+                    source, line, column, abbreviate(entity));
+        }
+    }
+
+    /**
+     * A record or the rest of a source could not be parsed and was skipped.
+     *
+     * @param recordId may be null if the failure is not bound to a record
+     * @param reader   may be null if no context is available
+     */
+    void malformedRecord(String source, String recordId, Exception exception, XmlSanitizingReader reader) {
+        final XMLStreamException xmlException = findXmlStreamException(exception);
+        final Throwable cause = xmlException != null ? xmlException : exception;
+        final Stat stat = stat(source, "record", cause.getClass().getSimpleName());
+        final boolean sample = stat.wantsSample();
+        final boolean logIt = tryLog();
+        if (!sample && !logIt) {
+            return;
+        }
+        final String datasetInfo = recordId != null && !recordId.isBlank() ? ", dataset=" + recordId : "";
+        final String location = xmlException != null && xmlException.getLocation() != null
+                ? " at line " + xmlException.getLocation().getLineNumber()
+                        + ", column " + xmlException.getLocation().getColumnNumber()
+                : "";
+        final String message = (xmlException != null ? xmlException : exception).getMessage();
+        final String context = buildContext(reader);
+        if (sample) {
+            stat.sample((datasetInfo.isEmpty() ? "" : recordId) + location + ": " + message + context);
+        }
+        if (logIt) {
+            log.warn("Malformed XML in {}{}{}: {}{}", source, datasetInfo, location, message, context);
+        }
+    }
+
+    /**
+     * @return all recoveries so far, unlike the summary not reset per phase
+     */
+    long recovered() {
+        return recovered.sum();
+    }
+
+    /**
+     * Logs the recoveries since the last call as a table and starts over. The
+     * metrics keep counting.
+     */
+    void summarize(String phase) {
+        if (stats.isEmpty()) {
+            return;
+        }
+        final List<Map.Entry<Key, Stat>> rows = new ArrayList<>(stats.entrySet());
+        stats.clear();
+        rows.sort(Comparator.comparingLong((Map.Entry<Key, Stat> e) -> e.getValue().count.sum()).reversed());
+        final long total = rows.stream().mapToLong(e -> e.getValue().count.sum()).sum();
+        final StringBuilder table = new StringBuilder();
+        table.append(String.format("%-32s %-7s %-24s %12s  %s", "source", "kind", "pattern", "count", "example"));
+        for (final Map.Entry<Key, Stat> row : rows) {
+            final List<String> samples = row.getValue().samples();
+            table.append('\n').append(String.format("%-32s %-7s %-24s %12d  %s",
+                    abbreviate(row.getKey().source(), 32),
+                    row.getKey().kind(),
+                    row.getKey().pattern(),
+                    row.getValue().count.sum(),
+                    samples.isEmpty() ? "" : samples.getFirst()));
+            for (int i = 1; i < samples.size(); i++) {
+                table.append('\n').append(String.format("%-78s  %s", "", samples.get(i)));
+            }
+        }
+        final long dropped = suppressed.getAndSet(0L);
+        log.warn("XML recovery summary of {} in phase {}: {} recoveries, {} warnings suppressed\n{}",
+                scope, phase, total, dropped, table);
+    }
+
+    private Stat stat(String sourceDescription, String kind, String pattern) {
+        final String source = sourceKey(sourceDescription);
+        Key key = new Key(source, kind, pattern);
+        if (!stats.containsKey(key) && stats.size() >= MAX_PATTERNS) {
+            key = new Key(source, kind, OTHER);
+        }
+        final Stat stat = stats.computeIfAbsent(key, k -> new Stat(registry != null
+                ? Counter.builder("zdbdump.xml.recovered")
+                        .description("Malformed XML entities repaired and records skipped")
+                        .tag("dataset", scope)
+                        .tag("source", k.source())
+                        .tag("kind", k.kind())
+                        .tag("pattern", k.pattern())
+                        .register(registry)
+                : null));
+        stat.count.increment();
+        recovered.increment();
+        if (stat.counter != null) {
+            stat.counter.increment();
+        }
+        return stat;
+    }
+
+    private boolean tryLog() {
+        final long now = System.nanoTime();
+        final long start = windowStart.get();
+        if (now - start >= logInterval.toNanos() && windowStart.compareAndSet(start, now)) {
+            logged.set(0);
+            final long dropped = suppressed.getAndSet(0L);
+            if (dropped > 0L) {
+                log.warn("Suppressed {} XML recovery warnings of {} in the last {}", dropped, scope, logInterval);
+            }
+        }
+        if (logged.incrementAndGet() <= logLimit) {
+            return true;
+        }
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Sources are URLs of harvest pages or dump files. Only the last path
+     * segment without query identifies them, so the number of metric tags
+     * stays bounded.
+     */
+    static String sourceKey(String sourceDescription) {
+        if (sourceDescription == null) {
+            return OTHER;
+        }
+        String source = sourceDescription;
+        final int query = source.indexOf('?');
+        if (query >= 0) {
+            source = source.substring(0, query);
+        }
+        final int slash = Math.max(source.lastIndexOf('/'), source.lastIndexOf('\\'));
+        return slash >= 0 && slash < source.length() - 1 ? source.substring(slash + 1) : source;
+    }
+
+    /**
+     * Generalizes the characters following a bare ampersand, e.g. {@code AT&T}
+     * and {@code R&D} both become {@code &text}.
+     */
+    static String entityPattern(String entity) {
+        if (entity.isEmpty()) {
+            return "&";
+        }
+        if (entity.endsWith(";")) {
+            // Undeclared named entities like &nbsp; are few, keep them apart
+            return entity.startsWith("#") ? "&#invalid;" : "&" + abbreviate(entity, 16);
+        }
+        if (entity.startsWith("#")) {
+            return "&#num";
+        }
+        return "&text";
+    }
+
+    private static String buildContext(XmlSanitizingReader reader) {
+        if (reader == null) {
+            return "";
+        }
+        final String recentContext = reader.getRecentContext();
+        final String lastMalformedEntity = reader.getLastMalformedEntitySummary();
+        final List<String> parts = new ArrayList<>();
+        if (!recentContext.isBlank()) {
+            parts.add("recentContext='" + recentContext + "'");
+        }
+        if (lastMalformedEntity != null && !lastMalformedEntity.isBlank()) {
+            parts.add(lastMalformedEntity);
+        }
+        return parts.isEmpty() ? "" : ". " + String.join(", ", parts);
+    }
+
+    private static XMLStreamException findXmlStreamException(Throwable throwable) {
+        Throwable current = throwable;
+        while (current != null) {
+            if (current instanceof XMLStreamException xmlStreamException) {
+                return xmlStreamException;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+
+    private static String abbreviate(String value) {
+        return abbreviate(value, 80);
+    }
+
+    private static String abbreviate(String value, int length) {
+        if (value == null || value.isBlank()) {
+            return "";
+        }
+        return value.length() > length ? value.substring(0, length) + "..." : value;
+    }
+}
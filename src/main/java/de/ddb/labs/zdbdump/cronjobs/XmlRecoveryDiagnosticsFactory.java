@@ -0,0 +1,45 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates {@link XmlRecoveryDiagnostics} with the configured log rate limit,
+ * reporting to the actuator meter registry.
+ */
+@Component
+class XmlRecoveryDiagnosticsFactory {
+
+    @Value("${zdbdump.xml-recovery.log-limit}")
+    private int logLimit;
+
+    @Value("${zdbdump.xml-recovery.log-interval}")
+    private Duration logInterval;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    XmlRecoveryDiagnostics create(String scope, Logger log) {
+        return new XmlRecoveryDiagnostics(scope, log, logLimit, logInterval, meterRegistry.getIfAvailable());
+    }
+}
@@ -15,20 +15,26 @@
  */
 package de.ddb.labs.zdbdump.cronjobs;
 
+import de.ddb.labs.zdbdump.monitoring.SanitizerEvent;
+import java.io.BufferedReader;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.PushbackReader;
 import java.io.Reader;
-import org.slf4j.Logger;
 
 final class XmlSanitizingReader extends Reader {
 
     private static final int MAX_ENTITY_LOOKAHEAD = 32;
     private static final int RECENT_CONTEXT_LIMIT = 240;
+    private static final int EVENT_CHUNK_CHARS = 1 << 20;
 
     private final PushbackReader delegate;
+    private final UpstreamTimingReader upstream;
     private final String sourceDescription;
-    private final Logger log;
-    private final StringBuilder recentContext = new StringBuilder();
+    private final XmlRecoveryDiagnostics diagnostics;
+    // Ring buffer of the last characters read, only turned into a string on demand
+    private final char[] recentContext = new char[RECENT_CONTEXT_LIMIT];
+    private long recentContextLength = 0L;
     private String pending = "";
     private int pendingIndex = 0;
     private int line = 1;
@@ -36,11 +42,17 @@ final class XmlSanitizingReader extends Reader {
     private String lastMalformedEntity = null;
     private int lastMalformedEntityLine = -1;
     private int lastMalformedEntityColumn = -1;
-
-    XmlSanitizingReader(Reader delegate, String sourceDescription, Logger log) {
-        this.delegate = new PushbackReader(delegate, MAX_ENTITY_LOOKAHEAD);
+    private SanitizerEvent chunkEvent;
+    private long chunkChars = 0L;
+    private long chunkReadNanos = 0L;
+    private int chunkRecoveredEntities = 0;
+
+    XmlSanitizingReader(Reader delegate, String sourceDescription, XmlRecoveryDiagnostics diagnostics) {
+        // The buffer keeps upstream reads in bulk so they can be timed cheaply
+        this.upstream = new UpstreamTimingReader(delegate);
+        this.delegate = new PushbackReader(new BufferedReader(upstream), MAX_ENTITY_LOOKAHEAD);
         this.sourceDescription = sourceDescription;
-        this.log = log;
+        this.diagnostics = diagnostics;
     }
 
     @Override
@@ -48,16 +60,49 @@ final class XmlSanitizingReader extends Reader {
         if (len == 0) {
             return 0;
         }
+        if (chunkEvent == null) {
+            chunkEvent = new SanitizerEvent();
+            chunkEvent.begin();
+            upstream.nanos = 0L;
+        }
+        final boolean timed = chunkEvent.isEnabled();
+        final long started = timed ? System.nanoTime() : 0L;
         int charsRead = 0;
         while (charsRead < len) {
             final int nextChar = read();
             if (nextChar == -1) {
-                return charsRead == 0 ? -1 : charsRead;
+                break;
             }
             cbuf[off + charsRead] = (char) nextChar;
             charsRead++;
         }
-        return charsRead;
+        if (timed) {
+            chunkReadNanos += System.nanoTime() - started;
+            chunkChars += charsRead;
+            if (chunkChars >= EVENT_CHUNK_CHARS) {
+                commitChunkEvent();
+            }
+        }
+        return charsRead == 0 ? -1 : charsRead;
+    }
+
+    private void commitChunkEvent() {
+        if (chunkEvent == null) {
+            return;
+        }
+        chunkEvent.end();
+        if (chunkEvent.shouldCommit()) {
+            chunkEvent.source = sourceDescription;
+            chunkEvent.characters = chunkChars;
+            chunkEvent.upstreamTime = upstream.nanos;
+            chunkEvent.sanitizerTime = Math.max(0L, chunkReadNanos - upstream.nanos);
+            chunkEvent.recoveredEntities = chunkRecoveredEntities;
+            chunkEvent.commit();
+        }
+        chunkEvent = null;
+        chunkChars = 0L;
+        chunkReadNanos = 0L;
+        chunkRecoveredEntities = 0;
     }
 
     @Override
@@ -108,12 +153,8 @@ final class XmlSanitizingReader extends Reader {
             lastMalformedEntity = entity;
             lastMalformedEntityLine = entityLine;
             lastMalformedEntityColumn = entityColumn;
-            log.warn(
-                    "Recovered malformed XML entity in {} at line {}, column {}: '&{}'",
-                    sourceDescription,
-                    entityLine,
-                    entityColumn,
-                    abbreviate(entity));
+            chunkRecoveredEntities++;
+            diagnostics.recoveredEntity(sourceDescription, entity, entityLine, entityColumn, this);
             pending = "amp;" + entity;
         }
         updatePosition('&');
@@ -131,7 +172,15 @@ final class XmlSanitizingReader extends Reader {
     }
 
     String getRecentContext() {
-        return abbreviate(escapeControlCharacters(recentContext.toString()));
+        final int length = (int) Math.min(recentContextLength, RECENT_CONTEXT_LIMIT);
+        final int start = (int) ((recentContextLength - length) % RECENT_CONTEXT_LIMIT);
+        final StringBuilder context = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            context.append(recentContext[(start + i) % RECENT_CONTEXT_LIMIT]);
+        }
+        final String escaped = escapeControlCharacters(context.toString());
+        // Keep the end, it is next to the position the context is asked for
+        return escaped.length() > 80 ? "..." + escaped.substring(escaped.length() - 80) : escaped;
     }
 
     String getLastMalformedEntitySummary() {
@@ -143,10 +192,7 @@ final class XmlSanitizingReader extends Reader {
     }
 
     private void appendRecentContext(char currentChar) {
-        recentContext.append(currentChar);
-        if (recentContext.length() > RECENT_CONTEXT_LIMIT) {
-            recentContext.delete(0, recentContext.length() - RECENT_CONTEXT_LIMIT);
-        }
+        recentContext[(int) (recentContextLength++ % RECENT_CONTEXT_LIMIT)] = currentChar;
     }
 
     private String abbreviate(String value) {
@@ -170,6 +216,30 @@ final class XmlSanitizingReader extends Reader {
 
     @Override
     public void close() throws IOException {
+        commitChunkEvent();
         delegate.close();
     }
+
+    /**
+     * Sums up the time spent in the wrapped reader, i.e. decoding and
+     * inflating the source.
+     */
+    private static final class UpstreamTimingReader extends FilterReader {
+
+        private long nanos = 0L;
+
+        private UpstreamTimingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            final long started = System.nanoTime();
+            try {
+                return super.read(cbuf, off, len);
+            } finally {
+                nanos += System.nanoTime() - started;
+            }
+        }
+    }
 }
@@ -15,73 +15,91 @@
  */
 package de.ddb.labs.zdbdump.cronjobs;
 
+import de.ddb.labs.zdbdump.monitoring.HarvestRequestEvent;
+import de.ddb.labs.zdbdump.monitoring.RecordEvent;
+import de.ddb.labs.zdbdump.output.OutputIndex;
+import de.ddb.labs.zdbdump.store.DatestampIndex;
+import de.ddb.labs.zdbdump.store.ExternalRecordSorter;
+import de.ddb.labs.zdbdump.store.RecordIndex;
+import de.ddb.labs.zdbdump.store.RecordStore;
+import de.ddb.labs.zdbdump.store.StatisticsIndex;
+import de.ddb.labs.zdbdump.store.StoreManager;
+import de.ddb.labs.zdbdump.store.TitleIndex;
+import de.ddb.labs.zdbdump.store.TripleIndex;
+import jakarta.annotation.PostConstruct;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.Reader;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import javax.xml.stream.XMLEventFactory;
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.Namespace;
-import javax.xml.stream.events.XMLEvent;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamResult;
-import org.h2.mvstore.MVMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.resilience.annotation.Retryable;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
 
 @Service
 public class ZdbDumpCreationCronJob {
 
     private static final Logger log = LoggerFactory.getLogger(ZdbDumpCreationCronJob.class);
     private static final int PROGRESS_LOG_STEP = 100_000;
+    private static final int STORE_BATCH_SIZE = 1_000;
     private static final int HARVEST_RETRY_ATTEMPTS = 3;
     private static final long HARVEST_RETRY_DELAY_MILLIS = 2_000L;
+    private static final int HARVEST_WINDOW_MINUTES = 30;
+    // Windows ending earlier are considered closed, i.e. the repository will
+    // not add records with a datestamp inside them any more
+    private static final Duration HARVEST_WINDOW_SETTLE_TIME = Duration.ofHours(1);
+    private static final int BASE_DUMP_THREADS = 4;
 
-    private final static String DUMP_URL = "https://data.dnb.de/opendata/zdb_lds.rdf.gz";
-    private final static String HARVEST_URL = "https://services.dnb.de/oai/repository?verb=ListRecords&metadataPrefix=RDFxml&set=zdb";
-    private final static String HARVEST_WITH_RESUMPTION_TOKEN_URL = "https://services.dnb.de/oai/repository?verb=ListRecords&resumptionToken=";
-    private final static String BASE_DUMP_CACHE_FILENAME = "zdb_lds_base.rdf.gz";
-    private final static String BASE_DUMP_METADATA_FILENAME = "zdb_lds_base.metadata";
+    private final static String ENGINE_MERGE = "merge";
+    private final static String OAI_NS = "http://www.openarchives.org/OAI/2.0/";
+    private final static String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private final static String DELETED_MARKER = "";
 
     @Value("${zdbdump.path.output}")
     private String outputPath;
@@ -89,36 +107,195 @@ public class ZdbDumpCreationCronJob {
     @Value("${zdbdump.path.temp}")
     private String tempPath;
 
-    @Value("${zdbdump.output.filename}")
-    private String outputFilename;
+    @Value("${zdbdump.baseurl}")
+    private String baseurl;
+
+    @Value("${zdbdump.engine}")
+    private String engine;
+
+    @Value("${zdbdump.workers}")
+    private int workers;
+
+    @Value("${zdbdump.store.bulk-load}")
+    private boolean bulkLoad;
+
+    @Value("${zdbdump.store.sort-buffer}")
+    private long sortBuffer;
+
+    @Value("${zdbdump.zsync.block-size}")
+    private int zsyncBlockSize;
+
+    @Value("${zdbdump.base-dump.segment-size}")
+    private int baseDumpSegmentSize;
+
+    @Value("${zdbdump.base-dump.threads}")
+    private int baseDumpThreads;
+
+    @Autowired
+    private DatasetProperties datasetProperties;
+
+    @Autowired
+    private StoreManager storeManager;
+
+    @Autowired
+    private OutputIndex outputIndex;
+
+    @Autowired
+    private HarvestPageCache pageCache;
 
     @Autowired
-    private MVMap<String, String> mvStoreZdbData;
+    private MemoryBudget memoryBudget;
+
+    @Autowired
+    private XmlRecoveryDiagnosticsFactory xmlDiagnosticsFactory;
+
+    @Autowired
+    private RunHistory runHistory;
+
+    @Autowired
+    private JsonMapper jsonMapper;
 
     @Autowired
     private RestClient restClient;
 
-    private final AtomicBoolean isRunning = new AtomicBoolean(false);
+    @Autowired
+    private TaskExecutor dumpJobExecutor;
+
+    // Runs have to go through the proxy for @Retryable. A provider instead of a
+    // @Lazy proxy, whose class would clash with the AOP proxy under Spring AOT.
+    @Autowired
+    private ObjectProvider<ZdbDumpCreationCronJob> self;
+
+    private final Map<String, DatasetJob> jobs = new LinkedHashMap<>();
+
+    private Semaphore workerPermits;
+
+    /**
+     * @return status of all enabled datasets, in configuration order
+     */
+    public Map<String, JobStatus.Snapshot> getStatus() {
+        final Map<String, JobStatus.Snapshot> snapshots = new LinkedHashMap<>();
+        jobs.forEach((name, job) -> snapshots.put(name, job.status.snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * Looks up records by a value of a secondary index, e.g. an ISSN.
+     *
+     * @return IDs of the matching records or null if the dataset or the index
+     *         is unknown
+     */
+    public List<String> lookup(String dataset, String index, String value, int limit) {
+        final DatasetJob job = jobs.get(dataset);
+        if (job == null || !job.dataset.indexes().containsKey(index)) {
+            return null;
+        }
+        job.openStores(storeManager);
+        return job.index.lookup(index, value, limit);
+    }
 
-    public boolean isRunning() {
-        return isRunning.get();
+    /**
+     * Searches the title index of a dataset.
+     *
+     * @param contains match anywhere in a title instead of at its start
+     * @return the hits of the page or null if the dataset has no title index
+     */
+    public TitleIndex.Result searchTitles(String dataset, String query, boolean contains, int offset, int limit) {
+        final DatasetJob job = jobs.get(dataset);
+        if (job == null) {
+            return null;
+        }
+        job.openStores(storeManager);
+        if (job.titles == null) {
+            return null;
+        }
+        return contains
+                ? job.titles.searchContains(query, offset, limit)
+                : job.titles.searchPrefix(query, offset, limit);
     }
 
-    public void setRunning(boolean running) {
-        isRunning.set(running);
+    /**
+     * @return the newest runs of all enabled datasets, newest first, in
+     *         configuration order
+     */
+    public Map<String, List<RunHistory.Run>> getRuns(int limit) {
+        final Map<String, List<RunHistory.Run>> runs = new LinkedHashMap<>();
+        jobs.keySet().forEach(name -> runs.put(name, runHistory.list(name, limit)));
+        return runs;
     }
 
-    private final XMLInputFactory xif = XMLInputFactory.newInstance();
+    /**
+     * @return the triples matching a pattern or null if the dataset keeps no
+     *         triples
+     * @see TripleIndex#match(String, String, String, long, int)
+     */
+    public TripleIndex.Fragment matchTriples(String dataset, String subject, String predicate, String object,
+            long offset, int limit) {
+        final DatasetJob job = jobs.get(dataset);
+        if (job == null) {
+            return null;
+        }
+        job.openStores(storeManager);
+        if (job.triples == null) {
+            return null;
+        }
+        return job.triples.match(subject, predicate, object, offset, limit);
+    }
 
-    private final XMLEventFactory xmlEventFactory = XMLEventFactory.newFactory();
+    /**
+     * @return the record store of a dataset offered via OAI-PMH or null
+     */
+    public RecordStore oaiRecords(String dataset) {
+        final DatasetJob job = jobs.get(dataset);
+        if (job == null || !job.oai) {
+            return null;
+        }
+        job.openStores(storeManager);
+        return job.store;
+    }
 
-    private int dumpReadCount = 0;
-    private int harvestUpdateCount = 0;
-    private int outputWriteCount = 0;
+    /**
+     * @return the datestamps of a dataset offered via OAI-PMH or null
+     */
+    public DatestampIndex oaiDatestamps(String dataset) {
+        final DatasetJob job = jobs.get(dataset);
+        if (job == null || !job.oai) {
+            return null;
+        }
+        job.openStores(storeManager);
+        return job.datestamps;
+    }
+
+    /**
+     * @return names of the datasets offered via OAI-PMH
+     */
+    public List<String> oaiDatasets() {
+        final List<String> names = new ArrayList<>();
+        jobs.forEach((name, job) -> {
+            if (job.oai) {
+                names.add(name);
+            }
+        });
+        return names;
+    }
+
+    /**
+     * @return the OAI metadata prefix of the records of a dataset
+     */
+    public String metadataPrefix(String dataset) {
+        final DatasetJob job = jobs.get(dataset);
+        return job != null ? job.dataset.metadataPrefix() : null;
+    }
+
+    public boolean hasDataset(String name) {
+        return jobs.containsKey(name);
+    }
+
+    private static final XMLEventFactory xmlEventFactory = XMLEventFactory.newFactory();
 
-    private final List<Namespace> nsl = createNamespaces();
+    private static final List<Namespace> NAMESPACES = createNamespaces();
 
-    private List<Namespace> createNamespaces() {
+    private static List<Namespace> createNamespaces() {
         final List<Namespace> namespaces = new ArrayList<>();
         namespaces.add(xmlEventFactory.createNamespace("schema", "http://schema.org/"));
         namespaces.add(xmlEventFactory.createNamespace("gndo", "https://d-nb.info/standards/elementset/gnd#"));
@@ -155,90 +332,351 @@ public class ZdbDumpCreationCronJob {
         return namespaces;
     }
 
-    public ZdbDumpCreationCronJob() {
-
+    private static XMLInputFactory createXmlInputFactory() {
+        final XMLInputFactory xif = XMLInputFactory.newInstance();
         xif.setProperty("jdk.xml.maxGeneralEntitySizeLimit", Integer.valueOf(1_000_000));
         xif.setProperty("jdk.xml.totalEntitySizeLimit", Integer.valueOf(10_000_000));
 
         // Optional, but fail-safe
         xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
         xif.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        return xif;
+    }
+
+    @PostConstruct
+    void init() {
+        workerPermits = new Semaphore(Math.max(1, workers));
+        final boolean merge = ENGINE_MERGE.equalsIgnoreCase(engine);
+        datasetProperties.datasets().forEach((name, dataset) -> {
+            if (!dataset.enabled()) {
+                return;
+            }
+            if (merge && dataset.oai()) {
+                log.info("Dataset {} is not offered via OAI-PMH, the merge engine keeps no complete record store", name);
+            }
+            final String storeName = dataset.store() != null ? dataset.store() : name;
+            jobs.put(name, new DatasetJob(
+                    name,
+                    dataset,
+                    storeName,
+                    createXmlInputFactory(),
+                    xmlDiagnosticsFactory.create(name, log),
+                    new RecordBuffer(Path.of(tempPath).resolve(name + "_record.spill"), memoryBudget.spillThreshold()),
+                    dataset.oai() && !merge));
+        });
+        log.info("Configured datasets {} with {} worker(s)", jobs.keySet(), workerPermits.availablePermits());
     }
 
     @Scheduled(cron = "${zdbdump.cron.job}")
-    @Retryable(retryFor = {
-            Exception.class }, maxAttemptsExpression = "5", backoff = @Backoff(delayExpression = "600000"))
-    public void run() {
+    public void scheduledRun() {
+        submit();
+    }
 
-        if (!isRunning.compareAndSet(false, true)) {
-            log.info("ZDB/RDF dump creation already running. Abort.");
+    /**
+     * Starts dump runs for all enabled datasets on the job executor. At most
+     * {@code zdbdump.workers} of them are processed at the same time, the
+     * others wait in phase {@link JobStatus.Phase#QUEUED}.
+     *
+     * @return false if all datasets are already running
+     */
+    public boolean submit() {
+        boolean submitted = false;
+        for (final String name : jobs.keySet()) {
+            submitted |= submit(name);
+        }
+        return submitted;
+    }
+
+    /**
+     * Starts a dump run for one dataset on the job executor.
+     *
+     * @return false if the dataset is unknown or already running
+     */
+    public boolean submit(String dataset) {
+        final DatasetJob job = jobs.get(dataset);
+        if (job == null) {
+            return false;
+        }
+        if (job.running.get()) {
+            log.info("Dump creation for {} already running. Abort.", dataset);
+            return false;
+        }
+        dumpJobExecutor.execute(() -> self.getObject().run(dataset));
+        return true;
+    }
+
+    @Retryable(includes = Exception.class, maxRetries = 4, delay = 600000)
+    public void run(String dataset) {
+
+        final DatasetJob job = jobs.get(dataset);
+        if (job == null) {
+            throw new IllegalArgumentException("Unknown dataset " + dataset);
+        }
+        if (!job.running.compareAndSet(false, true)) {
+            log.info("Dump creation for {} already running. Abort.", dataset);
             return;
         }
 
+        final String threadName = Thread.currentThread().getName();
+        Thread.currentThread().setName("zdbdump-" + dataset);
+        job.status.started();
+        job.status.phase(JobStatus.Phase.QUEUED);
+        boolean permitted = false;
+        boolean succeeded = false;
+        Exception failure = null;
         try {
+            workerPermits.acquire();
+            permitted = true;
+            job.openStores(storeManager);
+
             final long startedAt = System.currentTimeMillis();
-            final Path baseDumpCachePath = Path.of(tempPath).resolve(BASE_DUMP_CACHE_FILENAME);
-            final Path tempDumpPath = Path.of(tempPath).resolve(outputFilename);
+            final String outputFilename = job.dataset.outputFilename();
+            final Path baseDumpCachePath = Path.of(tempPath).resolve(job.dataset.baseDumpFilename());
             final Path targetDumpPath = Path.of(outputPath).resolve(outputFilename);
 
-            dumpReadCount = 0;
-            harvestUpdateCount = 0;
-            outputWriteCount = 0;
-
-            downloadZdbDumpIfNeeded(baseDumpCachePath);
-
-            loadZdbDumpToCache(baseDumpCachePath.toString());
-
-            LocalDateTime ldt = getLastModifiedRemote();
-            log.info("Last modification of dump at {} was {}", DUMP_URL, ldt);
-            int harvestWindowCount = 0;
-            if (ldt.isBefore(LocalDateTime.now())) {
-                log.info("Start to harvest dataset updates from {} to cache ...", HARVEST_URL);
+            job.resetCounters();
+
+            final LocalDateTime baseLastModified = downloadZdbDumpIfNeeded(job, baseDumpCachePath);
+
+            final Map<Path, Long> outputs;
+            if (ENGINE_MERGE.equalsIgnoreCase(engine)) {
+                final boolean resumed = job.overlayCheckpoint.isBasedOn(baseLastModified);
+                if (resumed) {
+                    log.info("Overlay of {} already holds changes since base dump of {}. Resuming harvest.",
+                            dataset, baseLastModified);
+                } else {
+                    job.overlayCheckpoint.invalidate();
+                    job.overlay.clear();
+                    job.overlay.commit();
+                    job.overlayCheckpoint.reset(baseLastModified);
+                }
+                for (final RecordIndex index : job.indexes) {
+                    // Filled again while merging
+                    if (!resumed || !index.isBuiltFor()) {
+                        index.clear();
+                    }
+                }
+                harvestUpdates(job, job.overlay);
+                outputs = mergeNewZdbDump(job, baseDumpCachePath.toString());
             } else {
-                log.info("Dump at {} is up to date. No harvest needed.", DUMP_URL);
-            }
-            while (ldt.isBefore(LocalDateTime.now())) {
-                final String from = "&from=" + ldt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "Z";
-                final String until = "&until=" + ldt.plusMinutes(30).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "Z";
-                final String url = HARVEST_URL + from + until;
-                log.debug("Start harvest from {} ...", url);
-                harvestZdbRecords(url);
-                ldt = ldt.plusMinutes(30);
-                if (++harvestWindowCount % 500 == 0) {
-                    log.info("Processed {} harvest windows, {} updates applied so far ...", harvestWindowCount, harvestUpdateCount);
+                if (job.storeCheckpoint.isBasedOn(baseLastModified) && job.store.size() > 0L) {
+                    log.info("Store of {} already holds base dump of {}. Skipping load, resuming harvest.",
+                            dataset, baseLastModified);
+                    for (final RecordIndex index : job.indexes) {
+                        if (!index.isBuiltFor()) {
+                            log.info("Rebuilding {} of {} ...", index.getClass().getSimpleName(), dataset);
+                            index.rebuild(job.store);
+                        }
+                    }
+                } else {
+                    job.storeCheckpoint.invalidate();
+                    loadZdbDumpToCache(job, baseDumpCachePath.toString());
+                    if (job.datestamps != null) {
+                        final long deleted = job.datestamps.removeMissing(job.store);
+                        job.datestamps.commit();
+                        log.info("Marked {} records of {} missing from the base dump as deleted", deleted, dataset);
+                    }
+                    job.storeCheckpoint.reset(baseLastModified);
                 }
+                harvestUpdates(job, job.store);
+                outputs = createNewZdbDump(job);
+            }
+            if (job.statistics != null) {
+                outputs.put(writeStatistics(job), (long) job.outputWriteCount);
             }
-            log.info("Finally applied {} harvested updates across {} harvest windows to cache", harvestUpdateCount, harvestWindowCount);
-
-            createNewZdbDump(tempDumpPath.toString());
 
-            log.info("Move ZDB dump from {} to {} ...", tempDumpPath, targetDumpPath);
+            job.enterPhase(JobStatus.Phase.PUBLISH);
             Files.createDirectories(targetDumpPath.getParent());
-            Files.move(tempDumpPath, targetDumpPath, StandardCopyOption.REPLACE_EXISTING);
+            for (final Map.Entry<Path, Long> output : outputs.entrySet()) {
+                final Path source = output.getKey();
+                final Path target = Path.of(outputPath).resolve(source.getFileName());
+                log.info("Move {} to {} ...", source, target);
+                Files.move(
+                        ChecksummedFileOutputStream.sidecar(source),
+                        ChecksummedFileOutputStream.sidecar(target),
+                        StandardCopyOption.REPLACE_EXISTING);
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+                outputIndex.published(target, output.getValue());
+            }
 
             final long durationSeconds = (System.currentTimeMillis() - startedAt) / 1000;
             final long outputSizeBytes = Files.exists(targetDumpPath) ? Files.size(targetDumpPath) : 0L;
             log.info(
-                    "Run statistics: dumpRead={}, harvestedUpdates={}, writtenToDump={}, duration={}s, output={}, size={} bytes",
-                    dumpReadCount,
-                    harvestUpdateCount,
-                    outputWriteCount,
+                    "Run statistics: dataset={}, engine={}, dumpRead={}, harvestedUpdates={}, harvestedDeletions={}, writtenToDump={}, duration={}s, output={}, size={} bytes",
+                    dataset,
+                    engine,
+                    job.dumpReadCount,
+                    job.harvestUpdateCount,
+                    job.harvestDeleteCount,
+                    job.outputWriteCount,
                     durationSeconds,
                     targetDumpPath,
                     outputSizeBytes);
             log.info("Successfully finished.");
+            succeeded = true;
 
         } catch (Exception e) {
-            log.error("Dump creation failed", e);
-            throw new IllegalStateException("Dump creation failed", e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Dump creation for {} failed", dataset, e);
+            failure = e;
+            job.status.failed(e);
+            throw new IllegalStateException("Dump creation for " + dataset + " failed", e);
         } finally {
-            setRunning(false);
+            job.endPhase();
+            if (permitted && job.runStartedAt != null) {
+                recordRun(job, succeeded, failure);
+            }
+            if (succeeded) {
+                job.status.finished();
+            } else {
+                job.status.stopped();
+            }
+            if (permitted) {
+                workerPermits.release();
+            }
+            job.running.set(false);
+            Thread.currentThread().setName(threadName);
         }
     }
 
-    private void downloadZdbDumpIfNeeded(Path cachedDumpPath) throws IOException {
-        final Path metadataPath = cachedDumpPath.resolveSibling(BASE_DUMP_METADATA_FILENAME);
-        final LocalDateTime remoteLastModified = getLastModifiedRemote();
+    /**
+     * Keeps the statistics of a finished or failed run in the run history.
+     */
+    private void recordRun(DatasetJob job, boolean succeeded, Exception failure) {
+        try {
+            final Path baseDump = Path.of(tempPath).resolve(job.dataset.baseDumpFilename());
+            final Path output = Path.of(outputPath).resolve(job.dataset.outputFilename());
+            runHistory.add(new RunHistory.Run(
+                    job.name,
+                    engine,
+                    DateTimeFormatter.ISO_INSTANT.format(job.runStartedAt),
+                    Duration.between(job.runStartedAt, Instant.now()).toSeconds(),
+                    succeeded,
+                    failure != null ? rootCauseMessage(failure) : null,
+                    List.copyOf(job.phases),
+                    job.dumpReadCount,
+                    job.harvestUpdateCount,
+                    job.harvestDeleteCount,
+                    job.harvestPageCount,
+                    job.harvestCachedPageCount,
+                    job.harvestRetryCount,
+                    job.xmlDiagnostics.recovered() - job.xmlRecoveriesAtStart,
+                    job.outputWriteCount,
+                    Files.exists(baseDump) ? Files.size(baseDump) : 0L,
+                    succeeded && Files.exists(output) ? Files.size(output) : 0L,
+                    List.of()));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not record run of {} in the run history: {}", job.name, e.getMessage());
+        }
+    }
+
+    /**
+     * Harvests the updates since the checkpoint of the target store window by
+     * window. The checkpoint advances after each window, so an interrupted run
+     * resumes where it stopped. A window failing after all request retries is
+     * quarantined and tried again at the end of the harvest and in later runs.
+     * Replaying a window late is safe because OAI-PMH returns the current
+     * version of each record, not the one from the time of the window.
+     */
+    private void harvestUpdates(DatasetJob job, RecordStore target)
+            throws IOException, XMLStreamException, TransformerConfigurationException {
+        job.enterPhase(JobStatus.Phase.HARVEST);
+        final HarvestCheckpoint checkpoint = job.checkpoint(target);
+        final LocalDateTime harvestStart = checkpoint.harvestedUntil();
+        final LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime ldt = harvestStart;
+        log.info("Harvest checkpoint of {} is {}", job.name, ldt);
+        int harvestWindowCount = 0;
+        if (ldt.isBefore(now)) {
+            log.info("Start to harvest dataset updates from {} to cache ...", job.dataset.harvestUrl());
+        } else {
+            log.info("Cache of {} is up to date. No harvest needed.", job.name);
+        }
+        job.status.quarantinedWindows(checkpoint.quarantined().size());
+        while (ldt.isBefore(now)) {
+            final LocalDateTime until = min(ldt.plusMinutes(HARVEST_WINDOW_MINUTES), now);
+            job.status.harvestWindow(ldt);
+            job.status.progress(
+                    Duration.between(harvestStart, ldt).toMinutes(),
+                    Duration.between(harvestStart, now).toMinutes());
+            harvestWindow(job, ldt, until, target, checkpoint, true);
+            checkpoint.harvestedUntil(until);
+            checkpoint.commit();
+            ldt = until;
+            if (++harvestWindowCount % 500 == 0) {
+                log.info("Processed {} harvest windows, {} updates applied so far ...", harvestWindowCount, job.harvestUpdateCount);
+            }
+        }
+
+        final List<LocalDateTime> quarantined = checkpoint.quarantined();
+        if (!quarantined.isEmpty()) {
+            log.info("Retrying {} quarantined harvest windows of {} ...", quarantined.size(), job.name);
+            for (final LocalDateTime windowStart : quarantined) {
+                job.status.harvestWindow(windowStart);
+                harvestWindow(job, windowStart, windowStart.plusMinutes(HARVEST_WINDOW_MINUTES), target, checkpoint,
+                        false);
+                checkpoint.commit();
+            }
+        }
+        target.commit();
+        final int remaining = checkpoint.quarantined().size();
+        job.status.quarantinedWindows(remaining);
+        if (remaining > 0) {
+            log.warn("{} harvest windows of {} remain quarantined and are retried in the next run: {}",
+                    remaining, job.name, checkpoint.quarantined());
+        }
+        if (pageCache.isEnabled()) {
+            log.info("Read {} of {} harvest pages from the page cache", job.harvestCachedPageCount, job.harvestPageCount);
+            pageCache.evict();
+        }
+        log.info("Finally applied {} harvested updates across {} harvest windows to cache", job.harvestUpdateCount, harvestWindowCount);
+    }
+
+    /**
+     * Harvests one window into the target store and commits it. A failure is
+     * recorded in the quarantine instead of ending the run, a success releases
+     * the window from it.
+     *
+     * @param cached read and write closed windows through the page cache;
+     *               quarantined windows are replayed out of order and must
+     *               therefore be fetched live
+     */
+    private void harvestWindow(
+            DatasetJob job,
+            LocalDateTime from,
+            LocalDateTime until,
+            RecordStore target,
+            HarvestCheckpoint checkpoint,
+            boolean cached)
+            throws XMLStreamException, TransformerConfigurationException {
+        final String url = job.dataset.harvestUrl()
+                + "&from=" + from.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "Z"
+                + "&until=" + until.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "Z";
+        final boolean closed = until.isBefore(LocalDateTime.now(ZoneOffset.UTC).minus(HARVEST_WINDOW_SETTLE_TIME));
+        log.debug("Start harvest from {} ...", url);
+        try {
+            harvestZdbRecords(job, url, cached && closed && pageCache.isEnabled() ? url : null, target);
+            checkpoint.release(from);
+        } catch (IOException e) {
+            final int attempts = checkpoint.quarantine(from, rootCauseMessage(e));
+            log.warn("Quarantined harvest window {} of {} after {} failed attempt(s): {}",
+                    from, job.name, attempts, rootCauseMessage(e));
+        }
+        target.commit();
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * @return modification date of the cached base dump
+     */
+    private LocalDateTime downloadZdbDumpIfNeeded(DatasetJob job, Path cachedDumpPath) throws IOException {
+        final Path metadataPath = cachedDumpPath.resolveSibling(job.dataset.baseDumpMetadataFilename());
+        final LocalDateTime remoteLastModified = getLastModifiedRemote(job);
 
         if (Files.exists(cachedDumpPath) && Files.exists(metadataPath)) {
             final LocalDateTime cachedLastModified = readLastModifiedFromMetadata(metadataPath);
@@ -248,7 +686,7 @@ public class ZdbDumpCreationCronJob {
                         cachedDumpPath,
                         cachedLastModified,
                         remoteLastModified);
-                return;
+                return cachedLastModified;
             }
             log.info(
                     "Remote dump is newer (cached: {}, remote: {}). Downloading...",
@@ -258,26 +696,33 @@ public class ZdbDumpCreationCronJob {
             log.info("No local base dump found at {}. Downloading...", cachedDumpPath);
         }
 
-        log.info("Start to download dump from {} to {} ...", DUMP_URL, cachedDumpPath);
+        job.enterPhase(JobStatus.Phase.DOWNLOAD);
+        log.info("Start to download dump from {} to {} ...", job.dataset.dumpUrl(), cachedDumpPath);
         Files.createDirectories(cachedDumpPath.getParent());
+        GzipSegmentIndex.delete(cachedDumpPath);
 
         restClient.get()
-                .uri(DUMP_URL)
+                .uri(job.dataset.dumpUrl())
                 .exchange((request, response) -> {
                     if (!response.getStatusCode().is2xxSuccessful()) {
                         throw new IOException("Download failed with status " + response.getStatusCode().value());
                     }
+                    final long contentLength = response.getHeaders().getContentLength();
                     try (final InputStream body = response.getBody()) {
                         if (body == null) {
                             throw new IOException("Download returned an empty response body.");
                         }
-                        Files.copy(body, cachedDumpPath, StandardCopyOption.REPLACE_EXISTING);
+                        Files.copy(
+                                new ProgressInputStream(body, bytes -> job.status.progress(bytes, contentLength)),
+                                cachedDumpPath,
+                                StandardCopyOption.REPLACE_EXISTING);
                     }
                     return null;
                 });
 
         writeLastModifiedToMetadata(metadataPath, remoteLastModified);
         log.info("Successfully downloaded dump.");
+        return remoteLastModified;
     }
 
     private LocalDateTime readLastModifiedFromMetadata(Path metadataPath) {
@@ -301,71 +746,220 @@ public class ZdbDumpCreationCronJob {
         }
     }
 
-    private void loadZdbDumpToCache(String pathToZdbDump)
+    private void loadZdbDumpToCache(DatasetJob job, String pathToZdbDump)
             throws FileNotFoundException, IOException, XMLStreamException, TransformerConfigurationException {
         log.info("Start to write datasets to cache ...");
+        job.enterPhase(JobStatus.Phase.LOAD);
 
-        final File dumpFile = new File(pathToZdbDump);
+        job.dumpReadCount = 0;
+        if (bulkLoad) {
+            bulkLoadZdbDumpToCache(job, pathToZdbDump);
+            log.info("Successfully finished to write datasets to cache");
+            return;
+        }
 
-        try (final BufferedReader in = new BufferedReader(
-                new InputStreamReader(new GZIPInputStream(new FileInputStream(dumpFile)), StandardCharsets.UTF_8))) {
+        job.store.clear();
+        final Map<String, String> batch = new LinkedHashMap<>();
+        try {
+            readZdbDump(job, pathToZdbDump, (fileName, record) -> {
+                batch.put(fileName, record);
+                if (batch.size() >= STORE_BATCH_SIZE) {
+                    job.store.putAll(batch);
+                    batch.clear();
+                }
+                job.status.recordProcessed();
+                if (++job.dumpReadCount % PROGRESS_LOG_STEP == 0) {
+                    log.info("Read {} datasets from base dump into cache ...", job.dumpReadCount);
+                }
+            });
+            job.store.putAll(batch);
+            job.store.commit();
+        } finally {
+            log.info("Finally read {} datasets from base dump into cache", job.dumpReadCount);
+        }
+        log.info("Successfully finished to write datasets to cache");
+    }
 
-            final XmlSanitizingReader sanitizingReader = new XmlSanitizingReader(in, pathToZdbDump, log);
-            final XMLStreamReader xsr = xif.createXMLStreamReader(sanitizingReader);
-            xsr.nextTag(); // Advance to statements element
-            mvStoreZdbData.clear();
-            final TransformerFactory tf = TransformerFactory.newInstance();
-            final Transformer t = tf.newTransformer();
-            dumpReadCount = 0;
+    /**
+     * Sorts the base dump by id in runs of at most {@code zdbdump.store.sort-buffer}
+     * bytes spilled to the temp path, then writes the merged runs to the store
+     * in key order.
+     */
+    private void bulkLoadZdbDumpToCache(DatasetJob job, String pathToZdbDump)
+            throws FileNotFoundException, IOException, XMLStreamException, TransformerConfigurationException {
+        try (final ExternalRecordSorter sorter = new ExternalRecordSorter(
+                Path.of(tempPath).resolve("sort"), memoryBudget.sortBuffer(sortBuffer))) {
             try {
+                readZdbDump(job, pathToZdbDump, (fileName, record) -> {
+                    sorter.add(fileName, record);
+                    job.status.recordProcessed();
+                    if (++job.dumpReadCount % PROGRESS_LOG_STEP == 0) {
+                        log.info("Read {} datasets from base dump into sort buffer ...", job.dumpReadCount);
+                    }
+                });
+            } finally {
+                log.info("Finally read {} datasets from base dump into sort buffer", job.dumpReadCount);
+            }
+            log.info("Writing {} datasets sorted in {} run(s) to cache ...", job.dumpReadCount, Math.max(1, sorter.runCount()));
+            final long started = System.nanoTime();
+            job.store.load(sorter.iterator());
+            job.store.commit();
+            log.info("Wrote {} datasets to cache in {} ms", job.store.size(),
+                    (System.nanoTime() - started) / 1_000_000L);
+        }
+    }
 
-                while (xsr.nextTag() == XMLStreamConstants.START_ELEMENT) {
+    @FunctionalInterface
+    private interface RecordHandler {
 
-                    String fileName = xsr.getAttributeValue("http://www.w3.org/1999/02/22-rdf-syntax-ns#", "about");
-                    fileName = fileName.replace("https://ld.zdb-services.de/resource/", "");
+        void accept(String fileName, String record) throws Exception;
+    }
 
-                    try (final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                            final Writer writer = new OutputStreamWriter(bos, StandardCharsets.UTF_8);) {
-                        try {
-                            t.transform(new StAXSource(xsr), new StreamResult(writer));
+    /**
+     * Reads the records of the cached base dump. A dump with a segment index
+     * is inflated on {@code zdbdump.base-dump.threads} threads; any other dump
+     * is inflated on the calling thread and transcoded into segments of
+     * {@code zdbdump.base-dump.segment-size} uncompressed bytes while it is
+     * read, replacing the cached file once it was read completely.
+     */
+    private void readZdbDump(DatasetJob job, String pathToZdbDump, RecordHandler handler)
+            throws FileNotFoundException, IOException, XMLStreamException, TransformerConfigurationException {
 
-                            mvStoreZdbData.put(fileName, bos.toString(StandardCharsets.UTF_8));
-                            if (++dumpReadCount % PROGRESS_LOG_STEP == 0) {
-                                log.info("Read {} datasets from base dump into cache ...", dumpReadCount);
-                            }
-                        } catch (Exception e) {
-                            logXmlWarning(pathToZdbDump, fileName, e, sanitizingReader);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                logXmlWarning(pathToZdbDump, null, e, sanitizingReader);
-            } finally {
-                log.info("Finally read {} datasets from base dump into cache", dumpReadCount);
+        final Path dumpPath = Path.of(pathToZdbDump);
+        final long dumpFileSize = Files.size(dumpPath);
+        final LongConsumer progress = bytes -> job.status.progress(bytes, dumpFileSize);
+        final GzipSegmentIndex index = baseDumpSegmentSize > 0 ? GzipSegmentIndex.read(dumpPath) : null;
+        final Path transcodedPath = dumpPath.resolveSibling(dumpPath.getFileName() + ".segmented");
+        GzipSegmentIndex transcoded = null;
+
+        try (final SegmentedGzipOutputStream transcoder = baseDumpSegmentSize > 0 && index == null
+                ? new SegmentedGzipOutputStream(transcodedPath, baseDumpSegmentSize, baseDumpThreads(), memoryBudget.buffers())
+                : null;
+                final InputStream inflated = index != null
+                        ? new SegmentedGzipInputStream(dumpPath, index, baseDumpThreads(), memoryBudget.buffers(), progress)
+                        : new GZIPInputStream(new ProgressInputStream(new FileInputStream(dumpPath.toFile()), progress));
+                final InputStream source = transcoder != null ? transcoder.tee(inflated) : inflated) {
+
+            if (index != null) {
+                log.info("Inflating base dump {} in {} segments ...", pathToZdbDump, index.segments().size());
+            }
+            parseZdbDump(job, pathToZdbDump, new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8)), handler);
+            if (transcoder != null) {
+                // Whatever follows the last record belongs to the dump as well
+                source.transferTo(OutputStream.nullOutputStream());
+                transcoded = transcoder.finish();
+            }
+        } finally {
+            if (transcoded == null) {
+                Files.deleteIfExists(transcodedPath);
             }
         }
-        log.info("Successfully finished to write datasets to cache");
+
+        if (transcoded != null) {
+            Files.move(transcodedPath, dumpPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            transcoded.write(dumpPath);
+            log.info("Transcoded base dump {} into {} segments of {} bytes for parallel reads",
+                    pathToZdbDump, transcoded.segments().size(), baseDumpSegmentSize);
+        }
     }
 
-    private void harvestZdbRecords(String url)
-            throws IOException, XMLStreamException, TransformerConfigurationException {
+    /**
+     * @return threads inflating or transcoding a base dump, by default at
+     *         most {@value #BASE_DUMP_THREADS}, as every thread keeps two
+     *         segments in memory
+     */
+    private int baseDumpThreads() {
+        return baseDumpThreads > 0
+                ? baseDumpThreads
+                : Math.min(Runtime.getRuntime().availableProcessors(), BASE_DUMP_THREADS);
+    }
 
+    private void parseZdbDump(DatasetJob job, String pathToZdbDump, BufferedReader in, RecordHandler handler)
+            throws IOException, XMLStreamException, TransformerConfigurationException {
+        final XmlSanitizingReader sanitizingReader = new XmlSanitizingReader(in, pathToZdbDump, job.xmlDiagnostics);
+        final XMLStreamReader xsr = job.xif.createXMLStreamReader(sanitizingReader);
+        xsr.nextTag(); // Advance to statements element
         final TransformerFactory tf = TransformerFactory.newInstance();
         final Transformer t = tf.newTransformer();
-        final String resumptionToken = fetchHarvestResponseWithRetry(url, t);
+        try {
 
-        if (resumptionToken != null) {
-            harvestZdbRecords(HARVEST_WITH_RESUMPTION_TOKEN_URL + resumptionToken);
+            while (xsr.nextTag() == XMLStreamConstants.START_ELEMENT) {
+
+                String fileName = xsr.getAttributeValue(RDF_NS, "about");
+                fileName = job.dataset.recordId(fileName);
+
+                final RecordEvent recordEvent = new RecordEvent();
+                recordEvent.begin();
+                final long startedAt = recordEvent.isEnabled() ? System.nanoTime() : 0L;
+                try {
+                    t.transform(new StAXSource(xsr), new StreamResult(job.recordBuffer));
+                    final long transformedAt = recordEvent.isEnabled() ? System.nanoTime() : 0L;
+                    handler.accept(fileName, readRecordBuffer(job, fileName));
+                    commitRecordEvent(job, recordEvent, fileName, job.recordBuffer.size(), startedAt, transformedAt);
+                } catch (InterruptedIOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    job.xmlDiagnostics.malformedRecord(pathToZdbDump, fileName, e, sanitizingReader);
+                } finally {
+                    job.recordBuffer.reset();
+                }
+            }
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (Exception e) {
+            job.xmlDiagnostics.malformedRecord(pathToZdbDump, null, e, sanitizingReader);
         }
+    }
+
+    /**
+     * @param cacheWindow URL of the first page of the window if the pages are
+     *                    read from and written to the page cache, else null
+     */
+    private void harvestZdbRecords(DatasetJob job, String url, String cacheWindow, RecordStore target)
+            throws IOException, XMLStreamException, TransformerConfigurationException {
 
+        final TransformerFactory tf = TransformerFactory.newInstance();
+        final Transformer t = tf.newTransformer();
+        String pageUrl = url;
+        String resumptionToken = null;
+        do {
+            final String cacheKey = cacheWindow != null ? HarvestPageCache.key(cacheWindow, resumptionToken) : null;
+            resumptionToken = fetchHarvestResponseWithRetry(job, pageUrl, cacheKey, t, target);
+            if (resumptionToken != null) {
+                pageUrl = job.dataset.resumptionUrl(resumptionToken);
+            }
+        } while (resumptionToken != null);
     }
 
-    private String fetchHarvestResponseWithRetry(String url, Transformer transformer) throws IOException {
+    private String fetchHarvestResponseWithRetry(
+            DatasetJob job,
+            String url,
+            String cacheKey,
+            Transformer transformer,
+            RecordStore target)
+            throws IOException {
+        job.harvestPageCount++;
+        if (cacheKey != null) {
+            try (final InputStream cached = pageCache.open(cacheKey)) {
+                if (cached != null) {
+                    final String resumptionToken = parseHarvestResponse(job, url, cached, transformer, target);
+                    job.harvestCachedPageCount++;
+                    return resumptionToken;
+                }
+            } catch (IOException | XMLStreamException e) {
+                log.warn("Cached harvest page for {} is unreadable, fetching it again: {}", url, rootCauseMessage(e));
+                pageCache.remove(cacheKey);
+            }
+        }
+
         Exception lastException = null;
 
         for (int attempt = 1; attempt <= HARVEST_RETRY_ATTEMPTS; attempt++) {
+            final HarvestRequestEvent requestEvent = new HarvestRequestEvent();
+            final int updatesBefore = job.harvestUpdateCount;
+            requestEvent.begin();
             try {
-                return restClient.get()
+                final String resumptionToken = restClient.get()
                         .uri(url)
                         .exchange((request, response) -> {
                             if (!response.getStatusCode().is2xxSuccessful()) {
@@ -377,68 +971,32 @@ public class ZdbDumpCreationCronJob {
                                 if (body == null) {
                                     return null;
                                 }
-
-                                final XmlSanitizingReader sanitizingReader = new XmlSanitizingReader(
-                                        new InputStreamReader(body, StandardCharsets.UTF_8),
-                                        url,
-                                        log);
-                                final XMLStreamReader xsr = xif.createXMLStreamReader(sanitizingReader);
-                                xsr.nextTag();
-                                String nextResumptionToken = null;
-
-                                while (xsr.hasNext()) {
-                                    if (xsr.next() != XMLStreamConstants.START_ELEMENT) {
-                                        continue;
-                                    }
-                                    final String name = xsr.getName().getLocalPart();
-                                    final String nameNamespace = xsr.getName().getNamespaceURI();
-
-                                    if (name.equals("Description")
-                                            && nameNamespace.equals("http://www.w3.org/1999/02/22-rdf-syntax-ns#")) {
-                                        String fileName = xsr.getAttributeValue(
-                                                "http://www.w3.org/1999/02/22-rdf-syntax-ns#",
-                                                "about");
-                                        fileName = fileName.replace("https://ld.zdb-services.de/resource/", "");
-
-                                        try (final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                                                final Writer writer = new OutputStreamWriter(
-                                                        bos,
-                                                        StandardCharsets.UTF_8)) {
-                                            try {
-                                                transformer.transform(new StAXSource(xsr), new StreamResult(writer));
-                                                mvStoreZdbData.put(fileName, bos.toString(StandardCharsets.UTF_8));
-                                                if (++harvestUpdateCount % PROGRESS_LOG_STEP == 0) {
-                                                    log.info(
-                                                            "Applied {} harvested updates to cache ...",
-                                                            harvestUpdateCount);
-                                                }
-                                            } catch (Exception e) {
-                                                logXmlWarning(url, fileName, e, sanitizingReader);
-                                            }
-                                        }
-                                    }
-
-                                    if (name.equals("resumptionToken")
-                                            && nameNamespace.equals("http://www.openarchives.org/OAI/2.0/")) {
-                                        final String rt = xsr.getElementText();
-                                        if (rt != null && !rt.isBlank()) {
-                                            log.debug("{} is {}", name, rt);
-                                            nextResumptionToken = rt;
-                                        }
-                                    }
+                                if (cacheKey == null) {
+                                    return parseHarvestResponse(job, url, body, transformer, target);
+                                }
+                                final HarvestPageCache.Recording recording = pageCache.record(cacheKey, body);
+                                try {
+                                    final String nextResumptionToken = parseHarvestResponse(
+                                            job, url, recording, transformer, target);
+                                    recording.commit();
+                                    return nextResumptionToken;
+                                } finally {
+                                    recording.discard();
                                 }
-
-                                return nextResumptionToken;
                             } catch (XMLStreamException e) {
-                                logXmlWarning(url, null, e, null);
+                                job.xmlDiagnostics.malformedRecord(url, null, e, null);
                                 throw new IOException("Failed to parse harvest response from " + url, e);
                             }
                         });
+                commitHarvestRequestEvent(requestEvent, url, attempt, job.harvestUpdateCount - updatesBefore, null);
+                return resumptionToken;
             } catch (Exception e) {
+                commitHarvestRequestEvent(requestEvent, url, attempt, job.harvestUpdateCount - updatesBefore, e);
                 lastException = e;
                 if (!isTransientHarvestFailure(e) || attempt >= HARVEST_RETRY_ATTEMPTS) {
                     break;
                 }
+                job.harvestRetryCount++;
                 log.warn(
                         "Harvest request attempt {}/{} failed for {}: {}. Retrying in {} ms ...",
                         attempt,
@@ -457,6 +1015,157 @@ public class ZdbDumpCreationCronJob {
         throw new IOException("Harvest failed for " + url, lastException);
     }
 
+    /**
+     * Applies the records and deletions of one ListRecords response to the
+     * target store.
+     *
+     * @return the resumption token of the next page or null
+     */
+    private String parseHarvestResponse(
+            DatasetJob job,
+            String url,
+            InputStream body,
+            Transformer transformer,
+            RecordStore target)
+            throws IOException, XMLStreamException {
+        final XmlSanitizingReader sanitizingReader = new XmlSanitizingReader(
+                new InputStreamReader(body, StandardCharsets.UTF_8),
+                url,
+                job.xmlDiagnostics);
+        final XMLStreamReader xsr = job.xif.createXMLStreamReader(sanitizingReader);
+        xsr.nextTag();
+        String nextResumptionToken = null;
+
+        while (xsr.hasNext()) {
+            if (xsr.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            final String name = xsr.getName().getLocalPart();
+            final String nameNamespace = xsr.getName().getNamespaceURI();
+
+            if (name.equals("header") && nameNamespace.equals(OAI_NS)
+                    && "deleted".equals(xsr.getAttributeValue(null, "status"))) {
+                applyHarvestedDeletion(job, readHeaderIdentifier(xsr), target);
+                continue;
+            }
+
+            if (name.equals("Description") && nameNamespace.equals(RDF_NS)) {
+                String fileName = xsr.getAttributeValue(RDF_NS, "about");
+                fileName = job.dataset.recordId(fileName);
+
+                final RecordEvent recordEvent = new RecordEvent();
+                recordEvent.begin();
+                final long startedAt = recordEvent.isEnabled() ? System.nanoTime() : 0L;
+                try {
+                    transformer.transform(new StAXSource(xsr), new StreamResult(job.recordBuffer));
+                    final long transformedAt = recordEvent.isEnabled() ? System.nanoTime() : 0L;
+                    target.put(fileName, readRecordBuffer(job, fileName));
+                    commitRecordEvent(job, recordEvent, fileName, job.recordBuffer.size(), startedAt, transformedAt);
+                    job.status.recordProcessed();
+                    if (++job.harvestUpdateCount % PROGRESS_LOG_STEP == 0) {
+                        log.info(
+                                "Applied {} harvested updates to cache ...",
+                                job.harvestUpdateCount);
+                    }
+                } catch (InterruptedIOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    job.xmlDiagnostics.malformedRecord(url, fileName, e, sanitizingReader);
+                } finally {
+                    job.recordBuffer.reset();
+                }
+            }
+
+            if (name.equals("resumptionToken") && nameNamespace.equals(OAI_NS)) {
+                final String rt = xsr.getElementText();
+                if (rt != null && !rt.isBlank()) {
+                    log.debug("{} is {}", name, rt);
+                    nextResumptionToken = rt;
+                }
+            }
+        }
+
+        return nextResumptionToken;
+    }
+
+    /**
+     * Waits until the record in the buffer fits into the memory budget, then
+     * returns it as a string.
+     */
+    private String readRecordBuffer(DatasetJob job, String fileName) throws IOException {
+        // Decoded, every UTF-8 byte takes at most two bytes
+        memoryBudget.admit(2L * job.recordBuffer.size());
+        if (job.recordBuffer.isSpilled()) {
+            log.debug("Record {} of {} bytes was buffered on disk", fileName, job.recordBuffer.size());
+        }
+        return job.recordBuffer.content();
+    }
+
+    private String readHeaderIdentifier(XMLStreamReader xsr) throws XMLStreamException {
+        String identifier = null;
+        int depth = 1;
+        while (depth > 0 && xsr.hasNext()) {
+            final int eventType = xsr.next();
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                if (xsr.getLocalName().equals("identifier")) {
+                    identifier = xsr.getElementText();
+                } else {
+                    depth++;
+                }
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return identifier;
+    }
+
+    private void applyHarvestedDeletion(DatasetJob job, String identifier, RecordStore target) {
+        // Deletions can only be represented in the overlay. The OAI identifier
+        // is expected to end with the record ID used as key, e.g. "oai:dnb.de/zdb/1234567-8".
+        if (identifier == null || identifier.isBlank() || target != job.overlay) {
+            return;
+        }
+        final String fileName = identifier.substring(identifier.lastIndexOf('/') + 1).trim();
+        target.put(fileName, DELETED_MARKER);
+        job.harvestDeleteCount++;
+    }
+
+    private void commitHarvestRequestEvent(
+            HarvestRequestEvent event,
+            String url,
+            int attempt,
+            int records,
+            Exception exception) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.url = url;
+            event.attempt = attempt;
+            event.records = records;
+            event.success = exception == null;
+            event.error = exception != null ? rootCauseMessage(exception) : null;
+            event.commit();
+        }
+    }
+
+    private void commitRecordEvent(
+            DatasetJob job,
+            RecordEvent event,
+            String fileName,
+            long byteSize,
+            long startedAt,
+            long transformedAt) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.dataset = job.name;
+            event.phase = job.status.currentPhase().name();
+            event.recordId = fileName;
+            event.byteSize = byteSize;
+            event.transformTime = transformedAt - startedAt;
+            event.storeTime = System.nanoTime() - transformedAt;
+            event.commit();
+        }
+    }
+
     private void sleepBeforeRetry(String url, int attempt) throws IOException {
         try {
             Thread.sleep(HARVEST_RETRY_DELAY_MILLIS * attempt);
@@ -495,121 +1204,202 @@ public class ZdbDumpCreationCronJob {
         return current.getMessage() != null ? current.getMessage() : throwable.getMessage();
     }
 
-    private void logXmlWarning(
-            String source,
-            String datasetId,
-            Exception exception,
-            XmlSanitizingReader sanitizingReader) {
-        final XMLStreamException xmlException = findXmlStreamException(exception);
-        final String datasetInfo = datasetId != null && !datasetId.isBlank() ? ", dataset=" + datasetId : "";
-        final String diagnosticContext = buildXmlDiagnosticContext(sanitizingReader);
-
-        if (xmlException != null && xmlException.getLocation() != null) {
-            log.warn(
-                    "Malformed XML in {}{} at line {}, column {}: {}{}",
-                    source,
-                    datasetInfo,
-                    xmlException.getLocation().getLineNumber(),
-                    xmlException.getLocation().getColumnNumber(),
-                    xmlException.getMessage(),
-                    diagnosticContext);
-            return;
+    /**
+     * Opens the outputs of a run in the temp directory: the full dump plus the
+     * configured subsets, ID list and checksum manifest.
+     */
+    private FanOutWriter openOutputs(DatasetJob job) throws IOException, XMLStreamException {
+        final Path dir = Path.of(tempPath);
+        final int zsync = job.dataset.zsync() ? zsyncBlockSize : 0;
+        final List<DumpSink> sinks = new ArrayList<>();
+        try {
+            if (job.dataset.blockCompressed()) {
+                sinks.add(new BgzfDumpSink(
+                        dir.resolve(job.dataset.outputFilename()),
+                        dir.resolve(job.dataset.offsetIndexFilename()),
+                        NAMESPACES));
+            } else {
+                sinks.add(new RdfDumpSink("dump", dir.resolve(job.dataset.outputFilename()), NAMESPACES, null, zsync));
+            }
+            for (final Map.Entry<String, DatasetProperties.Subset> subset : job.dataset.subsets().entrySet()) {
+                sinks.add(new RdfDumpSink(
+                        subset.getKey(),
+                        dir.resolve(subset.getValue().outputFilename()),
+                        NAMESPACES,
+                        Pattern.compile(subset.getValue().pattern()),
+                        zsync));
+            }
+            if (job.dataset.idList()) {
+                sinks.add(new IdListSink(dir.resolve(job.dataset.idListFilename())));
+            }
+            if (job.dataset.checksums()) {
+                sinks.add(new ChecksumManifestSink(dir.resolve(job.dataset.checksumsFilename())));
+            }
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            for (final DumpSink sink : sinks) {
+                try {
+                    sink.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
         }
-
-        log.warn("Malformed XML in {}{}: {}{}", source, datasetInfo, exception.getMessage(), diagnosticContext);
+        return new FanOutWriter(job.name, sinks, memoryBudget);
     }
 
-    private String buildXmlDiagnosticContext(XmlSanitizingReader sanitizingReader) {
-        if (sanitizingReader == null) {
-            return "";
-        }
+    private Map<Path, Long> createNewZdbDump(DatasetJob job) throws FileNotFoundException, IOException, XMLStreamException {
 
-        final String recentContext = sanitizingReader.getRecentContext();
-        final String lastMalformedEntity = sanitizingReader.getLastMalformedEntitySummary();
-        final List<String> diagnosticParts = new ArrayList<>();
+        log.info("Start to write dump to \"{}\" ...", job.dataset.outputFilename());
+        job.enterPhase(JobStatus.Phase.WRITE);
 
-        if (!recentContext.isBlank()) {
-            diagnosticParts.add("recentContext='" + recentContext + "'");
-        }
-        if (lastMalformedEntity != null && !lastMalformedEntity.isBlank()) {
-            diagnosticParts.add(lastMalformedEntity);
+        final FanOutWriter out = openOutputs(job);
+        try (out) {
+            final Iterator<Map.Entry<String, String>> it = job.store.iterator();
+            final long total = job.store.size();
+            job.outputWriteCount = 0;
+            while (it.hasNext()) {
+                final Map.Entry<String, String> e = it.next();
+                out.write(e.getKey(), e.getValue());
+                job.status.recordProcessed();
+                job.status.progress(job.outputWriteCount + 1L, total);
+                if (++job.outputWriteCount % PROGRESS_LOG_STEP == 0) {
+                    log.info("Wrote {} datasets to \"{}\" ...", job.outputWriteCount, job.dataset.outputFilename());
+                }
+            }
         }
+        log.info("Successfully wrote {} datasets to \"{}\"", job.outputWriteCount, job.dataset.outputFilename());
+        return out.files();
 
-        return diagnosticParts.isEmpty() ? "" : ". " + String.join(", ", diagnosticParts);
     }
 
-    private XMLStreamException findXmlStreamException(Throwable throwable) {
-        Throwable current = throwable;
-        while (current != null) {
-            if (current instanceof XMLStreamException xmlStreamException) {
-                return xmlStreamException;
-            }
-            current = current.getCause();
+    /**
+     * Writes the VoID description of the dataset from the statistics kept
+     * with the store as JSON-LD, so publishing them needs no pass over the
+     * records.
+     */
+    private Path writeStatistics(DatasetJob job) throws IOException {
+        final StatisticsIndex.Statistics statistics = job.statistics.statistics();
+        final Path file = Path.of(tempPath).resolve(job.dataset.statisticsFilename());
+        final String datasetId = baseurl + "/" + job.dataset.statisticsFilename() + "#dataset";
+
+        final Map<String, Object> context = new LinkedHashMap<>();
+        context.put("void", "http://rdfs.org/ns/void#");
+        context.put("dcterms", "http://purl.org/dc/terms/");
+        context.put("xsd", "http://www.w3.org/2001/XMLSchema#");
+
+        final Map<String, Object> description = new LinkedHashMap<>();
+        description.put("@context", context);
+        description.put("@id", datasetId);
+        description.put("@type", "void:Dataset");
+        description.put("dcterms:title", job.name);
+        description.put("dcterms:modified", jsonNode(
+                "@value", DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS)),
+                "@type", "xsd:dateTime"));
+        description.put("void:dataDump", jsonNode("@id", baseurl + "/" + job.dataset.outputFilename()));
+        if (job.dataset.idPrefix() != null && !job.dataset.idPrefix().isBlank()) {
+            description.put("void:uriSpace", job.dataset.idPrefix());
         }
-        return null;
+        description.put("void:triples", statistics.triples());
+        description.put("void:entities", statistics.entities());
+        description.put("void:classes", statistics.classes().size());
+        description.put("void:properties", statistics.properties().size());
+        description.put("void:classPartition", statistics.classes().entrySet().stream()
+                .map(e -> jsonNode("void:class", jsonNode("@id", e.getKey()), "void:entities", e.getValue()))
+                .toList());
+        description.put("void:propertyPartition", statistics.properties().entrySet().stream()
+                .map(e -> jsonNode("void:property", jsonNode("@id", e.getKey()), "void:triples", e.getValue()))
+                .toList());
+        final List<Map<String, Object>> linksets = new ArrayList<>();
+        statistics.links().forEach((target, byProperty) -> byProperty.forEach((property, count) -> linksets.add(jsonNode(
+                "@type", "void:Linkset",
+                "void:subjectsTarget", jsonNode("@id", datasetId),
+                "void:objectsTarget", jsonNode("@type", "void:Dataset", "void:uriSpace", target),
+                "void:linkPredicate", jsonNode("@id", property),
+                "void:triples", count))));
+        description.put("void:subset", linksets);
+
+        try (final ChecksummedFileOutputStream out = new ChecksummedFileOutputStream(file)) {
+            jsonMapper.writerWithDefaultPrettyPrinter().writeValue(out, description);
+        }
+        log.info("Wrote statistics of {} to \"{}\": {} triples, {} entities, {} classes, {} properties, {} linksets",
+                job.name, file.getFileName(), statistics.triples(), statistics.entities(),
+                statistics.classes().size(), statistics.properties().size(), linksets.size());
+        return file;
     }
 
-    private void createNewZdbDump(String outputFile) throws FileNotFoundException, IOException, XMLStreamException {
-
-        log.info("Start to write dump to \"{}\" ...", outputFile);
-
-        try (final FileOutputStream outputWriter = new FileOutputStream(outputFile);
-                final Writer writer = new OutputStreamWriter(new GZIPOutputStream(outputWriter),
-                        StandardCharsets.UTF_8);) {
-            final XMLOutputFactory xmlOutFactory = XMLOutputFactory.newFactory();
-            xmlOutFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, true);
-
-            final XMLEventWriter xmlEventWriter = xmlOutFactory.createXMLEventWriter(writer);
-
-            // xmlEventWriter.setDefaultNamespace("http://www.w3.org/1999/02/22-rdf-syntax-ns#");
-            // // setze Default-Namespace
-            xmlEventWriter.add(xmlEventFactory.createStartDocument("UTF-8", "1.0"));
-            xmlEventWriter.add(xmlEventFactory.createCharacters("\n"));
-            xmlEventWriter.add(xmlEventFactory.createStartElement("rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#",
-                    "RDF", null, nsl.iterator()));
-            xmlEventWriter.add(xmlEventFactory.createCharacters("\n"));
+    /**
+     * @return JSON object with the keys in the given order
+     */
+    private static Map<String, Object> jsonNode(Object... keysAndValues) {
+        final Map<String, Object> node = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            node.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return node;
+    }
 
-            final XMLInputFactory xmlInFactory = XMLInputFactory.newFactory();
-            final Iterator<Map.Entry<String, String>> it = mvStoreZdbData.entrySet().iterator();
-            outputWriteCount = 0;
-            while (it.hasNext()) {
+    private Map<Path, Long> mergeNewZdbDump(DatasetJob job, String pathToZdbDump)
+            throws FileNotFoundException, IOException, XMLStreamException, TransformerConfigurationException {
 
-                final Map.Entry<String, String> e = it.next();
-                final ByteArrayInputStream inputStream = new ByteArrayInputStream(
-                        e.getValue().getBytes(StandardCharsets.UTF_8));
-                final XMLEventReader xmlEventReader = xmlInFactory.createXMLEventReader(inputStream);
-                XMLEvent event = xmlEventReader.nextEvent();
-                // Skip ahead in the input to the opening document element
-                while (event.getEventType() != XMLEvent.START_ELEMENT) {
-                    event = xmlEventReader.nextEvent();
+        final String outputFile = job.dataset.outputFilename();
+        log.info("Start to merge base dump {} with {} harvested changes into \"{}\" ...",
+                pathToZdbDump, job.overlay.size(), outputFile);
+        job.enterPhase(JobStatus.Phase.WRITE);
+
+        final Set<String> replaced = new HashSet<>();
+        int droppedCount = 0;
+        final FanOutWriter out = openOutputs(job);
+        try (out) {
+            job.dumpReadCount = 0;
+            job.outputWriteCount = 0;
+            readZdbDump(job, pathToZdbDump, (fileName, record) -> {
+                ++job.dumpReadCount;
+                job.status.recordProcessed();
+                final String update = job.overlay.get(fileName);
+                if (update == null) {
+                    out.write(fileName, record);
+                    job.updateIndexes(fileName, record);
+                } else {
+                    replaced.add(fileName);
+                    if (DELETED_MARKER.equals(update)) {
+                        job.removeFromIndexes(fileName);
+                        return;
+                    }
+                    out.write(fileName, update);
+                    job.updateIndexes(fileName, update);
                 }
+                if (++job.outputWriteCount % PROGRESS_LOG_STEP == 0) {
+                    log.info("Wrote {} datasets to \"{}\" ...", job.outputWriteCount, outputFile);
+                }
+            });
+            log.info("Finally read {} datasets from base dump", job.dumpReadCount);
 
-                do {
-                    xmlEventWriter.add(event);
-                    event = xmlEventReader.nextEvent();
-                } while (event.getEventType() != XMLEvent.END_DOCUMENT);
-                xmlEventReader.close();
-                xmlEventWriter.add(xmlEventFactory.createCharacters("\n"));
-
-                if (++outputWriteCount % PROGRESS_LOG_STEP == 0) {
-                    log.info("Wrote {} datasets to \"{}\" ...", outputWriteCount, outputFile);
+            // Append records which are not part of the base dump
+            for (final Map.Entry<String, String> e : job.overlay) {
+                if (replaced.contains(e.getKey())) {
+                    continue;
+                }
+                if (DELETED_MARKER.equals(e.getValue())) {
+                    job.removeFromIndexes(e.getKey());
+                    droppedCount++;
+                    continue;
                 }
+                out.write(e.getKey(), e.getValue());
+                job.updateIndexes(e.getKey(), e.getValue());
+                ++job.outputWriteCount;
             }
-            log.info("Successfully wrote {} datasets to \"{}\"", outputWriteCount, outputFile);
-
-            xmlEventWriter.add(xmlEventFactory.createEndElement("rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#", "RDF"));
-            xmlEventWriter.add(xmlEventFactory.createCharacters("\n"));
-            xmlEventWriter.add(xmlEventFactory.createEndDocument());
-
-            xmlEventWriter.close();
         }
-
+        job.commitIndexes();
+        log.info("Successfully wrote {} datasets to \"{}\" ({} replaced or deleted, {} unknown deletions)",
+                job.outputWriteCount, outputFile, replaced.size(), droppedCount);
+        return out.files();
     }
 
-    private LocalDateTime getLastModifiedRemote() throws IOException {
+    private LocalDateTime getLastModifiedRemote(DatasetJob job) throws IOException {
         try {
             return restClient.head()
-                    .uri(DUMP_URL)
+                    .uri(job.dataset.dumpUrl())
                     .exchange((request, response) -> {
                         if (!response.getStatusCode().is2xxSuccessful()) {
                             throw new IOException("Failed to retrieve last modification date of dump. HTTP status: "
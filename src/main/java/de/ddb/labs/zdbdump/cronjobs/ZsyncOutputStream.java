@@ -0,0 +1,164 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.cronjobs;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Computes the block checksums of the bytes written and stores them as zsync
+ * control file {@code <file>.zsync} on close. With it a zsync client updates
+ * an older copy of the file by fetching only the blocks it does not have
+ * through HTTP Range requests. The control file is written through a
+ * {@link ChecksummedFileOutputStream}, so it is published like any output.
+ */
+public final class ZsyncOutputStream extends FilterOutputStream {
+
+    private static final String VERSION = "0.6.2";
+    // Weak rolling checksum (4 bytes) plus MD4 (16 bytes) per block
+    private static final int CHECKSUMS_LENGTH = 20;
+
+    private final Path file;
+    private final Path controlFile;
+    private final int blockSize;
+    private final byte[] block;
+    private final Md4 md4 = new Md4();
+    private final MessageDigest sha1;
+    private byte[] checksums = new byte[CHECKSUMS_LENGTH * 1024];
+    private int blocks = 0;
+    private int filled = 0;
+    private long length = 0L;
+    private boolean closed = false;
+
+    /**
+     * @param out  stream writing the file
+     * @param file the file, whose name is used in the control file
+     */
+    public ZsyncOutputStream(OutputStream out, Path file, int blockSize) {
+        super(out);
+        this.file = file;
+        this.controlFile = controlFile(file);
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        try {
+            this.sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static Path controlFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".zsync");
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        block[filled++] = (byte) b;
+        length++;
+        if (filled == blockSize) {
+            addBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        length += len;
+        while (len > 0) {
+            final int n = Math.min(len, blockSize - filled);
+            System.arraycopy(b, off, block, filled, n);
+            filled += n;
+            off += n;
+            len -= n;
+            if (filled == blockSize) {
+                addBlock();
+            }
+        }
+    }
+
+    private void addBlock() {
+        sha1.update(block, 0, filled);
+        // The last block is checksummed padded with zeros
+        Arrays.fill(block, filled, blockSize, (byte) 0);
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < blockSize; i++) {
+            a += block[i] & 0xff;
+            b += a;
+        }
+        if ((blocks + 1) * CHECKSUMS_LENGTH > checksums.length) {
+            checksums = Arrays.copyOf(checksums, checksums.length * 2);
+        }
+        final int pos = blocks * CHECKSUMS_LENGTH;
+        checksums[pos] = (byte) (a >>> 8);
+        checksums[pos + 1] = (byte) a;
+        checksums[pos + 2] = (byte) (b >>> 8);
+        checksums[pos + 3] = (byte) b;
+        System.arraycopy(md4.digest(block, 0, blockSize), 0, checksums, pos + 4, 16);
+        blocks++;
+        filled = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (filled > 0) {
+            addBlock();
+        }
+        super.close();
+
+        // Hash lengths as recommended by zsyncmake for the file and block size
+        final int seqMatches = length > blockSize ? 2 : 1;
+        final double log2Length = Math.log(Math.max(length, 1L)) / Math.log(2);
+        final double log2Blocks = Math.log(1 + length / blockSize) / Math.log(2);
+        final int rsumLength = (int) Math.max(2, Math.min(4,
+                Math.ceil((log2Length + Math.log(blockSize) / Math.log(2) - 8.6) / seqMatches / 8)));
+        final int checksumLength = (int) Math.min(16, Math.max(
+                Math.ceil((20 + log2Length + log2Blocks) / seqMatches / 8),
+                (int) ((7.9 + 20 + log2Blocks) / 8)));
+
+        final String header = "zsync: " + VERSION + "\n"
+                + "Filename: " + file.getFileName() + "\n"
+                + "Blocksize: " + blockSize + "\n"
+                + "Length: " + length + "\n"
+                + "Hash-Lengths: " + seqMatches + "," + rsumLength + "," + checksumLength + "\n"
+                + "URL: " + file.getFileName() + "\n"
+                + "SHA-1: " + HexFormat.of().formatHex(sha1.digest()) + "\n"
+                + "\n";
+        try (final OutputStream control = new ChecksummedFileOutputStream(controlFile)) {
+            control.write(header.getBytes(StandardCharsets.US_ASCII));
+            final byte[] entry = new byte[rsumLength + checksumLength];
+            for (int i = 0; i < blocks; i++) {
+                final int pos = i * CHECKSUMS_LENGTH;
+                // Only the low order bytes of the rolling checksum are kept
+                System.arraycopy(checksums, pos + 4 - rsumLength, entry, 0, rsumLength);
+                System.arraycopy(checksums, pos + 4, entry, rsumLength, checksumLength);
+                control.write(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.monitoring;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps a continuous flight recording with the low overhead "default" JFR
+ * settings plus the zdbdump events, bounded by age and size.
+ */
+@Service
+public class FlightRecorderService {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderService.class);
+
+    @Value("${zdbdump.jfr.enabled}")
+    private boolean enabled;
+
+    @Value("${zdbdump.jfr.record-threshold}")
+    private Duration recordThreshold;
+
+    @Value("${zdbdump.jfr.max-age}")
+    private Duration maxAge;
+
+    @Value("${zdbdump.jfr.max-size}")
+    private long maxSize;
+
+    @Value("${zdbdump.path.temp}")
+    private String tempPath;
+
+    private Recording recording;
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() throws IOException, ParseException {
+        if (!enabled || !FlightRecorder.isAvailable()) {
+            return;
+        }
+        final Recording r = new Recording(Configuration.getConfiguration("default"));
+        r.setName("zdbdump");
+        r.setToDisk(true);
+        r.setMaxAge(maxAge);
+        r.setMaxSize(maxSize);
+        r.enable(PipelinePhaseEvent.class);
+        r.enable(HarvestRequestEvent.class);
+        r.enable(SanitizerEvent.class);
+        r.enable(RecordEvent.class).withThreshold(recordThreshold);
+        r.start();
+        recording = r;
+        log.info("Started continuous flight recording (maxAge={}, maxSize={} bytes, recordThreshold={})",
+                maxAge, maxSize, recordThreshold);
+    }
+
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Writes the data of the continuous recording collected so far to a file.
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("Continuous flight recording is not enabled");
+        }
+        final Path target = Path.of(tempPath).resolve("zdbdump.jfr");
+        Files.createDirectories(target.getParent());
+        recording.dump(target);
+        return target;
+    }
+
+    @PreDestroy
+    private void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("de.ddb.labs.zdbdump.HarvestRequest")
+@Label("OAI Harvest Request")
+@Category({ "zdbdump", "Harvest" })
+@Description("One ListRecords round trip including parsing and storing of the returned records")
+@StackTrace(false)
+public class HarvestRequestEvent extends Event {
+
+    @Label("URL")
+    public String url;
+
+    @Label("Attempt")
+    public int attempt;
+
+    @Label("Records")
+    public int records;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Error")
+    public String error;
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.monitoring;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Allocation and garbage collection counters of the JVM, sampled at the start
+ * and end of a pipeline phase to attribute them to the phase. They cover all
+ * threads, e.g. the output threads of a write phase, and overlap while
+ * several datasets run at once. The time of concurrent collector cycles is
+ * left out of the pauses.
+ *
+ * @param nanos          time of the sample, or the time elapsed since the
+ *                       earlier sample
+ * @param allocatedBytes bytes allocated so far or -1 if the JVM does not
+ *                       measure it
+ * @param gcPauses       garbage collection pauses
+ * @param gcPauseMillis  accumulated time of these pauses
+ */
+public record MemorySample(long nanos, long allocatedBytes, long gcPauses, long gcPauseMillis) {
+
+    public static MemorySample now() {
+        long allocated = -1L;
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean sunThreads
+                && sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+            allocated = sunThreads.getTotalThreadAllocatedBytes();
+        }
+        long pauses = 0L;
+        long pauseMillis = 0L;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // e.g. "G1 Concurrent GC" or "ZGC Cycles" next to the pause collectors
+            if (gc.getName().contains("Concurrent") || gc.getName().contains("Cycles")) {
+                continue;
+            }
+            pauses += Math.max(0L, gc.getCollectionCount());
+            pauseMillis += Math.max(0L, gc.getCollectionTime());
+        }
+        return new MemorySample(System.nanoTime(), allocated, pauses, pauseMillis);
+    }
+
+    /**
+     * @return the counters accumulated since the given earlier sample
+     */
+    public MemorySample since(MemorySample start) {
+        return new MemorySample(
+                nanos - start.nanos,
+                allocatedBytes >= 0L && start.allocatedBytes >= 0L ? allocatedBytes - start.allocatedBytes : -1L,
+                gcPauses - start.gcPauses,
+                gcPauseMillis - start.gcPauseMillis);
+    }
+}
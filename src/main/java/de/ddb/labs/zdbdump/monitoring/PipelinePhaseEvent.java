@@ -0,0 +1,51 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("de.ddb.labs.zdbdump.PipelinePhase")
+@Label("Pipeline Phase")
+@Category({ "zdbdump", "Pipeline" })
+@Description("A phase of a dump run, e.g. download, load, harvest, write or publish")
+@StackTrace(false)
+public class PipelinePhaseEvent extends Event {
+
+    @Label("Dataset")
+    public String dataset;
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Records")
+    public long records;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the JVM during the phase")
+    @DataAmount
+    public long allocated;
+
+    @Label("GC Pause Time")
+    @Timespan(Timespan.MILLISECONDS)
+    public long gcPauseTime;
+}
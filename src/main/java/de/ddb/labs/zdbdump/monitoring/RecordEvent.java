@@ -0,0 +1,56 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+@Name("de.ddb.labs.zdbdump.Record")
+@Label("Slow Record")
+@Category({ "zdbdump", "Pipeline" })
+@Description("Processing of a single record which took longer than the configured threshold")
+@StackTrace(false)
+@Threshold("20 ms")
+public class RecordEvent extends Event {
+
+    @Label("Dataset")
+    public String dataset;
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Record ID")
+    public String recordId;
+
+    @Label("Record Size")
+    @DataAmount
+    public long byteSize;
+
+    @Label("Transform Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long transformTime;
+
+    @Label("Store Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long storeTime;
+}
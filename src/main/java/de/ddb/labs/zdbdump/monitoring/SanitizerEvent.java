@@ -0,0 +1,51 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("de.ddb.labs.zdbdump.Sanitizer")
+@Label("XML Sanitizer Chunk")
+@Category({ "zdbdump", "XML" })
+@Description("Characters passed through the XML sanitizer. The duration spans the whole chunk, "
+        + "upstream time is spent reading and inflating the source, sanitizer time in the sanitizer itself "
+        + "and the rest in the consumer, e.g. parser, transformer and store.")
+@StackTrace(false)
+public class SanitizerEvent extends Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Characters")
+    public long characters;
+
+    @Label("Upstream Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long upstreamTime;
+
+    @Label("Sanitizer Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long sanitizerTime;
+
+    @Label("Recovered Entities")
+    public int recoveredEntities;
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.monitoring;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports how long after JVM start the application was ready and answered
+ * its first request, together with the startup optimizations in effect
+ * (Spring AOT, JDK AOT cache or CDS archive).
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class StartupTimer implements Filter {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimer.class);
+
+    private final AtomicBoolean firstRequest = new AtomicBoolean(true);
+
+    @EventListener(ApplicationReadyEvent.class)
+    void ready() {
+        log.info("Ready after {} ms (Spring AOT: {}, JVM archive: {})",
+                ManagementFactory.getRuntimeMXBean().getUptime(),
+                AotDetector.useGeneratedArtifacts() ? "on" : "off",
+                jvmArchive());
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!firstRequest.get() || !firstRequest.compareAndSet(true, false)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            log.info("Answered first request {} {} after {} ms",
+                    request instanceof HttpServletRequest http ? http.getMethod() : "",
+                    request instanceof HttpServletRequest http ? http.getRequestURI() : "",
+                    ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+    }
+
+    private static String jvmArchive() {
+        final List<String> arguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        for (final String argument : arguments) {
+            if (argument.startsWith("-XX:AOTCache=") || argument.startsWith("-XX:SharedArchiveFile=")) {
+                return argument.substring(argument.indexOf('=') + 1);
+            }
+        }
+        return "default CDS";
+    }
+}
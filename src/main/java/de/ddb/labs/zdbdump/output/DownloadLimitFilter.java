@@ -0,0 +1,271 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.output;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the downloads of published files: concurrent downloads per client
+ * address and in total, and the bandwidth per client and in total. Clients
+ * over a concurrency limit get {@code 503 Service Unavailable} with
+ * {@code Retry-After} right away instead of slowing down everyone else.
+ * Bandwidth is shaped with token buckets while the response is written, which
+ * only parks the virtual thread serving the download.
+ */
+@Component
+public class DownloadLimitFilter implements Filter {
+
+    private static final Logger log = LoggerFactory.getLogger(DownloadLimitFilter.class);
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Downloads of one client address, kept while it has any.
+     */
+    private static final class Client {
+
+        private final TokenBucket bucket;
+        private int active = 0;
+
+        private Client(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    @Value("${zdbdump.download.max-concurrent}")
+    private int maxConcurrent;
+
+    @Value("${zdbdump.download.max-per-client}")
+    private int maxPerClient;
+
+    @Value("${zdbdump.download.bandwidth}")
+    private long bandwidth;
+
+    @Value("${zdbdump.download.client-bandwidth}")
+    private long clientBandwidth;
+
+    @Value("${zdbdump.download.retry-after}")
+    private Duration retryAfter;
+
+    @Autowired
+    private OutputIndex outputIndex;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private Semaphore permits; // null if unlimited
+    private TokenBucket bucket; // null if unlimited
+    private Counter rejectedPerClient;
+    private Counter rejectedTotal;
+
+    @PostConstruct
+    void init() {
+        permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+        bucket = bandwidth > 0L ? new TokenBucket(bandwidth) : null;
+        final MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            Gauge.builder("zdbdump.downloads.active", active, AtomicInteger::get)
+                    .description("Downloads of published files in progress")
+                    .register(registry);
+            rejectedPerClient = rejected(registry, "client");
+            rejectedTotal = rejected(registry, "total");
+        }
+    }
+
+    private static Counter rejected(MeterRegistry registry, String limit) {
+        return Counter.builder("zdbdump.downloads.rejected")
+                .description("Downloads answered with 503 because of a concurrency limit")
+                .tag("limit", limit)
+                .register(registry);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest http) || !(response instanceof HttpServletResponse httpResponse)
+                || !"GET".equals(http.getMethod()) || !isPublishedFile(http.getServletPath())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        final String address = request.getRemoteAddr();
+        final Client[] admitted = {null};
+        clients.compute(address, (key, existing) -> {
+            final Client client = existing != null
+                    ? existing
+                    : new Client(clientBandwidth > 0L ? new TokenBucket(clientBandwidth) : null);
+            if (maxPerClient <= 0 || client.active < maxPerClient) {
+                client.active++;
+                admitted[0] = client;
+            }
+            return client.active > 0 ? client : null;
+        });
+        if (admitted[0] == null) {
+            reject(httpResponse, address, "client", rejectedPerClient);
+            return;
+        }
+        if (permits != null && !permits.tryAcquire()) {
+            release(address);
+            reject(httpResponse, address, "total", rejectedTotal);
+            return;
+        }
+        active.incrementAndGet();
+        try {
+            final List<TokenBucket> buckets = new ArrayList<>(2);
+            if (admitted[0].bucket != null) {
+                buckets.add(admitted[0].bucket);
+            }
+            if (bucket != null) {
+                buckets.add(bucket);
+            }
+            chain.doFilter(request, buckets.isEmpty() ? response : new ThrottledResponse(httpResponse, buckets));
+        } finally {
+            active.decrementAndGet();
+            if (permits != null) {
+                permits.release();
+            }
+            release(address);
+        }
+    }
+
+    private boolean isPublishedFile(String path) throws IOException {
+        if (path == null || path.length() < 2 || path.indexOf('/', 1) >= 0) {
+            return false;
+        }
+        final String name = path.substring(1);
+        for (final OutputFileInfo file : outputIndex.list()) {
+            if (file.name().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void release(String address) {
+        clients.computeIfPresent(address, (key, client) -> --client.active > 0 ? client : null);
+    }
+
+    private void reject(HttpServletResponse response, String address, String limit, Counter counter) {
+        log.debug("Rejected download of {}, {} concurrency limit reached", address, limit);
+        if (counter != null) {
+            counter.increment();
+        }
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1L, retryAfter.toSeconds())));
+    }
+
+    /**
+     * Takes tokens from every bucket before writing a chunk of the body.
+     */
+    private static final class ThrottledResponse extends HttpServletResponseWrapper {
+
+        private final List<TokenBucket> buckets;
+        private ServletOutputStream throttled;
+
+        private ThrottledResponse(HttpServletResponse response, List<TokenBucket> buckets) {
+            super(response);
+            this.buckets = buckets;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (throttled == null) {
+                final ServletOutputStream out = super.getOutputStream();
+                throttled = new ServletOutputStream() {
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        acquire(1);
+                        out.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        while (len > 0) {
+                            final int n = Math.min(len, CHUNK_SIZE);
+                            acquire(n);
+                            out.write(b, off, n);
+                            off += n;
+                            len -= n;
+                        }
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        out.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        out.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return out.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        out.setWriteListener(writeListener);
+                    }
+                };
+            }
+            return throttled;
+        }
+
+        private void acquire(int bytes) throws InterruptedIOException {
+            try {
+                for (final TokenBucket b : buckets) {
+                    b.acquire(bytes);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.output;
+
+/**
+ * A published file as listed by {@code GET /}.
+ *
+ * @param records number of records, null if the file was not written by a
+ *                dump run
+ * @param sha256  hex SHA-256 digest from the {@code .sha256} sidecar, null if
+ *                there is none
+ */
+public record OutputFileInfo(String name, String lastModified, long size, Long records, String sha256) {
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.output;
+
+import de.ddb.labs.zdbdump.store.StoreManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory index of the output directory. It is rebuilt lazily after the
+ * publish step or a {@link WatchService} reported a change, so listing the
+ * files does not touch the file system.
+ */
+@Component
+public class OutputIndex {
+
+    public static final String SHA256_SUFFIX = ".sha256";
+
+    private static final Logger log = LoggerFactory.getLogger(OutputIndex.class);
+
+    @Value("${zdbdump.path.output}")
+    private String outputPath;
+
+    @Autowired
+    private StoreManager storeManager;
+
+    private volatile Map<String, Long> recordCounts;
+    private WatchService watchService;
+    private final AtomicBoolean stale = new AtomicBoolean(true);
+    private volatile List<OutputFileInfo> files = List.of();
+
+    @PostConstruct
+    void start() throws IOException {
+        final Path dir = Path.of(outputPath);
+        Files.createDirectories(dir);
+        watchService = dir.getFileSystem().newWatchService();
+        dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread.ofVirtual().name("zdbdump-output-watch").start(this::watch);
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                final WatchKey key = watchService.take();
+                key.pollEvents();
+                stale.set(true);
+                if (!key.reset()) {
+                    log.warn("Output directory {} is no longer watched", outputPath);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutdown
+        }
+    }
+
+    /**
+     * Called by the publish step after a file was moved to the output
+     * directory.
+     */
+    public void published(Path file, long records) {
+        recordCounts().put(file.getFileName().toString(), records);
+        stale.set(true);
+    }
+
+    /**
+     * @return published files ordered by name, without the checksum sidecars
+     */
+    public List<OutputFileInfo> list() throws IOException {
+        if (stale.getAndSet(false)) {
+            rebuild();
+        }
+        return files;
+    }
+
+    private synchronized void rebuild() throws IOException {
+        final Path dir = Path.of(outputPath);
+        final List<OutputFileInfo> list = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (final Path file : stream) {
+                final String name = file.getFileName().toString();
+                if (name.endsWith(SHA256_SUFFIX)) {
+                    continue;
+                }
+                final BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue; // removed in the meantime
+                }
+                if (!attrs.isRegularFile() || attrs.size() == 0L || !Files.isReadable(file)) {
+                    continue;
+                }
+                list.add(new OutputFileInfo(
+                        name,
+                        ZonedDateTime.ofInstant(attrs.lastModifiedTime().toInstant(), ZoneId.systemDefault())
+                                .format(DateTimeFormatter.ISO_DATE_TIME),
+                        attrs.size(),
+                        recordCounts().get(name),
+                        readSha256(file)));
+            }
+        } catch (IOException e) {
+            stale.set(true);
+            throw e;
+        }
+        list.sort(Comparator.comparing(OutputFileInfo::name));
+        files = List.copyOf(list);
+    }
+
+    /**
+     * The record counts are kept in the MVStore, which is opened on first use
+     * and not on startup.
+     */
+    private Map<String, Long> recordCounts() {
+        Map<String, Long> counts = recordCounts;
+        if (counts == null) {
+            synchronized (this) {
+                counts = recordCounts;
+                if (counts == null) {
+                    counts = storeManager.openMap("output_records");
+                    recordCounts = counts;
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static String readSha256(Path file) {
+        final Path sidecar = file.resolveSibling(file.getFileName() + SHA256_SUFFIX);
+        try {
+            final String content = Files.readString(sidecar, StandardCharsets.UTF_8).trim();
+            final int end = content.indexOf(' ');
+            return end > 0 ? content.substring(0, end) : content;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.output;
+
+import java.time.Duration;
+
+/**
+ * Token bucket holding up to one second worth of bytes. Callers take the
+ * tokens they need up front, running into debt if there are not enough, and
+ * sleep until the debt is paid off; waiting callers are thereby served in
+ * order. Meant for virtual threads, which sleep cheaply.
+ */
+final class TokenBucket {
+
+    private final long bytesPerSecond;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+    }
+
+    void acquire(int bytes) throws InterruptedException {
+        final long waitNanos;
+        synchronized (this) {
+            final long now = System.nanoTime();
+            tokens = Math.min(bytesPerSecond, tokens + (now - refilledAt) * (double) bytesPerSecond / 1_000_000_000d);
+            refilledAt = now;
+            tokens -= bytes;
+            waitNanos = tokens < 0d ? (long) (-tokens * 1_000_000_000d / bytesPerSecond) : 0L;
+        }
+        if (waitNanos > 0L) {
+            Thread.sleep(Duration.ofNanos(waitNanos));
+        }
+    }
+}
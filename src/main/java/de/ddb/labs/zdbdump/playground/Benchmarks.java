@@ -0,0 +1,100 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.playground;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+
+/**
+ * Synthetic records and reporting shared by the benchmarks and checks in the
+ * playground.
+ *
+ * @author buechner
+ */
+final class Benchmarks {
+
+    private static final String[] WORDS = {
+        "Zeitschrift", "für", "Journal", "of", "the", "Annalen", "der", "Mitteilungen", "des", "Vereins",
+        "Bulletin", "Society", "Review", "Archiv", "Geschichte", "Physik", "Chemie", "Medizin", "Recht",
+        "Wirtschaft", "Berichte", "Jahrbuch", "Studies", "International", "European", "Deutsche",
+        "Österreichische", "Schweizerische", "Blätter", "Nachrichten", "Landeskunde", "Kunst", "Musik",
+        "Theologie", "Philosophie", "Pädagogik", "Forschung", "Praxis", "Technik", "Landwirtschaft",
+        "Forstwesen", "Bibliothekswesen", "Archäologie", "Sprache", "Literatur", "Kultur", "Statistik",
+        "Amtsblatt", "Gazette", "Quarterly", "Annual", "Proceedings", "Transactions", "Acta", "Studia",
+        "Revue", "Rivista", "Boletín", "und", "and", "et", "in", "zur", "im", "Heimat", "Kirche", "Schule"
+    };
+
+    private Benchmarks() {
+    }
+
+    /**
+     * ZDB ID of the given number, e.g. "2736054-4". The check digit is the sum
+     * of the digits weighted 2, 3, 4, ... from the right, modulo 11, with 10
+     * written as "X".
+     */
+    static String zdbId(int number) {
+        final String digits = Integer.toString(number);
+        int sum = 0;
+        for (int i = digits.length() - 1, weight = 2; i >= 0; i--, weight++) {
+            sum += (digits.charAt(i) - '0') * weight;
+        }
+        final int check = sum % 11;
+        return digits + "-" + (check == 10 ? "X" : String.valueOf(check));
+    }
+
+    /**
+     * A title of two to seven words like "Mitteilungen des Vereins für
+     * Landeskunde".
+     */
+    static String title(Random random) {
+        final StringBuilder sb = new StringBuilder();
+        final int words = 2 + random.nextInt(6);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    static void report(Logger log, String name, String phase, long count, long bytes, long nanos) {
+        final double seconds = nanos / 1_000_000_000d;
+        log.info("{}: {} of {} records ({} bytes or chars) took {} s, {} records/s",
+                name,
+                phase,
+                count,
+                bytes,
+                String.format("%.2f", seconds),
+                String.format("%.0f", count / Math.max(seconds, 0.001d)));
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (final Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
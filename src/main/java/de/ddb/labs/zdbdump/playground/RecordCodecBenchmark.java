@@ -0,0 +1,327 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.playground;
+
+import de.ddb.labs.zdbdump.store.BinaryRecordStore;
+import de.ddb.labs.zdbdump.store.MvStoreRecordStore;
+import de.ddb.labs.zdbdump.store.RecordCodec;
+import de.ddb.labs.zdbdump.store.RecordDictionary;
+import de.ddb.labs.zdbdump.store.RecordStore;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the dictionary-encoded record format with plain and per record
+ * deflated text on size, decode speed and MVStore footprint, with synthetic
+ * records shaped like the serialized {@code rdf:Description} records of the
+ * ZDB dump. Decoding to events is compared with parsing the text the way the
+ * dump writer does.
+ * <p>
+ * Usage: {@code RecordCodecBenchmark [records] [workDir]}; defaults to
+ * 200,000 records.
+ *
+ * @author buechner
+ */
+public class RecordCodecBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordCodecBenchmark.class);
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final String[][] NAMESPACES = {
+        {"rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#"},
+        {"dc", "http://purl.org/dc/elements/1.1/"},
+        {"dcterms", "http://purl.org/dc/terms/"},
+        {"bibo", "http://purl.org/ontology/bibo/"},
+        {"owl", "http://www.w3.org/2002/07/owl#"},
+        {"rdau", "http://rdaregistry.info/Elements/u/"},
+        {"isbd", "http://iflastandards.info/ns/isbd/elements/"},
+        {"umbel", "http://umbel.org/umbel#"},
+        {"foaf", "http://xmlns.com/foaf/0.1/"},
+        {"gndo", "https://d-nb.info/standards/elementset/gnd#"}
+    };
+    private static final String[] LANGUAGES = {"ger", "eng", "fre", "ita", "spa", "lat", "mul"};
+    private static final String[] PLACES = {"Berlin", "München", "Leipzig", "Frankfurt, M.", "Wien", "Zürich", "London", "Paris"};
+
+    private final int records;
+    private final Path workDir;
+
+    public RecordCodecBenchmark(int records, Path workDir) {
+        this.records = records;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) {
+        final int records = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        final Path workDir = Path.of(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"))
+                .resolve("zdbdump-codec-benchmark");
+        try {
+            new RecordCodecBenchmark(records, workDir).run();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    public void run() throws IOException, XMLStreamException, DataFormatException {
+        Benchmarks.deleteRecursively(workDir);
+        Files.createDirectories(workDir);
+
+        final Random random = new Random(42);
+        final TreeMap<String, String> texts = new TreeMap<>();
+        for (int i = 0; i < records; i++) {
+            final String id = Benchmarks.zdbId(1_000_000 + i * 7);
+            texts.put(id, record(id, random));
+        }
+        long textBytes = 0L;
+        for (final String text : texts.values()) {
+            textBytes += text.getBytes(StandardCharsets.UTF_8).length;
+        }
+        log.info("text: {} records, {} bytes, {} bytes per record", texts.size(), textBytes, textBytes / texts.size());
+
+        // Per record deflate, what a store compressing values one by one would keep
+        long started = System.nanoTime();
+        final List<byte[]> deflated = new ArrayList<>(texts.size());
+        long deflatedBytes = 0L;
+        final Deflater deflater = new Deflater();
+        final byte[] chunk = new byte[1 << 16];
+        for (final String text : texts.values()) {
+            deflater.reset();
+            deflater.setInput(text.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            final int length = deflater.deflate(chunk);
+            final byte[] bytes = Arrays.copyOf(chunk, length);
+            deflated.add(bytes);
+            deflatedBytes += bytes.length;
+        }
+        deflater.end();
+        Benchmarks.report(log, "deflate", "encode", texts.size(), deflatedBytes, System.nanoTime() - started);
+
+        final MVStore dictionaryStore = new MVStore.Builder()
+                .fileName(workDir.resolve("dictionary.db").toString())
+                .open();
+        try {
+            final RecordDictionary dictionary = new RecordDictionary(dictionaryStore.openMap("dictionary"));
+            final RecordCodec codec = new RecordCodec(dictionary);
+            final List<byte[]> encoded = new ArrayList<>(texts.size());
+            for (int round = 0; round < 3; round++) {
+                started = System.nanoTime();
+                encoded.clear();
+                long encodedBytes = 0L;
+                for (final String text : texts.values()) {
+                    final byte[] bytes = codec.encode(text);
+                    encoded.add(bytes);
+                    encodedBytes += bytes.length;
+                }
+                Benchmarks.report(log, "binary", "encode", texts.size(), encodedBytes, System.nanoTime() - started);
+            }
+            log.info("binary: {} dictionary terms", dictionary.size());
+
+            int mismatches = 0;
+            int i = 0;
+            for (final String text : texts.values()) {
+                if (!text.equals(codec.decode(encoded.get(i++)))) {
+                    mismatches++;
+                }
+            }
+            log.info("binary: {} of {} records decoded differently from their text", mismatches, texts.size());
+
+            for (int round = 0; round < 3; round++) {
+                started = System.nanoTime();
+                long chars = 0L;
+                for (final String text : texts.values()) {
+                    chars += parse(text);
+                }
+                Benchmarks.report(log, "text", "parse to events", texts.size(), chars, System.nanoTime() - started);
+
+                started = System.nanoTime();
+                chars = 0L;
+                final Inflater inflater = new Inflater();
+                for (final byte[] bytes : deflated) {
+                    inflater.reset();
+                    inflater.setInput(bytes);
+                    final int length = inflater.inflate(chunk);
+                    chars += new String(chunk, 0, length, StandardCharsets.UTF_8).length();
+                }
+                inflater.end();
+                Benchmarks.report(log, "deflate", "decode", deflated.size(), chars, System.nanoTime() - started);
+
+                started = System.nanoTime();
+                chars = 0L;
+                for (final byte[] bytes : encoded) {
+                    chars += codec.decode(bytes).length();
+                }
+                Benchmarks.report(log, "binary", "decode", encoded.size(), chars, System.nanoTime() - started);
+
+                started = System.nanoTime();
+                final CountingOutputStream out = new CountingOutputStream();
+                for (final byte[] bytes : encoded) {
+                    codec.decode(bytes, out);
+                }
+                Benchmarks.report(log, "binary", "decode to stream", encoded.size(), out.count,
+                        System.nanoTime() - started);
+            }
+        } finally {
+            dictionaryStore.close();
+        }
+
+        footprint("mvstore-text", texts, false);
+        footprint("mvstore-binary", texts, true);
+
+        Benchmarks.deleteRecursively(workDir);
+    }
+
+    private void footprint(String name, TreeMap<String, String> texts, boolean binary) throws IOException {
+        final Path file = workDir.resolve(name + ".db");
+        final MVStore mvStore = new MVStore.Builder()
+                .fileName(file.toString())
+                .compress()
+                .open();
+        try {
+            final RecordStore store = binary
+                    ? new BinaryRecordStore(mvStore.openMap("records"), new RecordDictionary(mvStore.openMap("dictionary")))
+                    : new MvStoreRecordStore(mvStore.openMap("records"));
+            final long started = System.nanoTime();
+            store.load(texts.entrySet().iterator());
+            Benchmarks.report(log, name, "load", store.size(), 0L, System.nanoTime() - started);
+
+            final long iterateStarted = System.nanoTime();
+            long chars = 0L;
+            for (final Map.Entry<String, String> e : store) {
+                chars += e.getValue().length();
+            }
+            Benchmarks.report(log, name, "iterate", store.size(), chars, System.nanoTime() - iterateStarted);
+        } finally {
+            mvStore.close();
+        }
+        log.info("{}: disk footprint after close {} bytes", name, Files.size(file));
+    }
+
+    private static final XMLInputFactory XML_INPUT = XMLInputFactory.newFactory();
+    private static final XMLOutputFactory XML_OUTPUT = XMLOutputFactory.newFactory();
+
+    /**
+     * Streams the events of a text record to a writer like the dump writer.
+     */
+    private static long parse(String text) throws XMLStreamException {
+        final CountingWriter writer = new CountingWriter();
+        final XMLEventWriter xmlEventWriter = XML_OUTPUT.createXMLEventWriter(writer);
+        final XMLEventReader reader = XML_INPUT.createXMLEventReader(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        while (reader.hasNext()) {
+            final XMLEvent event = reader.nextEvent();
+            if (event.getEventType() != XMLEvent.START_DOCUMENT && event.getEventType() != XMLEvent.END_DOCUMENT) {
+                xmlEventWriter.add(event);
+            }
+        }
+        reader.close();
+        xmlEventWriter.flush();
+        return writer.count;
+    }
+
+    private static String record(String id, Random random) {
+        final StringBuilder sb = new StringBuilder(4096);
+        sb.append(DECLARATION).append("<rdf:Description");
+        for (final String[] ns : NAMESPACES) {
+            sb.append(" xmlns:").append(ns[0]).append("=\"").append(ns[1]).append('"');
+        }
+        sb.append(" rdf:about=\"https://ld.zdb-services.de/resource/").append(id).append("\">\n");
+        property(sb, "<rdf:type rdf:resource=\"http://purl.org/ontology/bibo/Periodical\"/>");
+        property(sb, "<dc:identifier>(DE-600)ZDB" + id + "</dc:identifier>");
+        property(sb, "<dc:identifier>(OCoLC)" + (100_000 + random.nextInt(900_000_000)) + "</dc:identifier>");
+        property(sb, "<dcterms:medium rdf:resource=\"http://rdaregistry.info/termList/RDACarrierType/"
+                + (1001 + random.nextInt(50)) + "\"/>");
+        final int titles = 1 + random.nextInt(3);
+        for (int i = 0; i < titles; i++) {
+            property(sb, "<dc:title>" + Benchmarks.title(random) + "</dc:title>");
+        }
+        property(sb, "<dcterms:language rdf:resource=\"http://id.loc.gov/vocabulary/iso639-2/"
+                + LANGUAGES[random.nextInt(LANGUAGES.length)] + "\"/>");
+        property(sb, "<rdau:P60163>" + PLACES[random.nextInt(PLACES.length)] + "</rdau:P60163>");
+        property(sb, "<dc:publisher>" + Benchmarks.title(random) + " &amp; Co.</dc:publisher>");
+        property(sb, "<isbd:P1053>" + (1900 + random.nextInt(125)) + "-</isbd:P1053>");
+        property(sb, "<bibo:issn>" + (1000 + random.nextInt(9000)) + "-" + (1000 + random.nextInt(9000)) + "</bibo:issn>");
+        final int subjects = random.nextInt(6);
+        for (int i = 0; i < subjects; i++) {
+            property(sb, "<dcterms:subject rdf:resource=\"https://d-nb.info/gnd/" + (4_000_000 + random.nextInt(100_000))
+                    + "-" + random.nextInt(10) + "\"/>");
+        }
+        property(sb, "<owl:sameAs rdf:resource=\"http://www.wikidata.org/entity/Q" + random.nextInt(100_000_000) + "\"/>");
+        property(sb, "<umbel:isLike rdf:resource=\"http://ld.zdb-services.de/resource/"
+                + Benchmarks.zdbId(random.nextInt(3_000_000)) + "\"/>");
+        property(sb, "<dcterms:modified rdf:datatype=\"http://www.w3.org/2001/XMLSchema#dateTime\">20"
+                + (10 + random.nextInt(16)) + "-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10)
+                + "T0" + random.nextInt(10) + ":1" + random.nextInt(10) + ":00.000</dcterms:modified>");
+        return sb.append("</rdf:Description>").toString();
+    }
+
+    private static void property(StringBuilder sb, String element) {
+        sb.append("    ").append(element).append('\n');
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static final class CountingWriter extends Writer {
+
+        private long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.playground;
+
+import de.ddb.labs.zdbdump.store.ExternalRecordSorter;
+import de.ddb.labs.zdbdump.store.MvStoreRecordStore;
+import de.ddb.labs.zdbdump.store.RecordStore;
+import de.ddb.labs.zdbdump.store.SegmentLogRecordStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the record store backends on ingest throughput, iteration speed and
+ * disk footprint with synthetic ZDB-like records. {@code mvstore-bulk} ingests
+ * through an {@link ExternalRecordSorter} and inserts in key order like the
+ * bulk load of the base dump.
+ * <p>
+ * Usage: {@code RecordStoreBenchmark [records] [workDir]}; defaults to
+ * 2,000,000 records which is roughly the size of the ZDB catalogue.
+ *
+ * @author buechner
+ */
+public class RecordStoreBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordStoreBenchmark.class);
+    private static final int BATCH_SIZE = 1_000;
+    private static final long SORT_BUFFER = 64L << 20;
+
+    private final int records;
+    private final Path workDir;
+
+    public RecordStoreBenchmark(int records, Path workDir) {
+        this.records = records;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) {
+        final int records = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final Path workDir = Path.of(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"))
+                .resolve("zdbdump-benchmark");
+        try {
+            new RecordStoreBenchmark(records, workDir).run();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    public void run() throws IOException {
+        Benchmarks.deleteRecursively(workDir);
+        Files.createDirectories(workDir);
+
+        final MVStore mvStore = new MVStore.Builder()
+                .fileName(workDir.resolve("benchmark.db").toString())
+                .compress()
+                .open();
+        try {
+            measure("mvstore", new MvStoreRecordStore(mvStore.openMap("benchmark")), false);
+        } finally {
+            mvStore.close();
+        }
+        log.info("mvstore: disk footprint after close {} bytes", Files.size(workDir.resolve("benchmark.db")));
+
+        final MVStore bulkStore = new MVStore.Builder()
+                .fileName(workDir.resolve("benchmark-bulk.db").toString())
+                .compress()
+                .open();
+        try {
+            measure("mvstore-bulk", new MvStoreRecordStore(bulkStore.openMap("benchmark")), true);
+        } finally {
+            bulkStore.close();
+        }
+        log.info("mvstore-bulk: disk footprint after close {} bytes", Files.size(workDir.resolve("benchmark-bulk.db")));
+
+        final SegmentLogRecordStore segmentLog = new SegmentLogRecordStore(workDir.resolve("segmentlog"), 256 << 20);
+        try {
+            measure("segmentlog", segmentLog, false);
+        } finally {
+            segmentLog.close();
+        }
+        log.info("segmentlog: disk footprint after close {} bytes", directorySize(workDir.resolve("segmentlog")));
+
+        Benchmarks.deleteRecursively(workDir);
+    }
+
+    private void measure(String name, RecordStore store, boolean bulk) throws IOException {
+        final Random random = new Random(42);
+        long bytes = 0L;
+
+        // Ingest in pseudo random key order like the base dump
+        long started = System.nanoTime();
+        if (bulk) {
+            try (final ExternalRecordSorter sorter = new ExternalRecordSorter(workDir.resolve("sort"), SORT_BUFFER)) {
+                for (int i = 0; i < records; i++) {
+                    final String id = Benchmarks.zdbId(random.nextInt(records * 4));
+                    final String record = record(id, random);
+                    bytes += record.length();
+                    sorter.add(id, record);
+                }
+                log.info("{}: sorted in {} runs", name, sorter.runCount());
+                store.load(sorter.iterator());
+            }
+        } else {
+            final Map<String, String> batch = new LinkedHashMap<>();
+            for (int i = 0; i < records; i++) {
+                final String id = Benchmarks.zdbId(random.nextInt(records * 4));
+                final String record = record(id, random);
+                bytes += record.length();
+                batch.put(id, record);
+                if (batch.size() >= BATCH_SIZE) {
+                    store.putAll(batch);
+                    batch.clear();
+                }
+            }
+            store.putAll(batch);
+        }
+        store.commit();
+        Benchmarks.report(log, name, "ingest", store.size(), bytes, System.nanoTime() - started);
+        log.info("{}: disk footprint after ingest {} bytes", name, store.diskSize());
+
+        // Replace 5 % of the records like a harvest would do
+        started = System.nanoTime();
+        final int updates = records / 20;
+        for (int i = 0; i < updates; i++) {
+            final String id = Benchmarks.zdbId(random.nextInt(records * 4));
+            store.put(id, record(id, random));
+        }
+        store.commit();
+        Benchmarks.report(log, name, "update", updates, 0L, System.nanoTime() - started);
+
+        started = System.nanoTime();
+        long iterated = 0L;
+        long iteratedBytes = 0L;
+        for (final Map.Entry<String, String> e : store) {
+            iterated++;
+            iteratedBytes += e.getValue().length();
+        }
+        Benchmarks.report(log, name, "iterate", iterated, iteratedBytes, System.nanoTime() - started);
+
+        started = System.nanoTime();
+        store.compact();
+        Benchmarks.report(log, name, "compact", store.size(), 0L, System.nanoTime() - started);
+        log.info("{}: disk footprint {} bytes", name, store.diskSize());
+    }
+
+    private static String record(String id, Random random) {
+        final StringBuilder sb = new StringBuilder(2048);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rdf:Description")
+                .append(" xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"")
+                .append(" xmlns:dc=\"http://purl.org/dc/elements/1.1/\"")
+                .append(" xmlns:bibo=\"http://purl.org/ontology/bibo/\"")
+                .append(" rdf:about=\"https://ld.zdb-services.de/resource/").append(id).append("\">")
+                .append("<rdf:type rdf:resource=\"http://purl.org/ontology/bibo/Periodical\"/>");
+        final int properties = 10 + random.nextInt(30);
+        for (int i = 0; i < properties; i++) {
+            sb.append("<dc:title>Zeitschrift für ").append(Long.toString(random.nextLong(), 36))
+                    .append(' ').append(i).append("</dc:title>");
+        }
+        sb.append("<bibo:issn>").append(1000 + random.nextInt(9000)).append('-')
+                .append(1000 + random.nextInt(9000)).append("</bibo:issn>")
+                .append("</rdf:Description>");
+        return sb.toString();
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            long size = 0L;
+            for (final Path file : files.toList()) {
+                size += Files.size(file);
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.playground;
+
+import de.ddb.labs.zdbdump.cronjobs.GzipSegmentIndex;
+import de.ddb.labs.zdbdump.cronjobs.MemoryBudget;
+import de.ddb.labs.zdbdump.cronjobs.SegmentedGzipInputStream;
+import de.ddb.labs.zdbdump.cronjobs.SegmentedGzipOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks that transcoding and reading the base dump in segments cannot
+ * deadlock with a memory budget. The reader holds the segment buffers while
+ * it waits in {@link MemoryBudget#admit(long)} for every chunk, as the record
+ * parser does for every record. Both passes have to finish within the
+ * timeout, return the same bytes and leave nothing reserved.
+ * <p>
+ * Usage: {@code SegmentBudgetCheck [megabytes] [workDir]}; defaults to 128
+ * MiB with a 32 MiB budget, 4 MiB segments and 4 threads.
+ *
+ * @author buechner
+ */
+public class SegmentBudgetCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentBudgetCheck.class);
+    private static final long BUDGET = 32L << 20;
+    private static final int SEGMENT_SIZE = 4 << 20;
+    private static final int THREADS = 4;
+    private static final int CHUNK = 64 << 10;
+    private static final long TIMEOUT_MILLIS = 120_000L;
+
+    private final long bytes;
+    private final Path workDir;
+
+    public SegmentBudgetCheck(long bytes, Path workDir) {
+        this.bytes = bytes;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) {
+        final long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 128L;
+        final Path workDir = Path.of(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"))
+                .resolve("zdbdump-segment-budget-check");
+        try {
+            new SegmentBudgetCheck(megabytes << 20, workDir).run();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    public void run() throws Exception {
+        Benchmarks.deleteRecursively(workDir);
+        Files.createDirectories(workDir);
+        final Path file = workDir.resolve("dump.rdf.gz");
+        final MemoryBudget budget = new MemoryBudget(BUDGET);
+        final AtomicReference<GzipSegmentIndex> index = new AtomicReference<>();
+
+        final long written = pass("Transcoding", budget, () -> {
+            try (final SegmentedGzipOutputStream out = new SegmentedGzipOutputStream(
+                    file, SEGMENT_SIZE, THREADS, budget.buffers())) {
+                final long crc = consume(out.tee(new SyntheticDump(bytes)), budget);
+                index.set(out.finish());
+                return crc;
+            }
+        });
+        final long read = pass("Reading", budget, () -> {
+            try (final InputStream in = new SegmentedGzipInputStream(
+                    file, index.get(), THREADS, budget.buffers(), offset -> {
+                    })) {
+                return consume(in, budget);
+            }
+        });
+        if (written != read) {
+            throw new IllegalStateException("Read back other bytes than were transcoded");
+        }
+        log.info("{} bytes in {} segments transcoded and read back with a budget of {} bytes",
+                bytes, index.get().segments().size(), BUDGET);
+        Benchmarks.deleteRecursively(workDir);
+    }
+
+    private interface Pass {
+
+        long run() throws Exception;
+    }
+
+    private static long pass(String name, MemoryBudget budget, Pass pass) throws Exception {
+        final AtomicReference<Object> result = new AtomicReference<>();
+        final Thread thread = Thread.ofPlatform().name("check").daemon().start(() -> {
+            try {
+                result.set(pass.run());
+            } catch (Throwable e) {
+                result.set(e);
+            }
+        });
+        final long start = System.nanoTime();
+        thread.join(TIMEOUT_MILLIS);
+        if (thread.isAlive()) {
+            throw new IllegalStateException(name + " deadlocked at reserved=" + budget.reserved()
+                    + ", buffers reserved=" + budget.buffers().reserved());
+        }
+        if (result.get() instanceof Exception e) {
+            throw e;
+        }
+        if (result.get() instanceof Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        if (budget.reserved() != 0L || budget.buffers().reserved() != 0L) {
+            throw new IllegalStateException(name + " left reserved=" + budget.reserved()
+                    + ", buffers reserved=" + budget.buffers().reserved());
+        }
+        log.info("{} took {} ms", name, (System.nanoTime() - start) / 1_000_000L);
+        return (Long) result.get();
+    }
+
+    /**
+     * Reads the stream in chunks, admitting each chunk like the record parser.
+     *
+     * @return CRC-32 of the bytes read
+     */
+    private static long consume(InputStream in, MemoryBudget budget) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] chunk = new byte[CHUNK];
+        int n;
+        while ((n = in.readNBytes(chunk, 0, CHUNK)) > 0) {
+            crc.update(chunk, 0, n);
+            budget.admit(n);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Record-like lines up to the given number of bytes.
+     */
+    private static final class SyntheticDump extends InputStream {
+
+        private final long length;
+        private long pos = 0L;
+        private byte[] line = new byte[0];
+        private int linePos = 0;
+        private int record = 0;
+
+        SyntheticDump(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (pos == length) {
+                return -1;
+            }
+            if (linePos == line.length) {
+                record++;
+                line = ("<rdf:Description rdf:about=\"https://ld.zdb-services.de/resource/" + record
+                        + "\"><dc:title>Titel " + (record * 7919L % 100_003) + "</dc:title></rdf:Description>\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                linePos = 0;
+            }
+            final int n = (int) Math.min(Math.min(len, line.length - linePos), length - pos);
+            System.arraycopy(line, linePos, b, off, n);
+            linePos += n;
+            pos += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.playground;
+
+import de.ddb.labs.zdbdump.store.TitleIndex;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures build throughput, update throughput, query latency and disk
+ * footprint of the title index with synthetic serial titles.
+ * <p>
+ * Usage: {@code TitleIndexBenchmark [records] [queries] [workDir]}; defaults
+ * to 2,000,000 records which is roughly the size of the ZDB catalogue.
+ *
+ * @author buechner
+ */
+public class TitleIndexBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(TitleIndexBenchmark.class);
+    private static final String TITLE_PATTERN = "<dc:title[^>]*>([^<]+)<";
+    private static final int PAGE_SIZE = 20;
+
+    private final int records;
+    private final int queries;
+    private final Path workDir;
+
+    public TitleIndexBenchmark(int records, int queries, Path workDir) {
+        this.records = records;
+        this.queries = queries;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) {
+        final int records = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final int queries = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        final Path workDir = Path.of(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"))
+                .resolve("zdbdump-title-benchmark");
+        try {
+            new TitleIndexBenchmark(records, queries, workDir).run();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    public void run() throws IOException {
+        Benchmarks.deleteRecursively(workDir);
+        Files.createDirectories(workDir);
+        final Path file = workDir.resolve("titles.db");
+
+        final MVStore mvStore = new MVStore.Builder()
+                .fileName(file.toString())
+                .compress()
+                .open();
+        try {
+            final TitleIndex index = new TitleIndex(
+                    TITLE_PATTERN,
+                    mvStore.openMap("titles"),
+                    mvStore.openMap("title_trigrams"),
+                    mvStore.openMap("title_records"));
+            index.clear();
+            final Random random = new Random(42);
+
+            long started = System.nanoTime();
+            for (int i = 0; i < records; i++) {
+                index.update(Benchmarks.zdbId(i), record(random));
+            }
+            index.commit();
+            Benchmarks.report(log, "titles", "build", records, 0L, System.nanoTime() - started);
+            log.info("{} titles, disk footprint {} bytes", index.size(), mvStore.getFileStore().size());
+
+            // Replace 1 % of the titles like a harvest would do
+            started = System.nanoTime();
+            final int updates = records / 100;
+            for (int i = 0; i < updates; i++) {
+                index.update(Benchmarks.zdbId(random.nextInt(records)), record(random));
+            }
+            index.commit();
+            Benchmarks.report(log, "titles", "update", updates, 0L, System.nanoTime() - started);
+
+            started = System.nanoTime();
+            mvStore.compactFile(60_000);
+            Benchmarks.report(log, "titles", "compact", index.size(), 0L, System.nanoTime() - started);
+            log.info("disk footprint after compaction {} bytes", mvStore.getFileStore().size());
+
+            final long[] prefix = new long[queries];
+            final long[] contains = new long[queries];
+            long hits = 0L;
+            for (int i = 0; i < queries; i++) {
+                final String title = title(random);
+                final String query = title.substring(0, Math.min(title.length(), 3 + random.nextInt(8)));
+                started = System.nanoTime();
+                hits += index.searchPrefix(query, 0, PAGE_SIZE).hits().size();
+                prefix[i] = System.nanoTime() - started;
+
+                // A piece from the middle, often spanning two words
+                final String other = title(random);
+                final int from = random.nextInt(Math.max(1, other.length() - 12));
+                final String fragment = other.substring(from, Math.min(other.length(), from + 4 + random.nextInt(9)));
+                started = System.nanoTime();
+                hits += index.searchContains(fragment, 0, PAGE_SIZE).hits().size();
+                contains[i] = System.nanoTime() - started;
+            }
+            latencies("prefix", prefix);
+            latencies("contains", contains);
+            log.info("{} hits in total", hits);
+        } finally {
+            mvStore.close();
+        }
+        log.info("disk footprint after close {} bytes", Files.size(file));
+
+        Benchmarks.deleteRecursively(workDir);
+    }
+
+    private static void latencies(String name, long[] nanos) {
+        Arrays.sort(nanos);
+        log.info("{} search of a page of {}: p50 {} µs, p95 {} µs, p99 {} µs, max {} µs",
+                name,
+                PAGE_SIZE,
+                nanos[nanos.length / 2] / 1_000,
+                nanos[(int) (nanos.length * 0.95d)] / 1_000,
+                nanos[(int) (nanos.length * 0.99d)] / 1_000,
+                nanos[nanos.length - 1] / 1_000);
+    }
+
+    private static String record(Random random) {
+        return "<dc:title>" + title(random) + "</dc:title>";
+    }
+
+    private static String title(Random random) {
+        final String title = Benchmarks.title(random);
+        // Place names, years and numbering make titles distinct
+        return random.nextBoolean() ? title + " " + Long.toString(random.nextInt(100_000), 36) : title;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.playground;
+
+import de.ddb.labs.zdbdump.store.TripleIndex;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures build throughput and disk footprint of the triple index and the
+ * throughput of triple pattern fragments under concurrent clients with
+ * synthetic ZDB like records.
+ * <p>
+ * Usage: {@code TripleFragmentBenchmark [records] [clients] [seconds] [workDir]};
+ * defaults to 200,000 records and 1, 2, 4 ... up to 16 clients for 10 s
+ * each.
+ *
+ * @author buechner
+ */
+public class TripleFragmentBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(TripleFragmentBenchmark.class);
+    private static final int PAGE_SIZE = 100;
+    private static final String RESOURCE = "https://ld.zdb-services.de/resource/";
+    private static final String[] PATTERNS = {"s??", "sp?", "?po", "?p?", "??o", "?p? deep"};
+
+    private final int records;
+    private final int maxClients;
+    private final int seconds;
+    private final Path workDir;
+
+    public TripleFragmentBenchmark(int records, int maxClients, int seconds, Path workDir) {
+        this.records = records;
+        this.maxClients = maxClients;
+        this.seconds = seconds;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) {
+        final int records = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        final int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        final Path workDir = Path.of(args.length > 3 ? args[3] : System.getProperty("java.io.tmpdir"))
+                .resolve("zdbdump-triple-benchmark");
+        try {
+            new TripleFragmentBenchmark(records, clients, seconds, workDir).run();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    public void run() throws Exception {
+        Benchmarks.deleteRecursively(workDir);
+        Files.createDirectories(workDir);
+        final Path file = workDir.resolve("triples.db");
+
+        final MVStore mvStore = new MVStore.Builder()
+                .fileName(file.toString())
+                .compress()
+                .open();
+        try {
+            final TripleIndex index = new TripleIndex(
+                    mvStore.openMap("spo"),
+                    mvStore.openMap("pos"),
+                    mvStore.openMap("osp"),
+                    mvStore.openMap("triple_records"));
+            index.clear();
+            final Random random = new Random(42);
+
+            long started = System.nanoTime();
+            for (int i = 0; i < records; i++) {
+                index.update(Benchmarks.zdbId(i), record(i, random));
+            }
+            index.commit();
+            final double buildSeconds = (System.nanoTime() - started) / 1_000_000_000d;
+            log.info("build of {} records took {} s, {} records/s, {} triples/s",
+                    records,
+                    String.format("%.2f", buildSeconds),
+                    String.format("%.0f", records / Math.max(buildSeconds, 0.001d)),
+                    String.format("%.0f", index.size() / Math.max(buildSeconds, 0.001d)));
+            mvStore.compactFile(60_000);
+            log.info("{} triples, disk footprint after compaction {} bytes", index.size(),
+                    mvStore.getFileStore().size());
+
+            for (int clients = 1; clients <= maxClients; clients *= 2) {
+                measure(index, clients);
+            }
+        } finally {
+            mvStore.close();
+        }
+        Benchmarks.deleteRecursively(workDir);
+    }
+
+    /**
+     * Lets the clients request fragments of random patterns as fast as they
+     * can and reports throughput and latencies per pattern.
+     */
+    private void measure(TripleIndex index, int clients) throws Exception {
+        final long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+        final List<Future<List<long[]>>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            results.add(executor.submit(() -> {
+                final List<long[]> samples = new ArrayList<>(); // pattern, nanos
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    final int pattern = random.nextInt(PATTERNS.length);
+                    final long started = System.nanoTime();
+                    query(index, pattern, random);
+                    samples.add(new long[]{pattern, System.nanoTime() - started});
+                }
+                return samples;
+            }));
+        }
+        final List<List<Long>> latencies = new ArrayList<>();
+        for (int p = 0; p < PATTERNS.length; p++) {
+            latencies.add(new ArrayList<>());
+        }
+        long total = 0L;
+        for (final Future<List<long[]>> result : results) {
+            for (final long[] sample : result.get()) {
+                latencies.get((int) sample[0]).add(sample[1]);
+                total++;
+            }
+        }
+        executor.shutdown();
+        log.info("{} client(s): {} fragments/s", clients, String.format("%.0f", total / (double) seconds));
+        for (int p = 0; p < PATTERNS.length; p++) {
+            final long[] nanos = latencies.get(p).stream().mapToLong(Long::longValue).sorted().toArray();
+            if (nanos.length == 0) {
+                continue;
+            }
+            log.info("  {}: p50 {} µs, p95 {} µs, p99 {} µs, max {} µs",
+                    PATTERNS[p],
+                    nanos[nanos.length / 2] / 1_000,
+                    nanos[(int) (nanos.length * 0.95d)] / 1_000,
+                    nanos[(int) (nanos.length * 0.99d)] / 1_000,
+                    nanos[nanos.length - 1] / 1_000);
+        }
+    }
+
+    private void query(TripleIndex index, int pattern, Random random) {
+        final int i = random.nextInt(records);
+        final String subject = TripleIndex.iri(RESOURCE + Benchmarks.zdbId(i));
+        switch (pattern) {
+            case 0 -> index.match(subject, null, null, 0L, PAGE_SIZE);
+            case 1 -> index.match(subject, TripleIndex.iri("http://purl.org/dc/elements/1.1/title"), null, 0L, PAGE_SIZE);
+            case 2 -> index.match(null, TripleIndex.iri("http://purl.org/ontology/bibo/issn"),
+                    TripleIndex.literal(issn(i), null, null), 0L, PAGE_SIZE);
+            case 3 -> index.match(null, TripleIndex.iri("http://purl.org/dc/terms/subject"), null, 0L, PAGE_SIZE);
+            case 4 -> index.match(null, null, TripleIndex.iri(subjectIri(random.nextInt(100))), 0L, PAGE_SIZE);
+            default -> index.match(null, TripleIndex.iri("http://purl.org/dc/terms/subject"), null,
+                    (long) random.nextInt(records / PAGE_SIZE) * PAGE_SIZE, PAGE_SIZE);
+        }
+    }
+
+    private static String issn(int number) {
+        return String.format("%04d-%04d", number / 10_000 % 10_000, number % 10_000);
+    }
+
+    private static String subjectIri(int number) {
+        return "http://dewey.info/class/" + number + "/";
+    }
+
+    /**
+     * A record with about a dozen triples, some of them shared by many records.
+     */
+    private static String record(int number, Random random) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("<rdf:Description xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"")
+                .append(" xmlns:dc=\"http://purl.org/dc/elements/1.1/\"")
+                .append(" xmlns:dcterms=\"http://purl.org/dc/terms/\"")
+                .append(" xmlns:bibo=\"http://purl.org/ontology/bibo/\"")
+                .append(" xmlns:owl=\"http://www.w3.org/2002/07/owl#\"")
+                .append(" rdf:about=\"").append(RESOURCE).append(Benchmarks.zdbId(number)).append("\">")
+                .append("<rdf:type rdf:resource=\"http://purl.org/ontology/bibo/Periodical\"/>")
+                .append("<dc:title>Zeitschrift ").append(number).append("</dc:title>")
+                .append("<dc:identifier>(DE-599)ZDB").append(Benchmarks.zdbId(number)).append("</dc:identifier>")
+                .append("<bibo:issn>").append(issn(number)).append("</bibo:issn>")
+                .append("<dcterms:publisher>Verlag ").append(random.nextInt(5_000)).append("</dcterms:publisher>")
+                .append("<dcterms:language rdf:resource=\"http://id.loc.gov/vocabulary/iso639-2/")
+                .append(random.nextBoolean() ? "ger" : "eng").append("\"/>")
+                .append("<owl:sameAs rdf:resource=\"http://ld.zdb-services.de/data/").append(number).append("\"/>");
+        for (int s = 0; s < 1 + random.nextInt(3); s++) {
+            sb.append("<dcterms:subject rdf:resource=\"").append(subjectIri(random.nextInt(100))).append("\"/>");
+        }
+        sb.append("<dcterms:issued>").append(1800 + random.nextInt(226)).append("</dcterms:issued>")
+                .append("</rdf:Description>");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.playground;
+
+import de.ddb.labs.zdbdump.cronjobs.Md4;
+import de.ddb.labs.zdbdump.cronjobs.RsyncableGzipOutputStream;
+import de.ddb.labs.zdbdump.cronjobs.ZsyncOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the zsync support of the dump writer. The MD4 implementation is
+ * checked against the test suite of RFC 1320. Then an older and a newer
+ * rsyncable dump with synthetic records are written the way the dump sink
+ * writes them, and a client updates the older dump to the newer one with
+ * nothing but the control file of the newer one: it takes the blocks it finds
+ * in the older dump and fetches the others from the newer dump, and the result
+ * has to match the SHA-1 of the control file and gunzip to the newer records.
+ * <p>
+ * Usage: {@code ZsyncCheck [records] [workDir]}; defaults to 50,000 records.
+ *
+ * @author buechner
+ */
+public class ZsyncCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(ZsyncCheck.class);
+    // RFC 1320, A.5 Test suite
+    private static final String[][] MD4_VECTORS = {
+        {"", "31d6cfe0d16ae931b73c59d7e0c089c0"},
+        {"a", "bde52cb31de33e46245e05fbdbd6fb24"},
+        {"abc", "a448017aaf21d8525fc10ae87aa6729d"},
+        {"message digest", "d9130a8164549fe818874806e1c7014b"},
+        {"abcdefghijklmnopqrstuvwxyz", "d79e1c308aa5bbcdeea8ed63df412da9"},
+        {"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789", "043f8582f241db351ce627e153e7f0e4"},
+        {"12345678901234567890123456789012345678901234567890123456789012345678901234567890", "e33b4ddc9c38f2199c3e7b164fcc0536"}
+    };
+    // As in the dump sink with the default block size
+    private static final int BLOCK_SIZE = 2048;
+    private static final int RESET_INTERVAL = 8;
+    private static final long RESET_DISTANCE = 64 * 1024;
+
+    private final int records;
+    private final Path workDir;
+
+    public ZsyncCheck(int records, Path workDir) {
+        this.records = records;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) {
+        final int records = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        final Path workDir = Path.of(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"))
+                .resolve("zdbdump-zsync-check");
+        try {
+            new ZsyncCheck(records, workDir).run();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    public void run() throws IOException {
+        checkMd4();
+
+        Benchmarks.deleteRecursively(workDir);
+        Files.createDirectories(workDir);
+        final Random random = new Random(42);
+        final List<String[]> oldRecords = new ArrayList<>();
+        for (int i = 0; i < records; i++) {
+            oldRecords.add(record(i, random));
+        }
+        // A changed, a deleted and a new record
+        final List<String[]> newRecords = new ArrayList<>(oldRecords);
+        newRecords.set(records / 2, record(records / 2, random));
+        newRecords.remove(records / 4);
+        newRecords.add(3 * records / 4, record(records, random));
+
+        final Path oldFile = workDir.resolve("old.rdf.gz");
+        final Path newFile = workDir.resolve("new.rdf.gz");
+        write(oldFile, oldRecords);
+        write(newFile, newRecords);
+        update(oldFile, newFile, newRecords);
+        Benchmarks.deleteRecursively(workDir);
+    }
+
+    private static void checkMd4() {
+        final Md4 md4 = new Md4();
+        for (final String[] vector : MD4_VECTORS) {
+            final byte[] data = vector[0].getBytes(StandardCharsets.US_ASCII);
+            // Also at an offset into a larger array
+            final byte[] padded = new byte[data.length + 10];
+            Arrays.fill(padded, (byte) 'x');
+            System.arraycopy(data, 0, padded, 3, data.length);
+            final String digest = HexFormat.of().formatHex(md4.digest(data, 0, data.length));
+            final String paddedDigest = HexFormat.of().formatHex(md4.digest(padded, 3, data.length));
+            if (!digest.equals(vector[1]) || !paddedDigest.equals(vector[1])) {
+                throw new IllegalStateException("MD4 (\"" + vector[0] + "\") = " + digest + ", expected " + vector[1]);
+            }
+        }
+        log.info("MD4 matches the {} test vectors of RFC 1320", MD4_VECTORS.length);
+    }
+
+    private static void write(Path file, List<String[]> records) throws IOException {
+        try (final RsyncableGzipOutputStream out = new RsyncableGzipOutputStream(
+                new ZsyncOutputStream(Files.newOutputStream(file), file, BLOCK_SIZE), 1 << 16)) {
+            long sinceReset = 0L;
+            for (final String[] record : records) {
+                final byte[] bytes = record[1].getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                sinceReset += bytes.length;
+                if (sinceReset >= RESET_DISTANCE && isResetPoint(record[0])) {
+                    out.reset();
+                    sinceReset = 0L;
+                }
+            }
+        }
+    }
+
+    private static boolean isResetPoint(String id) {
+        final int h = id.hashCode() * 0x9e3779b9;
+        return Integer.remainderUnsigned(h ^ h >>> 16, RESET_INTERVAL) == 0;
+    }
+
+    private void update(Path oldFile, Path newFile, List<String[]> newRecords) throws IOException {
+        final byte[] control = Files.readAllBytes(ZsyncOutputStream.controlFile(newFile));
+        int headerEnd = 0;
+        while (control[headerEnd] != '\n' || control[headerEnd + 1] != '\n') {
+            headerEnd++;
+        }
+        final Map<String, String> header = new HashMap<>();
+        for (final String line : new String(control, 0, headerEnd, StandardCharsets.US_ASCII).split("\n")) {
+            final int colon = line.indexOf(": ");
+            header.put(line.substring(0, colon), line.substring(colon + 2));
+        }
+        final int blockSize = Integer.parseInt(header.get("Blocksize"));
+        final int length = Integer.parseInt(header.get("Length"));
+        final String[] hashLengths = header.get("Hash-Lengths").split(",");
+        final int rsumLength = Integer.parseInt(hashLengths[1]);
+        final int checksumLength = Integer.parseInt(hashLengths[2]);
+        final int entryLength = rsumLength + checksumLength;
+        final int blocks = (length + blockSize - 1) / blockSize;
+        final int checksumsStart = headerEnd + 2;
+        if (control.length - checksumsStart != blocks * entryLength) {
+            throw new IllegalStateException("Control file has " + (control.length - checksumsStart)
+                    + " bytes of checksums, expected " + blocks * entryLength);
+        }
+        final byte[] expected = Files.readAllBytes(newFile);
+        if (length != expected.length || !header.get("SHA-1").equals(sha1(expected))) {
+            throw new IllegalStateException("Length or SHA-1 of the control file do not match " + newFile);
+        }
+
+        // Blocks by their rolling checksum
+        final Map<Integer, List<Integer>> blocksByRsum = new HashMap<>();
+        for (int i = 0; i < blocks; i++) {
+            blocksByRsum.computeIfAbsent(rsum(control, checksumsStart + i * entryLength, rsumLength),
+                    k -> new ArrayList<>()).add(i);
+        }
+        final int mask = rsumLength == 4 ? -1 : (1 << 8 * rsumLength) - 1;
+
+        // Slide over the older file, padded with zeros like the last block
+        final byte[] old = Files.readAllBytes(oldFile);
+        final byte[] seed = Arrays.copyOf(old, old.length + blockSize);
+        final byte[] target = new byte[length];
+        final boolean[] found = new boolean[blocks];
+        final Md4 md4 = new Md4();
+        int reused = 0;
+        int pos = 0;
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < blockSize; i++) {
+            a += seed[i] & 0xff;
+            b += a;
+        }
+        while (pos + blockSize <= seed.length) {
+            final List<Integer> candidates = blocksByRsum.get(((a & 0xffff) << 16 | b & 0xffff) & mask);
+            boolean matched = false;
+            if (candidates != null) {
+                final byte[] digest = md4.digest(seed, pos, blockSize);
+                for (final int block : candidates) {
+                    final int checksum = checksumsStart + block * entryLength + rsumLength;
+                    if (!found[block] && Arrays.equals(digest, 0, checksumLength,
+                            control, checksum, checksum + checksumLength)) {
+                        final int start = block * blockSize;
+                        System.arraycopy(seed, pos, target, start, Math.min(blockSize, length - start));
+                        found[block] = true;
+                        reused++;
+                        matched = true;
+                    }
+                }
+            }
+            if (matched) {
+                pos += blockSize;
+                if (pos + blockSize > seed.length) {
+                    break;
+                }
+                a = 0;
+                b = 0;
+                for (int i = pos; i < pos + blockSize; i++) {
+                    a += seed[i] & 0xff;
+                    b += a;
+                }
+            } else {
+                if (pos + blockSize == seed.length) {
+                    break;
+                }
+                final int out = seed[pos] & 0xff;
+                final int in = seed[pos + blockSize] & 0xff;
+                a += in - out;
+                b += a - blockSize * out;
+                pos++;
+            }
+        }
+
+        // Fetch the rest, as a client would with HTTP Range requests
+        long fetched = 0L;
+        for (int block = 0; block < blocks; block++) {
+            if (!found[block]) {
+                final int start = block * blockSize;
+                final int n = Math.min(blockSize, length - start);
+                System.arraycopy(expected, start, target, start, n);
+                fetched += n;
+            }
+        }
+        if (!header.get("SHA-1").equals(sha1(target))) {
+            throw new IllegalStateException("SHA-1 of the updated file does not match the control file");
+        }
+        final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (final String[] record : newRecords) {
+            records.write(record[1].getBytes(StandardCharsets.UTF_8));
+        }
+        try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(target))) {
+            if (!Arrays.equals(in.readAllBytes(), records.toByteArray())) {
+                throw new IllegalStateException("Updated file does not gunzip to the newer records");
+            }
+        }
+        log.info("Updated {} ({} bytes) to {} ({} bytes): {} of {} blocks reused, {} bytes fetched",
+                oldFile.getFileName(), old.length, newFile.getFileName(), length, reused, blocks, fetched);
+        if (reused < blocks * 9L / 10) {
+            throw new IllegalStateException("Only " + reused + " of " + blocks + " blocks reused");
+        }
+    }
+
+    private static int rsum(byte[] control, int offset, int length) {
+        int rsum = 0;
+        for (int i = 0; i < length; i++) {
+            rsum = rsum << 8 | control[offset + i] & 0xff;
+        }
+        return rsum;
+    }
+
+    private static String sha1(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String[] record(int i, Random random) {
+        final String id = Benchmarks.zdbId(1_000_000 + i);
+        final String text = "<rdf:Description rdf:about=\"https://ld.zdb-services.de/resource/" + id + "\">"
+                + "<dc:title>" + Benchmarks.title(random) + "</dc:title>"
+                + "<dc:identifier>(OCoLC)" + random.nextInt(100_000_000) + "</dc:identifier>"
+                + "<bibo:issn>" + random.nextInt(10_000) + "-" + random.nextInt(10_000) + "</bibo:issn>"
+                + "</rdf:Description>\n";
+        return new String[]{id, text};
+    }
+}
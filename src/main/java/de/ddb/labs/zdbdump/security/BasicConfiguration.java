@@ -52,9 +52,9 @@ public class BasicConfiguration {
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
-                .csrf(csrf -> csrf.ignoringRequestMatchers("/createdump"))
+                .csrf(csrf -> csrf.ignoringRequestMatchers("/createdump", "/oai"))
                 .authorizeHttpRequests(authorize -> authorize
-                        .requestMatchers("/createdump").authenticated()
+                        .requestMatchers("/createdump", "/actuator/flightrecording", "/actuator/metrics/**").authenticated()
                         .anyRequest().permitAll())
                 .httpBasic(Customizer.withDefaults());
         return http.build();
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+/**
+ * MVStore record store keeping the records encoded with a {@link RecordCodec}
+ * instead of as text.
+ */
+public class BinaryRecordStore implements RecordStore {
+
+    private static final String LOAD_SUFFIX = ".load";
+
+    private final RecordCodec codec;
+    private volatile MVMap<String, byte[]> map;
+
+    public BinaryRecordStore(MVMap<String, byte[]> map, RecordDictionary dictionary) {
+        this.map = map;
+        this.codec = new RecordCodec(dictionary);
+    }
+
+    @Override
+    public String get(String id) {
+        final byte[] encoded = map.get(id);
+        return encoded != null ? codec.decode(encoded) : null;
+    }
+
+    @Override
+    public void put(String id, String record) {
+        map.put(id, codec.encode(record));
+    }
+
+    @Override
+    public void remove(String id) {
+        map.remove(id);
+    }
+
+    @Override
+    public boolean containsKey(String id) {
+        return map.containsKey(id);
+    }
+
+    @Override
+    public long size() {
+        return map.sizeAsLong();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * Writes the records to a fresh map and then replaces the current one,
+     * like {@link MvStoreRecordStore#load(Iterator)}.
+     */
+    @Override
+    public synchronized void load(Iterator<Map.Entry<String, String>> sortedRecords) {
+        final MVStore store = map.getStore();
+        final String name = map.getName();
+        if (store.hasMap(name + LOAD_SUFFIX)) {
+            store.removeMap(name + LOAD_SUFFIX);
+        }
+        final MVMap<String, byte[]> fresh = store.openMap(name + LOAD_SUFFIX);
+        while (sortedRecords.hasNext()) {
+            final Map.Entry<String, String> e = sortedRecords.next();
+            fresh.put(e.getKey(), codec.encode(e.getValue()));
+        }
+        store.removeMap(map);
+        store.renameMap(fresh, name);
+        map = fresh;
+        store.commit();
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+        final Iterator<Map.Entry<String, byte[]>> entries = map.entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+                final Map.Entry<String, byte[]> e = entries.next();
+                return new AbstractMap.SimpleImmutableEntry<>(e.getKey(), codec.decode(e.getValue()));
+            }
+        };
+    }
+
+    @Override
+    public void commit() {
+        map.getStore().commit();
+    }
+
+    @Override
+    public void compact() {
+        map.getStore().compactFile(60_000);
+    }
+
+    @Override
+    public long diskSize() {
+        return map.getStore().getFileStore() != null ? map.getStore().getFileStore().size() : -1L;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+
+/**
+ * Time each record of a store last changed, as needed for incremental
+ * harvesting via OAI-PMH. Datestamps are ISO 8601 instants in seconds, so the
+ * keys {@code datestamp \0 ID} sort by time. A hash of every record is kept
+ * with its datestamp: storing a record again unchanged, e.g. when a new base
+ * dump is loaded, keeps the datestamp and does not make downstream
+ * harvesters fetch it again. Removed records are kept as deleted with the
+ * time of their removal, so downstream harvesters learn about deletions.
+ */
+public class DatestampIndex implements RecordIndex {
+
+    public record Stamp(String datestamp, String id, boolean deleted) {
+
+        public String key() {
+            return datestamp + SEPARATOR + id;
+        }
+    }
+
+    private static final char SEPARATOR = '\u0000';
+    private static final String DEFINITION = "datestamp crc32c+hashcode";
+    // Stands in for the hash of a removed record, hashes are hexadecimal
+    private static final String DELETED = "deleted";
+
+    private final MVMap<String, String> stamps; // datestamp \0 ID -> "" or DELETED
+    private final MVMap<String, String> records; // ID -> datestamp and hash or DELETED
+
+    public DatestampIndex(MVMap<String, String> stamps, MVMap<String, String> records) {
+        this.stamps = stamps;
+        this.records = records;
+    }
+
+    @Override
+    public String definition() {
+        return DEFINITION;
+    }
+
+    @Override
+    public Map<String, String> records() {
+        return records;
+    }
+
+    @Override
+    public void update(String id, String record) {
+        final String hash = hash(record);
+        final String old = records.get(id);
+        if (old != null && old.endsWith(" " + hash)) {
+            return;
+        }
+        restamp(id, old, hash);
+    }
+
+    /**
+     * Keeps the record as deleted.
+     */
+    @Override
+    public void remove(String id) {
+        final String old = records.get(id);
+        if (old != null && !old.endsWith(" " + DELETED)) {
+            restamp(id, old, DELETED);
+        }
+    }
+
+    private void restamp(String id, String old, String hash) {
+        if (old != null) {
+            stamps.remove(old.substring(0, old.indexOf(' ')) + SEPARATOR + id);
+        }
+        final String datestamp = DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        stamps.put(datestamp + SEPARATOR + id, DELETED.equals(hash) ? DELETED : "");
+        records.put(id, datestamp + " " + hash);
+    }
+
+    /**
+     * Keeps the datestamps, so records stored again unchanged keep theirs.
+     * Records missing from the store after a reload are marked deleted by
+     * {@link #removeMissing(RecordStore)}.
+     */
+    @Override
+    public void clear() {
+        markBuilt();
+    }
+
+    @Override
+    public void commit() {
+        stamps.getStore().commit();
+    }
+
+    /**
+     * Marks the records no longer in the store as deleted, e.g. after a new
+     * base dump was loaded.
+     *
+     * @return number of records marked deleted
+     */
+    public long removeMissing(RecordStore store) {
+        long removed = 0L;
+        // MVMap iterators see the map as it was, so entries can be changed
+        final Cursor<String, String> it = records.cursor(null);
+        while (it.hasNext()) {
+            final String id = it.next();
+            final String value = it.getValue();
+            if (!id.equals(DEFINITION_KEY) && !value.endsWith(" " + DELETED) && !store.containsKey(id)) {
+                restamp(id, value, DELETED);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return datestamp of a record, possibly deleted, or null
+     */
+    public Stamp stamp(String id) {
+        final String value = id.isEmpty() ? null : records.get(id);
+        if (value == null) {
+            return null;
+        }
+        final int separator = value.indexOf(' ');
+        return new Stamp(value.substring(0, separator), id, value.startsWith(DELETED, separator + 1));
+    }
+
+    /**
+     * @return the smallest datestamp or null if there are no records
+     */
+    public String earliest() {
+        final String first = stamps.firstKey();
+        return first != null ? first.substring(0, first.indexOf(SEPARATOR)) : null;
+    }
+
+    /**
+     * Records changed or deleted in a time range, ordered by datestamp and ID.
+     *
+     * @param from  smallest datestamp or null
+     * @param until largest datestamp or null
+     * @param after key of the last record of the previous page or null
+     */
+    public List<Stamp> list(String from, String until, String after, int limit) {
+        final List<Stamp> page = new ArrayList<>();
+        String start = from != null ? from : "";
+        if (after != null && after.compareTo(start) >= 0) {
+            start = after + SEPARATOR;
+        }
+        final Cursor<String, String> it = stamps.cursor(start);
+        while (page.size() < limit && it.hasNext()) {
+            final String key = it.next();
+            final int separator = key.indexOf(SEPARATOR);
+            final String datestamp = key.substring(0, separator);
+            if (until != null && datestamp.compareTo(until) > 0) {
+                break;
+            }
+            page.add(new Stamp(datestamp, key.substring(separator + 1), DELETED.equals(it.getValue())));
+        }
+        return page;
+    }
+
+    private static String hash(String record) {
+        final CRC32C crc = new CRC32C();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue() << 32 | record.hashCode() & 0xffffffffL);
+    }
+}
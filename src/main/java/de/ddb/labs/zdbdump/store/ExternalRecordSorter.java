@@ -0,0 +1,247 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Sorts records by id within a bounded amount of heap. Records are collected
+ * in a sorted buffer which is spilled to a compressed run file whenever its
+ * estimated size exceeds the budget; {@link #iterator()} merges the runs into
+ * one ascending sequence without duplicate ids, the record added last winning.
+ * <p>
+ * A run is a sequence of {@code [int keyLength][key][int valueLength][value]}
+ * entries terminated by a key length of -1. Run files are deleted on
+ * {@link #close()}.
+ */
+public class ExternalRecordSorter implements Iterable<Map.Entry<String, String>>, Closeable {
+
+    private static final int END_OF_RUN = -1;
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long bufferBytes;
+    private final List<Path> runs = new ArrayList<>();
+    private final List<Closeable> readers = new ArrayList<>();
+    private TreeMap<String, String> buffer = new TreeMap<>();
+    private long bufferedBytes;
+
+    /**
+     * @param directory where run files are created
+     * @param bufferBytes estimated heap the buffered records may take before
+     * they are spilled
+     */
+    public ExternalRecordSorter(Path directory, long bufferBytes) {
+        this.directory = directory;
+        this.bufferBytes = bufferBytes;
+    }
+
+    public void add(String id, String record) throws IOException {
+        final String previous = buffer.put(id, record);
+        bufferedBytes += 2L * record.length() + ENTRY_OVERHEAD_BYTES
+                + (previous != null ? -2L * previous.length() - ENTRY_OVERHEAD_BYTES : 2L * id.length());
+        if (bufferedBytes >= bufferBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * @return number of run files written so far
+     */
+    public int runCount() {
+        return runs.size();
+    }
+
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(directory);
+        final Path run = Files.createTempFile(directory, "run-", ".tmp");
+        runs.add(run);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(Files.newOutputStream(run), deflater, BUFFER_SIZE), BUFFER_SIZE))) {
+            for (final Map.Entry<String, String> e : buffer.entrySet()) {
+                write(out, e.getKey());
+                write(out, e.getValue());
+            }
+            out.writeInt(END_OF_RUN);
+        } finally {
+            deflater.end();
+        }
+        buffer = new TreeMap<>();
+        bufferedBytes = 0L;
+    }
+
+    private static void write(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Records in ascending id order. Only one iteration is supported once
+     * records have been spilled.
+     */
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+        if (runs.isEmpty()) {
+            return buffer.entrySet().iterator();
+        }
+        try {
+            spill();
+            final PriorityQueue<Run> queue = new PriorityQueue<>(Comparator
+                    .comparing((Run r) -> r.key)
+                    .thenComparing(r -> r.number, Comparator.reverseOrder()));
+            for (int i = 0; i < runs.size(); ++i) {
+                final Run run = new Run(i, runs.get(i));
+                readers.add(run);
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+            return new MergeIterator(queue);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (final Closeable reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        readers.clear();
+        for (final Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        runs.clear();
+        buffer = new TreeMap<>();
+        bufferedBytes = 0L;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static final class Run implements Closeable {
+
+        private final int number;
+        private final DataInputStream in;
+        private String key;
+        private String value;
+
+        Run(int number, Path file) throws IOException {
+            this.number = number;
+            this.in = new DataInputStream(new BufferedInputStream(
+                    new InflaterInputStream(Files.newInputStream(file)), BUFFER_SIZE));
+        }
+
+        boolean advance() throws IOException {
+            final int keyLength = in.readInt();
+            if (keyLength == END_OF_RUN) {
+                key = null;
+                value = null;
+                in.close();
+                return false;
+            }
+            key = read(keyLength);
+            value = read(in.readInt());
+            return true;
+        }
+
+        private String read(int length) throws IOException {
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class MergeIterator implements Iterator<Map.Entry<String, String>> {
+
+        private final PriorityQueue<Run> queue;
+
+        MergeIterator(PriorityQueue<Run> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            final Run head = queue.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<>(head.key, head.value);
+            try {
+                requeue(head);
+                // older runs holding the same id are superseded
+                while (!queue.isEmpty() && queue.peek().key.equals(entry.getKey())) {
+                    requeue(queue.poll());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return entry;
+        }
+
+        private void requeue(Run run) throws IOException {
+            if (run.advance()) {
+                queue.add(run);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps indexes in line with the records written to a store.
+ */
+public class IndexedRecordStore implements RecordStore {
+
+    private final RecordStore delegate;
+    private final List<RecordIndex> indexes;
+
+    public IndexedRecordStore(RecordStore delegate, List<RecordIndex> indexes) {
+        this.delegate = delegate;
+        this.indexes = indexes;
+    }
+
+    @Override
+    public String get(String id) {
+        return delegate.get(id);
+    }
+
+    @Override
+    public void put(String id, String record) {
+        delegate.put(id, record);
+        for (final RecordIndex index : indexes) {
+            index.update(id, record);
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, String> records) {
+        delegate.putAll(records);
+        for (final RecordIndex index : indexes) {
+            for (final Map.Entry<String, String> e : records.entrySet()) {
+                index.update(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        delegate.remove(id);
+        for (final RecordIndex index : indexes) {
+            index.remove(id);
+        }
+    }
+
+    @Override
+    public boolean containsKey(String id) {
+        return delegate.containsKey(id);
+    }
+
+    @Override
+    public long size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        for (final RecordIndex index : indexes) {
+            index.clear();
+        }
+    }
+
+    @Override
+    public void load(Iterator<Map.Entry<String, String>> sortedRecords) {
+        for (final RecordIndex index : indexes) {
+            index.clear();
+        }
+        delegate.load(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return sortedRecords.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+                final Map.Entry<String, String> e = sortedRecords.next();
+                for (final RecordIndex index : indexes) {
+                    index.update(e.getKey(), e.getValue());
+                }
+                return e;
+            }
+        });
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+        return delegate.iterator();
+    }
+
+    @Override
+    public void commit() {
+        delegate.commit();
+        for (final RecordIndex index : indexes) {
+            index.commit();
+        }
+    }
+
+    @Override
+    public void compact() {
+        delegate.compact();
+    }
+
+    @Override
+    public long diskSize() {
+        return delegate.diskSize();
+    }
+}
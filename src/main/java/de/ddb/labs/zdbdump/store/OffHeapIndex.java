@@ -0,0 +1,210 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Open-addressing hash index from key hash to log address, kept in a direct
+ * buffer outside the Java heap. A slot holds the 64 bit key hash and the
+ * address plus one, so an address of zero marks an empty slot. Colliding
+ * hashes are resolved by the caller comparing the key stored in the log.
+ */
+final class OffHeapIndex {
+
+    /**
+     * Compares the key at the given log address with the key being looked up.
+     */
+    @FunctionalInterface
+    interface KeyMatcher {
+
+        boolean matches(long address);
+    }
+
+    private static final int SLOT_BYTES = 16;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final float MAX_LOAD = 0.7f;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int mask;
+    private int size;
+
+    OffHeapIndex(int expectedSize) {
+        int initialCapacity = 1024;
+        while (initialCapacity < expectedSize / MAX_LOAD && initialCapacity < MAX_CAPACITY) {
+            initialCapacity <<= 1;
+        }
+        allocate(initialCapacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        allocate(1024);
+    }
+
+    /**
+     * @return the address of the entry or -1 if there is none
+     */
+    long get(long hash, KeyMatcher matcher) {
+        final long h = normalize(hash);
+        int slot = (int) h & mask;
+        while (true) {
+            final long address = slots.getLong(slot * SLOT_BYTES + 8);
+            if (address == 0L) {
+                return -1L;
+            }
+            if (slots.getLong(slot * SLOT_BYTES) == h && matcher.matches(address - 1)) {
+                return address - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * @return the previous address of the entry or -1 if there was none
+     */
+    long put(long hash, long address, KeyMatcher matcher) {
+        if (size + 1 > capacity * MAX_LOAD) {
+            grow();
+        }
+        final long h = normalize(hash);
+        int slot = (int) h & mask;
+        while (true) {
+            final long existing = slots.getLong(slot * SLOT_BYTES + 8);
+            if (existing == 0L) {
+                slots.putLong(slot * SLOT_BYTES, h);
+                slots.putLong(slot * SLOT_BYTES + 8, address + 1);
+                size++;
+                return -1L;
+            }
+            if (slots.getLong(slot * SLOT_BYTES) == h && matcher.matches(existing - 1)) {
+                slots.putLong(slot * SLOT_BYTES + 8, address + 1);
+                return existing - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * @return the removed address or -1 if there was no entry
+     */
+    long remove(long hash, KeyMatcher matcher) {
+        final long h = normalize(hash);
+        int slot = (int) h & mask;
+        while (true) {
+            final long existing = slots.getLong(slot * SLOT_BYTES + 8);
+            if (existing == 0L) {
+                return -1L;
+            }
+            if (slots.getLong(slot * SLOT_BYTES) == h && matcher.matches(existing - 1)) {
+                deleteSlot(slot);
+                size--;
+                return existing - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Copies all addresses into a new array. The order is unspecified.
+     */
+    long[] addresses() {
+        final long[] result = new long[size];
+        int i = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            final long address = slots.getLong(slot * SLOT_BYTES + 8);
+            if (address != 0L) {
+                result[i++] = address - 1;
+            }
+        }
+        return result;
+    }
+
+    static long hash(byte[] key) {
+        // FNV-1a followed by a murmur3 finalizer
+        long h = 0xcbf29ce484222325L;
+        for (final byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long normalize(long hash) {
+        return hash == 0L ? 1L : hash;
+    }
+
+    private void deleteSlot(int slot) {
+        // Backward shift deletion keeps probe sequences intact without tombstones
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (true) {
+            final long address = slots.getLong(next * SLOT_BYTES + 8);
+            if (address == 0L) {
+                break;
+            }
+            final int home = (int) slots.getLong(next * SLOT_BYTES) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots.putLong(hole * SLOT_BYTES, slots.getLong(next * SLOT_BYTES));
+                slots.putLong(hole * SLOT_BYTES + 8, address);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots.putLong(hole * SLOT_BYTES, 0L);
+        slots.putLong(hole * SLOT_BYTES + 8, 0L);
+    }
+
+    private void grow() {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Index capacity of " + MAX_CAPACITY + " slots exceeded");
+        }
+        final ByteBuffer old = slots;
+        final int oldCapacity = capacity;
+        allocate(capacity << 1);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            final long address = old.getLong(slot * SLOT_BYTES + 8);
+            if (address == 0L) {
+                continue;
+            }
+            final long h = old.getLong(slot * SLOT_BYTES);
+            int target = (int) h & mask;
+            while (slots.getLong(target * SLOT_BYTES + 8) != 0L) {
+                target = (target + 1) & mask;
+            }
+            slots.putLong(target * SLOT_BYTES, h);
+            slots.putLong(target * SLOT_BYTES + 8, address);
+            size++;
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        slots = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES).order(ByteOrder.nativeOrder());
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        size = 0;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.h2.mvstore.MVMap;
+
+/**
+ * Secondary indexes of property values found in the records of a store, e.g.
+ * ISSNs or {@code owl:sameAs} URIs, mapped to the IDs of the records. Every
+ * index is defined by a regular expression whose first group captures the
+ * value. The entries of each record are kept as well, so the ones of a
+ * replaced or removed record are dropped without reading the old record.
+ */
+public class PropertyIndex implements RecordIndex {
+
+    private static final char SEPARATOR = '\u0000';
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Map<String, Pattern> patterns = new LinkedHashMap<>();
+    private final String definition;
+    private final MVMap<String, String> entries; // index \0 value \0 ID -> ""
+    private final MVMap<String, String> records; // ID -> its entries, one per line
+
+    /**
+     * @param definitions regular expression per index name
+     * @param entries     map of the index entries
+     * @param records     map of the entries per record
+     */
+    public PropertyIndex(Map<String, String> definitions, MVMap<String, String> entries, MVMap<String, String> records) {
+        definitions.forEach((name, regex) -> patterns.put(name, Pattern.compile(regex)));
+        this.definition = new TreeMap<>(definitions).toString();
+        this.entries = entries;
+        this.records = records;
+    }
+
+    public Set<String> names() {
+        return patterns.keySet();
+    }
+
+    public boolean isEmpty() {
+        return patterns.isEmpty();
+    }
+
+    @Override
+    public String definition() {
+        return definition;
+    }
+
+    @Override
+    public Map<String, String> records() {
+        return records;
+    }
+
+    @Override
+    public void update(String id, String record) {
+        if (patterns.isEmpty()) {
+            return;
+        }
+        final Set<String> keys = new LinkedHashSet<>();
+        for (final Map.Entry<String, Pattern> index : patterns.entrySet()) {
+            final Matcher m = index.getValue().matcher(record);
+            while (m.find()) {
+                final String value = normalize(m.group(1));
+                if (!value.isEmpty()) {
+                    keys.add(index.getKey() + SEPARATOR + value + SEPARATOR + id);
+                }
+            }
+        }
+        final String old = records.get(id);
+        if (old != null) {
+            for (final String key : old.split("\n")) {
+                if (!keys.contains(key)) {
+                    entries.remove(key);
+                }
+            }
+        }
+        for (final String key : keys) {
+            entries.putIfAbsent(key, "");
+        }
+        if (keys.isEmpty()) {
+            if (old != null) {
+                records.remove(id);
+            }
+        } else {
+            records.put(id, String.join("\n", keys));
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        final String old = records.remove(id);
+        if (old != null) {
+            for (final String key : old.split("\n")) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        records.clear();
+        markBuilt();
+    }
+
+    /**
+     * @return IDs of the records with the value, at most {@code limit}
+     */
+    public List<String> lookup(String index, String value, int limit) {
+        final List<String> ids = new ArrayList<>();
+        final String prefix = index + SEPARATOR + normalize(value) + SEPARATOR;
+        final Iterator<String> it = entries.keyIterator(prefix);
+        while (ids.size() < limit && it.hasNext()) {
+            final String key = it.next();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            ids.add(key.substring(prefix.length()));
+        }
+        return ids;
+    }
+
+    public long size() {
+        return entries.sizeAsLong();
+    }
+
+    @Override
+    public void commit() {
+        entries.getStore().commit();
+    }
+
+    private static String normalize(String value) {
+        return WHITESPACE.matcher(value.strip()).replaceAll(" ");
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import de.ddb.labs.zdbdump.store.TripleIndex.Triple;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the triples of single RDF/XML records, as needed by the indexes
+ * derived from them. Blank nodes are labelled per record.
+ */
+final class RdfXmlParser {
+
+    static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    static final String RDF_TYPE = "<" + RDF_NS + "type>";
+
+    private final XMLInputFactory xif;
+
+    RdfXmlParser() {
+        xif = XMLInputFactory.newInstance();
+        xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        xif.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    }
+
+    /**
+     * Reads the triples of a record in RDF/XML: node elements with
+     * {@code rdf:about} or {@code rdf:nodeID}, typed node elements, property
+     * attributes, {@code rdf:resource}, nested node elements and
+     * {@code rdf:parseType="Resource"}. XML literals are skipped. Literals take
+     * the {@code xml:lang} in scope, inherited from the enclosing elements.
+     */
+    List<Triple> parse(String id, String record) throws XMLStreamException {
+        final List<Triple> triples = new ArrayList<>();
+        final XMLStreamReader reader = xif.createXMLStreamReader(new StringReader(record));
+        try {
+            final String blankPrefix = "_:r" + HexFormat.of().formatHex(id.getBytes(StandardCharsets.UTF_8)) + "n";
+            final int[] blanks = {0};
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    if (RDF_NS.equals(reader.getNamespaceURI()) && "RDF".equals(reader.getLocalName())) {
+                        final String lang = lang(reader, null);
+                        while (nextElement(reader)) {
+                            node(reader, lang, triples, blankPrefix, blanks);
+                        }
+                    } else {
+                        node(reader, null, triples, blankPrefix, blanks);
+                    }
+                    break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return triples;
+    }
+
+    /**
+     * Reads a node element, the reader positioned at its start and left at its
+     * end.
+     *
+     * @param inheritedLang the {@code xml:lang} of the enclosing element or null
+     * @return the subject
+     */
+    private String node(XMLStreamReader reader, String inheritedLang, List<Triple> triples, String blankPrefix,
+            int[] blanks) throws XMLStreamException {
+        final String lang = lang(reader, inheritedLang);
+        final String about = reader.getAttributeValue(RDF_NS, "about");
+        final String nodeId = reader.getAttributeValue(RDF_NS, "nodeID");
+        final String subject = about != null
+                ? TripleIndex.iri(about)
+                : nodeId != null ? blankPrefix + "_" + HexFormat.of().formatHex(nodeId.getBytes(StandardCharsets.UTF_8))
+                : blankPrefix + blanks[0]++;
+        if (!RDF_NS.equals(reader.getNamespaceURI()) || !"Description".equals(reader.getLocalName())) {
+            triples.add(new Triple(subject, RDF_TYPE,
+                    TripleIndex.iri(nullToEmpty(reader.getNamespaceURI()) + reader.getLocalName())));
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            final String ns = nullToEmpty(reader.getAttributeNamespace(i));
+            if (ns.isEmpty() || ns.equals(RDF_NS) || ns.equals(XMLConstants.XML_NS_URI)) {
+                continue;
+            }
+            triples.add(new Triple(subject, TripleIndex.iri(ns + reader.getAttributeLocalName(i)),
+                    TripleIndex.literal(reader.getAttributeValue(i), lang, null)));
+        }
+        properties(reader, subject, lang, triples, blankPrefix, blanks);
+        return subject;
+    }
+
+    /**
+     * Reads the property elements below a node, up to the end of the node.
+     *
+     * @param nodeLang the {@code xml:lang} in scope of the node or null
+     */
+    private void properties(XMLStreamReader reader, String subject, String nodeLang, List<Triple> triples,
+            String blankPrefix, int[] blanks) throws XMLStreamException {
+        while (nextElement(reader)) {
+            final String lang = lang(reader, nodeLang);
+            final String predicate = TripleIndex.iri(nullToEmpty(reader.getNamespaceURI()) + reader.getLocalName());
+            final String resource = reader.getAttributeValue(RDF_NS, "resource");
+            final String nodeId = reader.getAttributeValue(RDF_NS, "nodeID");
+            final String parseType = reader.getAttributeValue(RDF_NS, "parseType");
+            if (resource != null) {
+                triples.add(new Triple(subject, predicate, TripleIndex.iri(resource)));
+                skip(reader);
+            } else if (nodeId != null) {
+                triples.add(new Triple(subject, predicate,
+                        blankPrefix + "_" + HexFormat.of().formatHex(nodeId.getBytes(StandardCharsets.UTF_8))));
+                skip(reader);
+            } else if ("Resource".equals(parseType)) {
+                final String object = blankPrefix + blanks[0]++;
+                triples.add(new Triple(subject, predicate, object));
+                properties(reader, object, lang, triples, blankPrefix, blanks);
+            } else if (parseType != null) {
+                skip(reader);
+            } else {
+                final String datatype = reader.getAttributeValue(RDF_NS, "datatype");
+                final StringBuilder text = new StringBuilder();
+                String object = null;
+                int event;
+                while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        object = node(reader, lang, triples, blankPrefix, blanks);
+                    } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                        text.append(reader.getText());
+                    }
+                }
+                triples.add(new Triple(subject, predicate,
+                        object != null ? object : TripleIndex.literal(text.toString(), lang, datatype)));
+            }
+        }
+    }
+
+    /**
+     * @return the {@code xml:lang} of the current element, else the inherited
+     *         one; an empty {@code xml:lang} removes the language
+     */
+    private static String lang(XMLStreamReader reader, String inherited) {
+        final String lang = reader.getAttributeValue(XMLConstants.XML_NS_URI, "lang");
+        return lang != null ? lang : inherited;
+    }
+
+    /**
+     * Moves to the next child element.
+     *
+     * @return false at the end of the current element
+     */
+    private static boolean nextElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static void skip(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
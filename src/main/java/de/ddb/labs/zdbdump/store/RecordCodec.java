@@ -0,0 +1,363 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Compact binary encoding of XML records as a sequence of events whose names,
+ * namespace declarations and frequent values are ids of a shared
+ * {@link RecordDictionary}. Text and attribute values are kept escaped, so
+ * the decoder copies UTF-8 bytes from the dictionary and the record straight
+ * to the output without an XML parser or per character work.
+ * <p>
+ * A record is a header byte followed by events:
+ * <pre>
+ * header   bit 0: XML declaration follows as value, bit 1: raw UTF-8 text follows
+ * START    elementId, count, namespaceId*, count, (attributeId value)*
+ * END      end tag of the innermost open element
+ * TEXT     value (also used for comments and processing instructions)
+ * EOR      end of record
+ * value    varint (n &lt;&lt; 2 | kind); kind 0: n bytes follow, 1: dictionary value n,
+ *          2: dictionary URI prefix n, then a varint length and the remaining bytes
+ * </pre>
+ * Numbers are unsigned LEB128 varints. Records which cannot be parsed are
+ * kept as raw text.
+ */
+public final class RecordCodec {
+
+    private static final int DECLARATION = 1;
+    private static final int RAW = 2;
+    private static final int EOR = 0;
+    private static final int START = 1;
+    private static final int END = 2;
+    private static final int TEXT = 3;
+    private static final int LITERAL = 0;
+    private static final int DICTIONARY = 1;
+    private static final int PREFIXED = 2;
+    private static final byte[] EMPTY_END = "/>".getBytes(StandardCharsets.US_ASCII);
+
+    private final RecordDictionary dictionary;
+    private final XMLInputFactory xif;
+
+    public RecordCodec(RecordDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.xif = XMLInputFactory.newFactory();
+        xif.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        xif.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    }
+
+    public byte[] encode(String record) {
+        try {
+            return encodeEvents(record);
+        } catch (XMLStreamException e) {
+            final byte[] text = record.getBytes(StandardCharsets.UTF_8);
+            final byte[] raw = new byte[text.length + 1];
+            raw[0] = RAW;
+            System.arraycopy(text, 0, raw, 1, text.length);
+            return raw;
+        }
+    }
+
+    private byte[] encodeEvents(String record) throws XMLStreamException {
+        final Buffer out = new Buffer(Math.max(64, record.length() / 2));
+        final int declarationEnd = record.startsWith("<?xml") ? record.indexOf("?>") + 2 : 1;
+        if (declarationEnd > 1) {
+            out.write(DECLARATION);
+            value(out, record.substring(0, declarationEnd));
+        } else {
+            out.write(0);
+        }
+
+        final XMLStreamReader xsr = xif.createXMLStreamReader(new StringReader(record));
+        try {
+            while (xsr.hasNext()) {
+                switch (xsr.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        out.write(START);
+                        out.varint(dictionary.name(RecordDictionary.ELEMENT, "<" + qname(xsr.getPrefix(), xsr.getLocalName())));
+                        out.varint(xsr.getNamespaceCount());
+                        for (int i = 0; i < xsr.getNamespaceCount(); i++) {
+                            final String prefix = xsr.getNamespacePrefix(i);
+                            out.varint(dictionary.name(RecordDictionary.NAMESPACE,
+                                    (prefix == null || prefix.isEmpty() ? " xmlns" : " xmlns:" + prefix)
+                                    + "=\"" + escape(xsr.getNamespaceURI(i), true) + "\""));
+                        }
+                        out.varint(xsr.getAttributeCount());
+                        for (int i = 0; i < xsr.getAttributeCount(); i++) {
+                            out.varint(dictionary.name(RecordDictionary.ATTRIBUTE,
+                                    " " + qname(xsr.getAttributePrefix(i), xsr.getAttributeLocalName(i)) + "=\""));
+                            value(out, escape(xsr.getAttributeValue(i), true));
+                        }
+                    }
+                    case XMLStreamConstants.END_ELEMENT ->
+                        out.write(END);
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                        out.write(TEXT);
+                        value(out, escape(xsr.getText(), false));
+                    }
+                    case XMLStreamConstants.COMMENT -> {
+                        out.write(TEXT);
+                        value(out, "<!--" + xsr.getText() + "-->");
+                    }
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION -> {
+                        out.write(TEXT);
+                        final String data = xsr.getPIData();
+                        value(out, "<?" + xsr.getPITarget() + (data == null || data.isEmpty() ? "" : " " + data) + "?>");
+                    }
+                    default -> {
+                        // document start and end
+                    }
+                }
+            }
+        } finally {
+            xsr.close();
+        }
+        out.write(EOR);
+        return out.toByteArray();
+    }
+
+    private void value(Buffer out, String serialization) {
+        final int id = dictionary.value(RecordDictionary.VALUE, serialization);
+        if (id >= 0) {
+            out.varint(id << 2 | DICTIONARY);
+            return;
+        }
+        final int cut = uriPrefixEnd(serialization);
+        if (cut > 0) {
+            final int prefixId = dictionary.value(RecordDictionary.PREFIX, serialization.substring(0, cut));
+            if (prefixId >= 0) {
+                out.varint(prefixId << 2 | PREFIXED);
+                final byte[] suffix = serialization.substring(cut).getBytes(StandardCharsets.UTF_8);
+                out.varint(suffix.length);
+                out.write(suffix, 0, suffix.length);
+                return;
+            }
+        }
+        final byte[] bytes = serialization.getBytes(StandardCharsets.UTF_8);
+        out.varint(bytes.length << 2 | LITERAL);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return length of the namespace-like part of a URI up to its last slash
+     * or hash, or 0 if the value is no URI
+     */
+    private static int uriPrefixEnd(String value) {
+        final int scheme = value.startsWith("https://") ? 8 : value.startsWith("http://") ? 7 : -1;
+        if (scheme < 0) {
+            return 0;
+        }
+        final int cut = Math.max(value.lastIndexOf('/'), value.lastIndexOf('#')) + 1;
+        return cut > scheme && cut < value.length() ? cut : 0;
+    }
+
+    private static String qname(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static String escape(String text, boolean attribute) {
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            final String entity = switch (c) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> attribute ? null : "&gt;";
+                case '"' -> attribute ? "&quot;" : null;
+                case '\r' -> "&#13;";
+                case '\n' -> attribute ? "&#10;" : null;
+                case '\t' -> attribute ? "&#9;" : null;
+                default -> null;
+            };
+            if (entity != null) {
+                if (sb == null) {
+                    sb = new StringBuilder(text.length() + 16).append(text, 0, i);
+                }
+                sb.append(entity);
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb != null ? sb.toString() : text;
+    }
+
+    public String decode(byte[] encoded) {
+        final Buffer out = new Buffer(encoded.length * 3);
+        decode(encoded, out);
+        return new String(out.bytes, 0, out.count, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the UTF-8 serialization of the record to the stream.
+     */
+    public void decode(byte[] encoded, OutputStream stream) throws IOException {
+        final Buffer out = new Buffer(encoded.length * 3);
+        decode(encoded, out);
+        stream.write(out.bytes, 0, out.count);
+    }
+
+    private void decode(byte[] in, Buffer out) {
+        final Reader r = new Reader(in);
+        final int header = r.read();
+        if ((header & RAW) != 0) {
+            out.write(in, 1, in.length - 1);
+            return;
+        }
+        if ((header & DECLARATION) != 0) {
+            value(r, out);
+        }
+        int[] open = new int[16];
+        int depth = 0;
+        int op;
+        while ((op = r.read()) != EOR) {
+            switch (op) {
+                case START -> {
+                    final int element = r.varint();
+                    out.write(dictionary.term(element).bytes());
+                    for (int n = r.varint(); n > 0; n--) {
+                        out.write(dictionary.term(r.varint()).bytes());
+                    }
+                    for (int n = r.varint(); n > 0; n--) {
+                        out.write(dictionary.term(r.varint()).bytes());
+                        value(r, out);
+                        out.write('"');
+                    }
+                    if (r.peek() == END) {
+                        r.read();
+                        out.write(EMPTY_END);
+                    } else {
+                        out.write('>');
+                        if (depth == open.length) {
+                            open = Arrays.copyOf(open, depth * 2);
+                        }
+                        open[depth++] = element;
+                    }
+                }
+                case END ->
+                    out.write(dictionary.term(open[--depth]).endTag());
+                case TEXT ->
+                    value(r, out);
+                default ->
+                    throw new IllegalStateException("Corrupt record, unknown event " + op);
+            }
+        }
+    }
+
+    private void value(Reader r, Buffer out) {
+        final int head = r.varint();
+        final int n = head >>> 2;
+        switch (head & 3) {
+            case LITERAL -> {
+                out.write(r.bytes, r.pos, n);
+                r.pos += n;
+            }
+            case DICTIONARY ->
+                out.write(dictionary.term(n).bytes());
+            case PREFIXED -> {
+                out.write(dictionary.term(n).bytes());
+                final int length = r.varint();
+                out.write(r.bytes, r.pos, length);
+                r.pos += length;
+            }
+            default ->
+                throw new IllegalStateException("Corrupt record, unknown value kind " + (head & 3));
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int pos;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int read() {
+            return bytes[pos++] & 0xff;
+        }
+
+        int peek() {
+            return bytes[pos] & 0xff;
+        }
+
+        int varint() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = bytes[pos++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    private static final class Buffer {
+
+        private byte[] bytes;
+        private int count;
+
+        Buffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void write(int b) {
+            ensure(1);
+            bytes[count++] = (byte) b;
+        }
+
+        void write(byte[] b) {
+            write(b, 0, b.length);
+        }
+
+        void write(byte[] b, int offset, int length) {
+            ensure(length);
+            System.arraycopy(b, offset, bytes, count, length);
+            count += length;
+        }
+
+        void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                bytes[count++] = (byte) (value & 0x7f | 0x80);
+                value >>>= 7;
+            }
+            bytes[count++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, count);
+        }
+
+        private void ensure(int length) {
+            if (count + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + length));
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.h2.mvstore.MVMap;
+
+/**
+ * Terms shared by the records encoded with a {@link RecordCodec}: element and
+ * attribute names, namespace declarations, frequent text and attribute
+ * values and frequent URI prefixes. Names and namespace declarations are
+ * added when first seen, values and URI prefixes once they were seen
+ * {@value #PROMOTE_AFTER} times. Ids are never reused, so records stay
+ * decodable while terms are added; the dictionary lives in the same MVStore
+ * as the records and is made durable with them.
+ * <p>
+ * A term is kept as its serialization, e.g. {@code "<dc:title"} or
+ * {@code " xmlns:dc=\"http://purl.org/dc/elements/1.1/\""}, prefixed with its
+ * kind, so decoding copies bytes only.
+ */
+public class RecordDictionary {
+
+    static final char ELEMENT = 'E';
+    static final char ATTRIBUTE = 'A';
+    static final char NAMESPACE = 'N';
+    static final char VALUE = 'V';
+    static final char PREFIX = 'P';
+
+    private static final int PROMOTE_AFTER = 8;
+    private static final int MAX_TERMS = 1 << 20;
+    private static final int MAX_VALUE_LENGTH = 256;
+    private static final int MAX_CANDIDATES = 200_000;
+
+    /**
+     * Serialization of a term; an element also has its end tag.
+     */
+    record Term(byte[] bytes, byte[] endTag) {
+    }
+
+    private final MVMap<Integer, String> map; // id -> kind and serialization
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<String, Integer> candidates = new HashMap<>();
+    private volatile Term[] terms;
+    private int size;
+
+    public RecordDictionary(MVMap<Integer, String> map) {
+        this.map = map;
+        Term[] loaded = new Term[Math.max(64, map.size() * 2)];
+        for (final Map.Entry<Integer, String> e : map.entrySet()) {
+            final int id = e.getKey();
+            if (id >= loaded.length) {
+                loaded = Arrays.copyOf(loaded, id * 2);
+            }
+            loaded[id] = term(e.getValue());
+            ids.put(e.getValue(), id);
+            size = Math.max(size, id + 1);
+        }
+        terms = loaded;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    Term term(int id) {
+        final Term[] t = terms;
+        if (id < 0 || id >= t.length || t[id] == null) {
+            throw new IllegalStateException("Unknown dictionary term " + id);
+        }
+        return t[id];
+    }
+
+    /**
+     * @return id of the name or namespace declaration, added if unknown
+     */
+    int name(char kind, String serialization) {
+        final String key = kind + serialization;
+        final Integer id = ids.get(key);
+        return id != null ? id : add(key);
+    }
+
+    /**
+     * @return id of the value or URI prefix, or -1 if it is not (yet) frequent
+     */
+    int value(char kind, String serialization) {
+        if (serialization.length() > MAX_VALUE_LENGTH) {
+            return -1;
+        }
+        final String key = kind + serialization;
+        final Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            if (size >= MAX_TERMS) {
+                return -1;
+            }
+            final int seen = candidates.merge(key, 1, Integer::sum);
+            if (seen < PROMOTE_AFTER) {
+                if (candidates.size() > MAX_CANDIDATES) {
+                    // Values seldom seen are forgotten, frequent ones come back soon
+                    candidates.clear();
+                }
+                return -1;
+            }
+            candidates.remove(key);
+            return add(key);
+        }
+    }
+
+    private synchronized int add(String key) {
+        final Integer existing = ids.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        final int id = size;
+        Term[] t = terms;
+        if (id >= t.length) {
+            t = Arrays.copyOf(t, t.length * 2);
+        }
+        t[id] = term(key);
+        map.put(id, key);
+        size = id + 1;
+        terms = t;
+        ids.put(key, id);
+        return id;
+    }
+
+    private static Term term(String key) {
+        final String serialization = key.substring(1);
+        final byte[] bytes = serialization.getBytes(StandardCharsets.UTF_8);
+        if (key.charAt(0) == ELEMENT) {
+            return new Term(bytes, ("</" + serialization.substring(1) + ">").getBytes(StandardCharsets.UTF_8));
+        }
+        return new Term(bytes, null);
+    }
+}
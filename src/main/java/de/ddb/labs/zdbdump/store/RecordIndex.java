@@ -0,0 +1,83 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.util.Map;
+
+/**
+ * Data derived from the records of a store and kept in line with them, see
+ * {@link IndexedRecordStore}.
+ */
+public interface RecordIndex {
+
+    /**
+     * Key under which {@link #records()} keeps the definition the entries
+     * were built with. Record IDs are never empty, so it cannot clash with a
+     * record.
+     */
+    String DEFINITION_KEY = "";
+
+    /**
+     * Replaces the entries of a record.
+     */
+    void update(String id, String record);
+
+    void remove(String id);
+
+    /**
+     * Removes all entries. The index then matches an empty store.
+     */
+    void clear();
+
+    /**
+     * @return how the entries are derived from a record; when it changes the
+     *         entries are built again
+     */
+    String definition();
+
+    /**
+     * @return map from record ID to what the index keeps about the record,
+     *         which also holds the definition
+     */
+    Map<String, String> records();
+
+    /**
+     * @return true if the entries were built with the current definition
+     */
+    default boolean isBuiltFor() {
+        return definition().equals(records().get(DEFINITION_KEY));
+    }
+
+    /**
+     * Stores the current definition, e.g. after the entries were cleared.
+     */
+    default void markBuilt() {
+        records().put(DEFINITION_KEY, definition());
+    }
+
+    void commit();
+
+    /**
+     * Builds the entries from scratch, e.g. after the definition changed.
+     */
+    default void rebuild(Iterable<Map.Entry<String, String>> store) {
+        clear();
+        for (final Map.Entry<String, String> e : store) {
+            update(e.getKey(), e.getValue());
+        }
+        commit();
+    }
+}
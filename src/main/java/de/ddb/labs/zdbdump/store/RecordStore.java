@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Key-value store for serialized records, keyed by record ID (e.g. the ZDB
+ * ID). Iteration returns the entries in ascending key order.
+ */
+public interface RecordStore extends Iterable<Map.Entry<String, String>> {
+
+    String get(String id);
+
+    void put(String id, String record);
+
+    void remove(String id);
+
+    default void putAll(Map<String, String> records) {
+        for (final Map.Entry<String, String> e : records.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    default boolean containsKey(String id) {
+        return get(id) != null;
+    }
+
+    long size();
+
+    void clear();
+
+    /**
+     * Replaces all records with the given ones, which must come in ascending
+     * id order without duplicates, e.g. from an {@link ExternalRecordSorter}.
+     */
+    default void load(Iterator<Map.Entry<String, String>> sortedRecords) {
+        clear();
+        while (sortedRecords.hasNext()) {
+            final Map.Entry<String, String> e = sortedRecords.next();
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    Iterator<Map.Entry<String, String>> iterator();
+
+    /**
+     * Makes all changes durable. Implementations may reclaim space here.
+     */
+    default void commit() {
+    }
+
+    /**
+     * Rewrites the store to reclaim space of replaced or removed records.
+     */
+    default void compact() {
+    }
+
+    /**
+     * @return bytes used on disk or -1 if unknown
+     */
+    default long diskSize() {
+        return -1L;
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only record log split into memory-mapped segment files.
+ * <p>
+ * Every put appends an entry {@code [int keyLength][int valueLength][key][value]}
+ * to the current segment; a value length of -1 marks a removal. The latest
+ * address of every key is held in an {@link OffHeapIndex}, which is rebuilt by
+ * scanning the segments on open. Replaced entries stay in the log until
+ * {@link #compact()} rewrites the live entries in key order into a sibling
+ * directory, which then replaces the log directory by renames, so a crash
+ * leaves either the old or the compacted log complete.
+ */
+public class SegmentLogRecordStore implements RecordStore, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentLogRecordStore.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final int TOMBSTONE = -1;
+    private static final double COMPACTION_GARBAGE_RATIO = 0.5d;
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final String OLD_SUFFIX = ".old";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private OffHeapIndex index;
+    private int writePosition;
+    private long liveBytes;
+    private long garbageBytes;
+
+    public SegmentLogRecordStore(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            recover();
+            Files.createDirectories(directory);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open segment log at " + directory, e);
+        }
+    }
+
+    @Override
+    public String get(String id) {
+        final byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            final long address = index.get(OffHeapIndex.hash(key), a -> keyEquals(a, key));
+            return address < 0 ? null : readValue(address);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(String id) {
+        final byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            return index.get(OffHeapIndex.hash(key), a -> keyEquals(a, key)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(String id, String record) {
+        lock.writeLock().lock();
+        try {
+            append(id.getBytes(StandardCharsets.UTF_8), record.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, String> records) {
+        lock.writeLock().lock();
+        try {
+            for (final Map.Entry<String, String> e : records.entrySet()) {
+                append(e.getKey().getBytes(StandardCharsets.UTF_8), e.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            final byte[] key = id.getBytes(StandardCharsets.UTF_8);
+            if (index.get(OffHeapIndex.hash(key), a -> keyEquals(a, key)) >= 0) {
+                append(key, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            segments.clear();
+            deleteSegments(directory);
+            index.clear();
+            writePosition = 0;
+            liveBytes = 0L;
+            garbageBytes = 0L;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not clear segment log at " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+        final long[] addresses;
+        lock.readLock().lock();
+        try {
+            addresses = sortedAddresses();
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new Iterator<>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < addresses.length;
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final long address = addresses[i++];
+                lock.readLock().lock();
+                try {
+                    return new AbstractMap.SimpleImmutableEntry<>(readKey(address), readValue(address));
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void commit() {
+        lock.writeLock().lock();
+        try {
+            for (final MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (garbageBytes > 0 && garbageBytes > (liveBytes + garbageBytes) * COMPACTION_GARBAGE_RATIO) {
+            compact();
+        }
+    }
+
+    @Override
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            final long before = diskSize();
+            final Path compacted = sibling(COMPACT_SUFFIX);
+            final Path old = sibling(OLD_SUFFIX);
+            deleteDirectory(compacted);
+            Files.createDirectories(compacted);
+
+            final long[] addresses = sortedAddresses();
+            final SegmentLogRecordStore target = new SegmentLogRecordStore(compacted, segmentSize);
+            for (final long address : addresses) {
+                target.append(readKeyBytes(address), readValueBytes(address));
+            }
+            target.close();
+
+            segments.clear();
+            // Never without a complete log on disk, see recover()
+            deleteDirectory(old);
+            Files.move(directory, old, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(compacted, directory, StandardCopyOption.ATOMIC_MOVE);
+            deleteDirectory(old);
+            open();
+            log.info("Compacted segment log {} from {} to {} bytes", directory, before, diskSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compact segment log at " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long diskSize() {
+        long total = 0L;
+        for (int i = 0; i < segments.size(); i++) {
+            total += i == segments.size() - 1 ? writePosition : segments.get(i).limit();
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!segments.isEmpty()) {
+                segments.get(segments.size() - 1).force();
+                // Drop the unused, preallocated tail of the current segment
+                try (FileChannel channel = FileChannel.open(segmentPath(segments.size() - 1), StandardOpenOption.WRITE)) {
+                    channel.truncate(writePosition);
+                }
+            }
+            segments.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close segment log at " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finishes or rolls back a compaction that was interrupted. The
+     * compacted directory is complete once the log directory was renamed to
+     * the old one, and incomplete as long as the log directory exists.
+     */
+    private void recover() throws IOException {
+        final Path compacted = sibling(COMPACT_SUFFIX);
+        final Path old = sibling(OLD_SUFFIX);
+        if (!Files.isDirectory(directory) && Files.isDirectory(old)) {
+            final Path source = Files.isDirectory(compacted) ? compacted : old;
+            log.warn("Recovering segment log {} from interrupted compaction with {}", directory, source);
+            Files.move(source, directory, StandardCopyOption.ATOMIC_MOVE);
+        }
+        deleteDirectory(compacted);
+        deleteDirectory(old);
+    }
+
+    private Path sibling(String suffix) {
+        return directory.resolveSibling(directory.getFileName() + suffix);
+    }
+
+    private void open() throws IOException {
+        index = new OffHeapIndex(1024);
+        liveBytes = 0L;
+        garbageBytes = 0L;
+        writePosition = 0;
+        int segmentCount = 0;
+        while (Files.exists(segmentPath(segmentCount))) {
+            segmentCount++;
+        }
+        for (int i = 0; i < segmentCount; i++) {
+            final long fileSize = Files.size(segmentPath(i));
+            final boolean last = i == segmentCount - 1;
+            final MappedByteBuffer segment = map(i, last ? Math.max(fileSize, segmentSize) : fileSize);
+            segments.add(segment);
+            writePosition = scan(i, segment, (int) fileSize);
+        }
+        if (segmentCount > 0) {
+            log.info("Opened segment log {} with {} records in {} segments", directory, index.size(), segmentCount);
+        }
+    }
+
+    private int scan(int segmentIndex, MappedByteBuffer segment, int limit) {
+        int position = 0;
+        while (position + HEADER_BYTES <= limit) {
+            final int keyLength = segment.getInt(position);
+            if (keyLength <= 0) {
+                break;
+            }
+            final int valueLength = segment.getInt(position + 4);
+            final int entryLength = HEADER_BYTES + keyLength + Math.max(valueLength, 0);
+            if (position + entryLength > limit) {
+                log.warn("Ignoring truncated entry at {} in segment {} of {}", position, segmentIndex, directory);
+                break;
+            }
+            final byte[] key = new byte[keyLength];
+            segment.get(position + HEADER_BYTES, key);
+            final long address = address(segmentIndex, position);
+            final long previous = valueLength == TOMBSTONE
+                    ? index.remove(OffHeapIndex.hash(key), a -> keyEquals(a, key))
+                    : index.put(OffHeapIndex.hash(key), address, a -> keyEquals(a, key));
+            trackReplaced(previous);
+            if (valueLength == TOMBSTONE) {
+                garbageBytes += entryLength;
+            } else {
+                liveBytes += entryLength;
+            }
+            position += entryLength;
+        }
+        return position;
+    }
+
+    private void append(byte[] key, byte[] value) {
+        final int entryLength = HEADER_BYTES + key.length + (value == null ? 0 : value.length);
+        if (segments.isEmpty() || writePosition + entryLength > segments.get(segments.size() - 1).limit()) {
+            startSegment(entryLength);
+        }
+        final int segmentIndex = segments.size() - 1;
+        final MappedByteBuffer segment = segments.get(segmentIndex);
+        final long address = address(segmentIndex, writePosition);
+        segment.putInt(writePosition, key.length);
+        segment.putInt(writePosition + 4, value == null ? TOMBSTONE : value.length);
+        segment.put(writePosition + HEADER_BYTES, key);
+        if (value != null) {
+            segment.put(writePosition + HEADER_BYTES + key.length, value);
+        }
+        writePosition += entryLength;
+
+        final long previous = value == null
+                ? index.remove(OffHeapIndex.hash(key), a -> keyEquals(a, key))
+                : index.put(OffHeapIndex.hash(key), address, a -> keyEquals(a, key));
+        trackReplaced(previous);
+        if (value == null) {
+            garbageBytes += entryLength;
+        } else {
+            liveBytes += entryLength;
+        }
+    }
+
+    private void trackReplaced(long previous) {
+        if (previous >= 0) {
+            final long previousLength = entryLength(previous);
+            liveBytes -= previousLength;
+            garbageBytes += previousLength;
+        }
+    }
+
+    private void startSegment(int minimumSize) {
+        try {
+            if (!segments.isEmpty()) {
+                final int last = segments.size() - 1;
+                segments.get(last).force();
+                try (FileChannel channel = FileChannel.open(segmentPath(last), StandardOpenOption.WRITE)) {
+                    channel.truncate(writePosition);
+                }
+                segments.set(last, map(last, writePosition));
+            }
+            segments.add(map(segments.size(), Math.max(segmentSize, minimumSize)));
+            writePosition = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create segment in " + directory, e);
+        }
+    }
+
+    private MappedByteBuffer map(int segmentIndex, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentIndex),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private Path segmentPath(int segmentIndex) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%05d", segmentIndex) + SEGMENT_SUFFIX);
+    }
+
+    private static void deleteSegments(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (final Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        deleteSegments(dir);
+        Files.deleteIfExists(dir);
+    }
+
+    private static long address(int segmentIndex, int position) {
+        return ((long) segmentIndex << 32) | position;
+    }
+
+    private MappedByteBuffer segment(long address) {
+        return segments.get((int) (address >>> 32));
+    }
+
+    private static int position(long address) {
+        return (int) address;
+    }
+
+    private long entryLength(long address) {
+        final MappedByteBuffer segment = segment(address);
+        final int position = position(address);
+        return HEADER_BYTES + segment.getInt(position) + Math.max(segment.getInt(position + 4), 0);
+    }
+
+    private boolean keyEquals(long address, byte[] key) {
+        final MappedByteBuffer segment = segment(address);
+        final int position = position(address);
+        if (segment.getInt(position) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (segment.get(position + HEADER_BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] readKeyBytes(long address) {
+        final MappedByteBuffer segment = segment(address);
+        final int position = position(address);
+        final byte[] key = new byte[segment.getInt(position)];
+        segment.get(position + HEADER_BYTES, key);
+        return key;
+    }
+
+    private byte[] readValueBytes(long address) {
+        final MappedByteBuffer segment = segment(address);
+        final int position = position(address);
+        final int keyLength = segment.getInt(position);
+        final byte[] value = new byte[segment.getInt(position + 4)];
+        segment.get(position + HEADER_BYTES + keyLength, value);
+        return value;
+    }
+
+    private String readKey(long address) {
+        return new String(readKeyBytes(address), StandardCharsets.UTF_8);
+    }
+
+    private String readValue(long address) {
+        return new String(readValueBytes(address), StandardCharsets.UTF_8);
+    }
+
+    private long[] sortedAddresses() {
+        final long[] addresses = index.addresses();
+        // Sort by an 8 byte key prefix first and fall back to the full key on ties
+        final long[] prefixes = new long[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            prefixes[i] = keyPrefix(addresses[i]);
+        }
+        sort(prefixes, addresses, 0, addresses.length - 1);
+        return addresses;
+    }
+
+    private long keyPrefix(long address) {
+        final MappedByteBuffer segment = segment(address);
+        final int position = position(address);
+        final int keyLength = segment.getInt(position);
+        long prefix = 0L;
+        for (int i = 0; i < 8; i++) {
+            prefix <<= 8;
+            if (i < keyLength) {
+                prefix |= segment.get(position + HEADER_BYTES + i) & 0xff;
+            }
+        }
+        return prefix;
+    }
+
+    private int compare(long prefixA, long addressA, long prefixB, long addressB) {
+        final int c = Long.compareUnsigned(prefixA, prefixB);
+        if (c != 0) {
+            return c;
+        }
+        return Arrays.compareUnsigned(readKeyBytes(addressA), readKeyBytes(addressB));
+    }
+
+    private void sort(long[] prefixes, long[] addresses, int low, int high) {
+        while (high - low > 16) {
+            final int middle = (low + high) >>> 1;
+            final long pivotPrefix = prefixes[middle];
+            final long pivotAddress = addresses[middle];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(prefixes[i], addresses[i], pivotPrefix, pivotAddress) < 0) {
+                    i++;
+                }
+                while (compare(prefixes[j], addresses[j], pivotPrefix, pivotAddress) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(prefixes, addresses, i++, j--);
+                }
+            }
+            // Recurse into the smaller partition to bound the stack depth
+            if (j - low < high - i) {
+                sort(prefixes, addresses, low, j);
+                low = i;
+            } else {
+                sort(prefixes, addresses, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compare(prefixes[j - 1], addresses[j - 1], prefixes[j], addresses[j]) > 0; j--) {
+                swap(prefixes, addresses, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(long[] prefixes, long[] addresses, int i, int j) {
+        final long prefix = prefixes[i];
+        prefixes[i] = prefixes[j];
+        prefixes[j] = prefix;
+        final long address = addresses[i];
+        addresses[i] = addresses[j];
+        addresses[j] = address;
+    }
+}
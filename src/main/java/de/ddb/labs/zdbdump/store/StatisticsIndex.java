@@ -0,0 +1,304 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import de.ddb.labs.zdbdump.store.TripleIndex.Triple;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.xml.stream.XMLStreamException;
+import org.h2.mvstore.MVMap;
+
+/**
+ * Dataset statistics as described by VoID, kept up to date record by record:
+ * triples, entities, entities per class, triples per property and links per
+ * target host and property. The counters a record contributed are kept with
+ * it, so replacing or removing it subtracts them without reading the old
+ * record. Counters are held in memory and written on {@link #commit()}; until
+ * then the index is marked as not built, so counters lost in a crash are
+ * rebuilt on the next run.
+ */
+public class StatisticsIndex implements RecordIndex {
+
+    /**
+     * @param links triples per target host, e.g. {@code http://id.loc.gov/},
+     *              and property
+     */
+    public record Statistics(
+            long triples,
+            long entities,
+            Map<String, Long> classes,
+            Map<String, Long> properties,
+            Map<String, Map<String, Long>> links) {
+    }
+
+    private static final String DEFINITION = "triples entities classes properties links";
+    private static final String TRIPLES = "t";
+    private static final String ENTITIES = "e";
+    private static final String CLASS = "c ";
+    private static final String PROPERTY = "p ";
+    private static final String LINK = "l ";
+
+    private final MVMap<Integer, String> keys; // counter id -> key, e.g. "p <http://purl.org/dc/elements/1.1/title>"
+    private final MVMap<Integer, Long> counts; // counter id -> count
+    private final MVMap<String, String> records; // ID -> counter ids it contributed to, e.g. "0:12 1 7:3"
+    private final RdfXmlParser parser = new RdfXmlParser();
+    private final List<String> keyList = new ArrayList<>();
+    private final Map<String, Integer> keyIds = new HashMap<>();
+    private final BitSet dirty = new BitSet();
+    private long[] values = new long[64];
+    private boolean modified = false;
+
+    public StatisticsIndex(MVMap<Integer, String> keys, MVMap<Integer, Long> counts, MVMap<String, String> records) {
+        this.keys = keys;
+        this.counts = counts;
+        this.records = records;
+        for (final Map.Entry<Integer, String> e : keys.entrySet()) {
+            while (keyList.size() <= e.getKey()) {
+                keyList.add(null);
+            }
+            keyList.set(e.getKey(), e.getValue());
+            keyIds.put(e.getValue(), e.getKey());
+        }
+        values = Arrays.copyOf(values, Math.max(values.length, keyList.size()));
+        for (final Map.Entry<Integer, Long> e : counts.entrySet()) {
+            values[e.getKey()] = e.getValue();
+        }
+    }
+
+    @Override
+    public String definition() {
+        return DEFINITION;
+    }
+
+    @Override
+    public Map<String, String> records() {
+        return records;
+    }
+
+    /**
+     * Records which are no well-formed RDF/XML contribute nothing.
+     */
+    @Override
+    public synchronized void update(String id, String record) {
+        final Map<Integer, Long> contribution = new TreeMap<>();
+        try {
+            count(parser.parse(id, record), contribution);
+        } catch (XMLStreamException e) {
+            contribution.clear();
+        }
+        final String serialized = serialize(contribution);
+        final String old = records.get(id);
+        if (serialized.equals(old != null ? old : "")) {
+            return;
+        }
+        // Before the contribution is stored, as the store may commit it any time
+        markModified();
+        if (serialized.isEmpty()) {
+            records.remove(id);
+        } else {
+            records.put(id, serialized);
+        }
+        subtract(old);
+        contribution.forEach(this::add);
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        final String old = records.get(id);
+        if (old != null) {
+            markModified();
+            records.remove(id);
+            subtract(old);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        keys.clear();
+        counts.clear();
+        records.clear();
+        keyList.clear();
+        keyIds.clear();
+        dirty.clear();
+        values = new long[64];
+        markBuilt();
+        modified = false;
+    }
+
+    @Override
+    public synchronized void commit() {
+        for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+            if (values[i] == 0L) {
+                counts.remove(i);
+            } else {
+                counts.put(i, values[i]);
+            }
+        }
+        dirty.clear();
+        if (modified) {
+            markBuilt();
+            modified = false;
+        }
+        records.getStore().commit();
+    }
+
+    public synchronized Statistics statistics() {
+        long triples = 0L;
+        long entities = 0L;
+        final Map<String, Long> classes = new TreeMap<>();
+        final Map<String, Long> properties = new TreeMap<>();
+        final Map<String, Map<String, Long>> links = new TreeMap<>();
+        for (int i = 0; i < keyList.size(); i++) {
+            final String key = keyList.get(i);
+            final long value = values[i];
+            if (key == null || value == 0L) {
+                continue;
+            }
+            if (key.equals(TRIPLES)) {
+                triples = value;
+            } else if (key.equals(ENTITIES)) {
+                entities = value;
+            } else if (key.startsWith(CLASS)) {
+                classes.put(unwrap(key.substring(CLASS.length())), value);
+            } else if (key.startsWith(PROPERTY)) {
+                properties.put(unwrap(key.substring(PROPERTY.length())), value);
+            } else if (key.startsWith(LINK)) {
+                final String[] target = key.substring(LINK.length()).split(" ", 2);
+                links.computeIfAbsent(target[0], t -> new LinkedHashMap<>()).put(unwrap(target[1]), value);
+            }
+        }
+        return new Statistics(triples, entities, classes, properties, links);
+    }
+
+    private void count(List<Triple> triples, Map<Integer, Long> contribution) {
+        if (triples.isEmpty()) {
+            return;
+        }
+        contribution.merge(keyId(TRIPLES), (long) triples.size(), Long::sum);
+        final Set<String> entities = new HashSet<>();
+        final Set<String> typed = new HashSet<>();
+        for (final Triple t : triples) {
+            if (t.subject().startsWith("<")) {
+                entities.add(t.subject());
+            }
+            contribution.merge(keyId(PROPERTY + t.predicate()), 1L, Long::sum);
+            if (!t.object().startsWith("<")) {
+                continue;
+            }
+            if (RdfXmlParser.RDF_TYPE.equals(t.predicate())) {
+                if (typed.add(t.subject() + " " + t.object())) {
+                    contribution.merge(keyId(CLASS + t.object()), 1L, Long::sum);
+                }
+                continue;
+            }
+            final String target = host(t.object());
+            if (target != null && !authority(target).equals(authority(host(t.subject())))) {
+                contribution.merge(keyId(LINK + target + " " + t.predicate()), 1L, Long::sum);
+            }
+        }
+        if (!entities.isEmpty()) {
+            contribution.merge(keyId(ENTITIES), (long) entities.size(), Long::sum);
+        }
+    }
+
+    /**
+     * @param iri term in N-Triples syntax
+     * @return scheme and host of the IRI with a trailing slash, e.g.
+     * {@code http://id.loc.gov/}, or null if there is none
+     */
+    private static String host(String iri) {
+        final int scheme = iri.indexOf("://");
+        if (scheme < 0) {
+            return null;
+        }
+        final int end = iri.indexOf('/', scheme + 3);
+        return end > 0 ? iri.substring(1, end + 1) : iri.substring(1, iri.length() - 1) + "/";
+    }
+
+    /**
+     * @return host of the result of {@link #host(String)}, so links between
+     * http and https IRIs of the same host do not count
+     */
+    private static String authority(String host) {
+        return host != null ? host.substring(host.indexOf("://") + 3) : "";
+    }
+
+    private static String unwrap(String iri) {
+        return iri.startsWith("<") && iri.endsWith(">") ? iri.substring(1, iri.length() - 1) : iri;
+    }
+
+    private int keyId(String key) {
+        Integer id = keyIds.get(key);
+        if (id == null) {
+            id = keyList.size();
+            keyList.add(key);
+            keyIds.put(key, id);
+            keys.put(id, key);
+            if (id >= values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+        }
+        return id;
+    }
+
+    private void add(int id, long delta) {
+        values[id] += delta;
+        dirty.set(id);
+    }
+
+    private void subtract(String serialized) {
+        if (serialized == null || serialized.isEmpty()) {
+            return;
+        }
+        for (final String entry : serialized.split(" ")) {
+            final int colon = entry.indexOf(':');
+            if (colon < 0) {
+                add(Integer.parseInt(entry), -1L);
+            } else {
+                add(Integer.parseInt(entry, 0, colon, 10), -Long.parseLong(entry, colon + 1, entry.length(), 10));
+            }
+        }
+    }
+
+    private static String serialize(Map<Integer, Long> contribution) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<Integer, Long> e : contribution.entrySet()) {
+            if (!sb.isEmpty()) {
+                sb.append(' ');
+            }
+            sb.append(e.getKey());
+            if (e.getValue() != 1L) {
+                sb.append(':').append(e.getValue());
+            }
+        }
+        return sb.toString();
+    }
+
+    private void markModified() {
+        if (!modified) {
+            records.remove(DEFINITION_KEY);
+            modified = true;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opens record stores with the configured backend and, for MVStore, record
+ * encoding. Auxiliary maps are always kept in the MVStore database file.
+ */
+@Component
+public class StoreManager {
+
+    private static final Logger log = LoggerFactory.getLogger(StoreManager.class);
+    public static final String BACKEND_MVSTORE = "mvstore";
+    public static final String BACKEND_SEGMENTLOG = "segmentlog";
+    public static final String ENCODING_TEXT = "text";
+    public static final String ENCODING_BINARY = "binary";
+
+    @Value("${zdbdump.path.temp}")
+    private String tempPath;
+
+    @Value("${zdbdump.database}")
+    private String databaseName;
+
+    @Value("${zdbdump.store.backend}")
+    private String backend;
+
+    @Value("${zdbdump.store.segment-size}")
+    private int segmentSize;
+
+    @Value("${zdbdump.store.encoding}")
+    private String encoding;
+
+    private MVStore mvStore; // Key-Value-Store
+
+    private final Map<String, RecordStore> recordStores = new ConcurrentHashMap<>();
+
+    @PreDestroy
+    private void destroy() {
+        log.info("Destroy callback triggered: Closing database ...");
+        for (final RecordStore recordStore : recordStores.values()) {
+            if (recordStore instanceof SegmentLogRecordStore segmentLog) {
+                try {
+                    segmentLog.close();
+                } catch (Exception e) {
+                    log.error("Could not close segment log. {}", e.getMessage());
+                }
+            }
+        }
+        try {
+            if (mvStore != null) {
+                mvStore.close();
+            }
+        } catch (Exception e) {
+            log.error("Could not close connection to database. {}", e.getMessage());
+        }
+    }
+
+    public RecordStore open(String name) {
+        return recordStores.computeIfAbsent(name, n -> {
+            if (BACKEND_SEGMENTLOG.equalsIgnoreCase(backend)) {
+                return new SegmentLogRecordStore(tempDirectory().resolve(databaseName + "." + n), segmentSize);
+            }
+            if (ENCODING_BINARY.equalsIgnoreCase(encoding)) {
+                // Kept apart from text records
+                return new BinaryRecordStore(openMap(physicalName(n)), new RecordDictionary(openMap(n + "_dictionary")));
+            }
+            return new MvStoreRecordStore(openMap(physicalName(n)));
+        });
+    }
+
+    /**
+     * @return name of the store opened as {@code name} with the configured
+     *         backend and encoding. Stores of another backend or encoding keep
+     *         their records apart, so state about the records, like the
+     *         harvest checkpoint, has to be kept under this name; switching
+     *         back to a store that still holds records must not resume from
+     *         the progress of another.
+     */
+    public String physicalName(String name) {
+        if (BACKEND_SEGMENTLOG.equalsIgnoreCase(backend)) {
+            return name + "_" + BACKEND_SEGMENTLOG;
+        }
+        if (ENCODING_BINARY.equalsIgnoreCase(encoding)) {
+            return name + "_binary";
+        }
+        return name;
+    }
+
+    public synchronized <K, V> MVMap<K, V> openMap(String name) {
+        return mvStore().openMap(name);
+    }
+
+    private synchronized MVStore mvStore() {
+        if (mvStore == null) {
+            mvStore = new MVStore.Builder()
+                    .fileName(tempDirectory().resolve(databaseName).toString())
+                    .compress()
+                    // .compressHigh()
+                    .open();
+        }
+        return mvStore;
+    }
+
+    private Path tempDirectory() {
+        try {
+            final Path tempDirectory = Path.of(tempPath);
+            Files.createDirectories(tempDirectory);
+            return tempDirectory;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not initialize temp directory for MVStore", e);
+        }
+    }
+}
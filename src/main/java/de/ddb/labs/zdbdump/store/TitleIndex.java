@@ -0,0 +1,429 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.h2.mvstore.MVMap;
+
+/**
+ * Type-ahead index over the titles of the records in a store.
+ * <p>
+ * Titles are normalized to lower case letters and digits without diacritics
+ * and kept in a sorted map keyed by {@code title \0 ID}, which answers prefix
+ * queries with a range scan. For queries matching anywhere in a title, every
+ * trigram of a normalized title has a posting list of record IDs. A posting
+ * list is split into sorted chunks of at most {@value #CHUNK_SIZE} IDs keyed
+ * by {@code trigram \0 first ID}, so an ID is stored once per trigram and the
+ * lists of a query are intersected by seeking instead of reading them
+ * completely. Posting changes are buffered and applied in key order, see
+ * {@link #commit()}; until then searches do not see them. A search examines
+ * at most {@value #MAX_CANDIDATES} candidates, so common trigrams which
+ * rarely occur in a row cannot make it walk long posting lists.
+ */
+public class TitleIndex implements RecordIndex {
+
+    public record Hit(String id, String title) {
+    }
+
+    /**
+     * @param truncated the search stopped before it found all hits of the
+     *                  page, see {@link #MAX_CANDIDATES}
+     */
+    public record Result(List<Hit> hits, boolean truncated) {
+    }
+
+    private static final char SEPARATOR = '\u0000';
+    // Long titles are found by their beginning, that is enough for type-ahead
+    private static final int MAX_TRIGRAM_CHARS = 128;
+    private static final int CHUNK_SIZE = 128;
+    private static final int MAX_PENDING_POSTINGS = 200_000;
+    private static final int MAX_CANDIDATES = 50_000;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Pattern pattern;
+    private final String definition;
+    private final MVMap<String, String> titles; // title \0 ID -> title as in the record
+    private final MVMap<String, String> postings; // trigram \0 first ID -> IDs, one per line
+    private final MVMap<String, String> records; // ID -> its normalized titles, one per line
+    private final Map<String, Boolean> pending = new HashMap<>(); // posting -> added or removed
+
+    /**
+     * @param regex    regular expression whose first group captures a title
+     * @param titles   map of the normalized titles
+     * @param postings map of the trigram posting lists
+     * @param records  map of the titles per record
+     */
+    public TitleIndex(String regex, MVMap<String, String> titles, MVMap<String, String> postings,
+            MVMap<String, String> records) {
+        this.pattern = Pattern.compile(regex);
+        this.definition = regex + SEPARATOR + MAX_TRIGRAM_CHARS;
+        this.titles = titles;
+        this.postings = postings;
+        this.records = records;
+    }
+
+    @Override
+    public String definition() {
+        return definition;
+    }
+
+    @Override
+    public Map<String, String> records() {
+        return records;
+    }
+
+    @Override
+    public void update(String id, String record) {
+        final Map<String, String> found = new LinkedHashMap<>();
+        final Matcher m = pattern.matcher(record);
+        while (m.find()) {
+            final String title = unescape(m.group(1)).strip();
+            final String normalized = normalize(title);
+            if (!normalized.isEmpty()) {
+                found.putIfAbsent(normalized, title);
+            }
+        }
+        final String old = records.get(id);
+        final Set<String> oldTitles = old != null ? new LinkedHashSet<>(Arrays.asList(old.split("\n"))) : Set.of();
+        if (oldTitles.equals(found.keySet())) {
+            // Only the spelling of a title may have changed
+            for (final Map.Entry<String, String> title : found.entrySet()) {
+                final String key = title.getKey() + SEPARATOR + id;
+                if (!title.getValue().equals(titles.get(key))) {
+                    titles.put(key, title.getValue());
+                }
+            }
+            return;
+        }
+        final Set<String> oldTrigrams = trigrams(oldTitles);
+        final Set<String> newTrigrams = trigrams(found.keySet());
+        for (final String title : oldTitles) {
+            if (!found.containsKey(title)) {
+                titles.remove(title + SEPARATOR + id);
+            }
+        }
+        for (final String trigram : oldTrigrams) {
+            if (!newTrigrams.contains(trigram)) {
+                removePosting(trigram, id);
+            }
+        }
+        for (final Map.Entry<String, String> title : found.entrySet()) {
+            titles.put(title.getKey() + SEPARATOR + id, title.getValue());
+        }
+        for (final String trigram : newTrigrams) {
+            if (!oldTrigrams.contains(trigram)) {
+                addPosting(trigram, id);
+            }
+        }
+        if (found.isEmpty()) {
+            records.remove(id);
+        } else {
+            records.put(id, String.join("\n", found.keySet()));
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        final String old = records.remove(id);
+        if (old == null) {
+            return;
+        }
+        final Set<String> oldTitles = new LinkedHashSet<>(Arrays.asList(old.split("\n")));
+        for (final String title : oldTitles) {
+            titles.remove(title + SEPARATOR + id);
+        }
+        for (final String trigram : trigrams(oldTitles)) {
+            removePosting(trigram, id);
+        }
+    }
+
+    @Override
+    public void clear() {
+        pending.clear();
+        titles.clear();
+        postings.clear();
+        records.clear();
+        markBuilt();
+    }
+
+    @Override
+    public void commit() {
+        flush();
+        titles.getStore().commit();
+    }
+
+    /**
+     * Records whose title starts with the query, ordered by title.
+     *
+     * @param offset number of hits to skip for paging
+     */
+    public Result searchPrefix(String query, int offset, int limit) {
+        final List<Hit> hits = new ArrayList<>();
+        final String prefix = normalize(query);
+        final Set<String> seen = new LinkedHashSet<>();
+        final Iterator<String> it = titles.keyIterator(prefix);
+        while (hits.size() < limit && it.hasNext()) {
+            final String key = it.next();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            final String id = key.substring(key.indexOf(SEPARATOR) + 1);
+            if (seen.add(id) && seen.size() > offset) {
+                hits.add(new Hit(id, titles.get(key)));
+            }
+        }
+        return new Result(hits, false);
+    }
+
+    /**
+     * Records with the query anywhere in a title, ordered by ID. Queries
+     * shorter than a trigram fall back to the prefix search.
+     *
+     * @param offset number of hits to skip for paging
+     */
+    public Result searchContains(String query, int offset, int limit) {
+        final String normalized = normalize(query);
+        final Set<String> trigrams = trigrams(Set.of(normalized));
+        if (trigrams.isEmpty()) {
+            return searchPrefix(query, offset, limit);
+        }
+        final List<Posting> lists = new ArrayList<>();
+        for (final String trigram : trigrams) {
+            lists.add(new Posting(trigram));
+        }
+
+        final List<Hit> hits = new ArrayList<>();
+        int skipped = 0;
+        int candidates = 0;
+        String candidate = "";
+        search:
+        while (hits.size() < limit) {
+            if (++candidates > MAX_CANDIDATES) {
+                return new Result(hits, true);
+            }
+            // Leapfrog: seek every list to the candidate until all agree
+            for (final Posting list : lists) {
+                final String id = list.ceiling(candidate);
+                if (id == null) {
+                    break search;
+                }
+                if (!id.equals(candidate)) {
+                    candidate = id;
+                    continue search;
+                }
+            }
+            // All trigrams occur, but not necessarily in a row
+            final Hit hit = verify(candidate, normalized);
+            if (hit != null && skipped++ >= offset) {
+                hits.add(hit);
+            }
+            candidate = candidate + SEPARATOR;
+        }
+        return new Result(hits, false);
+    }
+
+    public long size() {
+        return titles.sizeAsLong();
+    }
+
+    private Hit verify(String id, String normalized) {
+        final String titlesOfRecord = records.get(id);
+        if (titlesOfRecord == null) {
+            return null;
+        }
+        for (final String title : titlesOfRecord.split("\n")) {
+            if (title.contains(normalized)) {
+                return new Hit(id, titles.get(title + SEPARATOR + id));
+            }
+        }
+        return null;
+    }
+
+    private void addPosting(String trigram, String id) {
+        pending.put(trigram + SEPARATOR + id, Boolean.TRUE);
+        if (pending.size() >= MAX_PENDING_POSTINGS) {
+            flush();
+        }
+    }
+
+    private void removePosting(String trigram, String id) {
+        pending.put(trigram + SEPARATOR + id, Boolean.FALSE);
+        if (pending.size() >= MAX_PENDING_POSTINGS) {
+            flush();
+        }
+    }
+
+    /**
+     * Applies the pending posting changes in key order, so every chunk of a
+     * posting list is rewritten once with all its changes.
+     */
+    private void flush() {
+        final String[] keys = pending.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        String prefix = null;
+        String chunkKey = null;
+        String nextChunkKey = null;
+        List<String> ids = null;
+        for (final String key : keys) {
+            final String keyPrefix = key.substring(0, key.indexOf(SEPARATOR) + 1);
+            if (ids != null && (!keyPrefix.equals(prefix) || nextChunkKey != null && key.compareTo(nextChunkKey) >= 0)) {
+                writeChunk(prefix, chunkKey, ids);
+                ids = null;
+            }
+            if (ids == null) {
+                prefix = keyPrefix;
+                chunkKey = chunkOf(prefix, key);
+                ids = chunkKey != null
+                        ? new ArrayList<>(Arrays.asList(postings.get(chunkKey).split("\n")))
+                        : new ArrayList<>();
+                nextChunkKey = chunkKey != null ? postings.higherKey(chunkKey) : null;
+                if (nextChunkKey != null && !nextChunkKey.startsWith(prefix)) {
+                    nextChunkKey = null;
+                }
+            }
+            final String id = key.substring(prefix.length());
+            final int pos = Collections.binarySearch(ids, id);
+            if (pending.get(key)) {
+                if (pos < 0) {
+                    ids.add(-pos - 1, id);
+                }
+            } else if (pos >= 0) {
+                ids.remove(pos);
+            }
+        }
+        if (ids != null) {
+            writeChunk(prefix, chunkKey, ids);
+        }
+        pending.clear();
+    }
+
+    /**
+     * @return key of the chunk a posting belongs to, the first chunk for IDs
+     *         smaller than all others, null if the list is empty
+     */
+    private String chunkOf(String prefix, String posting) {
+        final String key = postings.floorKey(posting);
+        if (key != null && key.startsWith(prefix)) {
+            return key;
+        }
+        final String first = postings.ceilingKey(prefix);
+        return first != null && first.startsWith(prefix) ? first : null;
+    }
+
+    private void writeChunk(String prefix, String oldKey, List<String> ids) {
+        if (oldKey != null && (ids.isEmpty() || !oldKey.equals(prefix + ids.get(0)))) {
+            postings.remove(oldKey);
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        // Split evenly, so a full chunk does not overflow with the next insert
+        final int chunks = (ids.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final int size = (ids.size() + chunks - 1) / chunks;
+        for (int from = 0; from < ids.size(); from += size) {
+            final List<String> chunk = ids.subList(from, Math.min(ids.size(), from + size));
+            postings.put(prefix + chunk.get(0), String.join("\n", chunk));
+        }
+    }
+
+    private static Set<String> trigrams(Set<String> normalizedTitles) {
+        final Set<String> trigrams = new LinkedHashSet<>();
+        for (final String title : normalizedTitles) {
+            final int end = Math.min(title.length(), MAX_TRIGRAM_CHARS);
+            for (int i = 0; i + 3 <= end; i++) {
+                trigrams.add(title.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+
+    static String normalize(String title) {
+        final String decomposed = Normalizer.normalize(title, Normalizer.Form.NFKD);
+        final String plain = DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+        return NON_ALPHANUMERIC.matcher(plain).replaceAll(" ").strip();
+    }
+
+    private static String unescape(String xml) {
+        if (xml.indexOf('&') < 0) {
+            return xml;
+        }
+        return xml.replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&apos;", "'")
+                .replace("&amp;", "&");
+    }
+
+    /**
+     * Cursor over the posting list of one trigram.
+     */
+    private final class Posting {
+
+        private final String prefix;
+        private String chunkKey;
+        private String[] chunk;
+
+        Posting(String trigram) {
+            this.prefix = trigram + SEPARATOR;
+        }
+
+        /**
+         * @return the smallest ID of the list which is not smaller than the
+         *         given one or null
+         */
+        String ceiling(String id) {
+            final String key = chunkOf(prefix, prefix + id);
+            if (key == null) {
+                return null;
+            }
+            load(key);
+            final int pos = Arrays.binarySearch(chunk, id);
+            final int index = pos >= 0 ? pos : -pos - 1;
+            if (index < chunk.length) {
+                return chunk[index];
+            }
+            final String next = postings.higherKey(key);
+            if (next == null || !next.startsWith(prefix)) {
+                return null;
+            }
+            load(next);
+            return chunk.length > 0 ? chunk[0] : null;
+        }
+
+        private void load(String key) {
+            if (!key.equals(chunkKey)) {
+                // Removed by a concurrent update: continue with the next chunk
+                final String ids = postings.get(key);
+                chunkKey = key;
+                chunk = ids != null ? ids.split("\n") : new String[0];
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2023-2026 Michael Büchner, Deutsche Digitale Bibliothek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.ddb.labs.zdbdump.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.stream.XMLStreamException;
+import org.h2.mvstore.MVMap;
+
+/**
+ * The RDF triples of the records of a store, so triple patterns such as all
+ * records with a given predicate and object are answered without a triple
+ * store. Every triple is kept in three orders, subject-predicate-object,
+ * predicate-object-subject and object-subject-predicate, so each pattern is a
+ * key range of one of them; counting a range and seeking to a page takes
+ * logarithmic time. Terms are kept in N-Triples syntax, e.g.
+ * {@code <http://purl.org/dc/elements/1.1/title>} or {@code "Nature"@en}.
+ * Blank nodes are labelled per record. A triple stated by several records is
+ * kept once with the number of records stating it.
+ */
+public class TripleIndex implements RecordIndex {
+
+    public record Triple(String subject, String predicate, String object) {
+
+        @Override
+        public String toString() {
+            return subject + " " + predicate + " " + object + " .";
+        }
+    }
+
+    /**
+     * @param triples one page of the matching triples
+     * @param count   number of all matching triples
+     */
+    public record Fragment(List<Triple> triples, long count) {
+    }
+
+    private static final char SEPARATOR = '\u0000';
+    private static final String DEFINITION = "spo pos osp rdfxml counted lang";
+    private static final String XSD_STRING = "http://www.w3.org/2001/XMLSchema#string";
+
+    private final MVMap<String, String> spo; // subject \0 predicate \0 object -> number of records
+    private final MVMap<String, String> pos; // predicate \0 object \0 subject -> ""
+    private final MVMap<String, String> osp; // object \0 subject \0 predicate -> ""
+    private final MVMap<String, String> records; // ID -> its triples as spo keys, one per line
+    private final RdfXmlParser parser = new RdfXmlParser();
+
+    public TripleIndex(MVMap<String, String> spo, MVMap<String, String> pos, MVMap<String, String> osp,
+            MVMap<String, String> records) {
+        this.spo = spo;
+        this.pos = pos;
+        this.osp = osp;
+        this.records = records;
+    }
+
+    @Override
+    public String definition() {
+        return DEFINITION;
+    }
+
+    @Override
+    public Map<String, String> records() {
+        return records;
+    }
+
+    /**
+     * Records which are no well-formed RDF/XML contribute no triples.
+     */
+    @Override
+    public void update(String id, String record) {
+        final Set<String> keys = new LinkedHashSet<>();
+        try {
+            for (final Triple t : parse(id, record)) {
+                keys.add(t.subject() + SEPARATOR + t.predicate() + SEPARATOR + t.object());
+            }
+        } catch (XMLStreamException e) {
+            keys.clear();
+        }
+        final String old = records.get(id);
+        final Set<String> oldKeys = old != null ? new HashSet<>(Arrays.asList(old.split("\n"))) : Set.of();
+        for (final String key : oldKeys) {
+            if (!keys.contains(key)) {
+                removeTriple(key);
+            }
+        }
+        for (final String key : keys) {
+            if (!oldKeys.contains(key)) {
+                addTriple(key);
+            }
+        }
+        if (keys.isEmpty()) {
+            if (old != null) {
+                records.remove(id);
+            }
+        } else {
+            records.put(id, String.join("\n", keys));
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        final String old = records.remove(id);
+        if (old != null) {
+            for (final String key : old.split("\n")) {
+                removeTriple(key);
+            }
+        }
+    }
+
+    private void addTriple(String key) {
+        final String count = spo.get(key);
+        if (count != null) {
+            spo.put(key, Long.toString(Long.parseLong(count) + 1L));
+            return;
+        }
+        spo.put(key, "1");
+        final String[] t = key.split(String.valueOf(SEPARATOR), 3);
+        pos.put(t[1] + SEPARATOR + t[2] + SEPARATOR + t[0], "");
+        osp.put(t[2] + SEPARATOR + t[0] + SEPARATOR + t[1], "");
+    }
+
+    /**
+     * Removes the triple once no other record states it.
+     */
+    private void removeTriple(String key) {
+        final String count = spo.get(key);
+        if (count == null) {
+            return;
+        }
+        if (!count.equals("1")) {
+            spo.put(key, Long.toString(Long.parseLong(count) - 1L));
+            return;
+        }
+        spo.remove(key);
+        final String[] t = key.split(String.valueOf(SEPARATOR), 3);
+        pos.remove(t[1] + SEPARATOR + t[2] + SEPARATOR + t[0]);
+        osp.remove(t[2] + SEPARATOR + t[0] + SEPARATOR + t[1]);
+    }
+
+    @Override
+    public void clear() {
+        spo.clear();
+        pos.clear();
+        osp.clear();
+        records.clear();
+        markBuilt();
+    }
+
+    @Override
+    public void commit() {
+        spo.getStore().commit();
+    }
+
+    public long size() {
+        return spo.sizeAsLong();
+    }
+
+    /**
+     * Triples matching a pattern, ordered by the index answering it.
+     *
+     * @param subject   term in N-Triples syntax or null for any
+     * @param predicate term in N-Triples syntax or null for any
+     * @param object    term in N-Triples syntax or null for any
+     */
+    public Fragment match(String subject, String predicate, String object, long offset, int limit) {
+        if (subject != null && predicate != null && object != null) {
+            final boolean found = spo.containsKey(subject + SEPARATOR + predicate + SEPARATOR + object);
+            return new Fragment(found && offset == 0L && limit > 0
+                    ? List.of(new Triple(subject, predicate, object))
+                    : List.of(), found ? 1L : 0L);
+        }
+        final MVMap<String, String> map;
+        final String prefix;
+        final int order; // position of subject, predicate and object in the keys
+        if (subject != null) {
+            if (object != null) {
+                map = osp;
+                prefix = object + SEPARATOR + subject + SEPARATOR;
+                order = 1;
+            } else {
+                map = spo;
+                prefix = predicate != null ? subject + SEPARATOR + predicate + SEPARATOR : subject + SEPARATOR;
+                order = 0;
+            }
+        } else if (predicate != null) {
+            map = pos;
+            prefix = object != null ? predicate + SEPARATOR + object + SEPARATOR : predicate + SEPARATOR;
+            order = 2;
+        } else if (object != null) {
+            map = osp;
+            prefix = object + SEPARATOR;
+            order = 1;
+        } else {
+            map = spo;
+            prefix = "";
+            order = 0;
+        }
+
+        // Prefixes end with the separator, so the range ends before the next character
+        final long from = rank(map, prefix);
+        final long to = prefix.isEmpty()
+                ? map.sizeAsLong()
+                : rank(map, prefix.substring(0, prefix.length() - 1) + (char) (SEPARATOR + 1));
+        final List<Triple> triples = new ArrayList<>();
+        if (from + offset < to && limit > 0) {
+            final Iterator<String> it = map.keyIterator(map.getKey(from + offset));
+            while (triples.size() < limit && it.hasNext()) {
+                final String key = it.next();
+                if (!key.startsWith(prefix)) {
+                    break;
+                }
+                final String[] t = key.split(String.valueOf(SEPARATOR), 3);
+                triples.add(switch (order) {
+                    case 1 -> new Triple(t[1], t[2], t[0]);
+                    case 2 -> new Triple(t[2], t[0], t[1]);
+                    default -> new Triple(t[0], t[1], t[2]);
+                });
+            }
+        }
+        return new Fragment(triples, to - from);
+    }
+
+    /**
+     * @return number of keys smaller than the given one
+     */
+    private static long rank(MVMap<String, String> map, String key) {
+        final long index = map.getKeyIndex(key);
+        return index >= 0L ? index : -index - 1L;
+    }
+
+    /**
+     * Reads the triples of a record in RDF/XML, see {@link RdfXmlParser}.
+     */
+    public List<Triple> parse(String id, String record) throws XMLStreamException {
+        return parser.parse(id, record);
+    }
+
+    /**
+     * @return the IRI in N-Triples syntax
+     */
+    public static String iri(String value) {
+        final StringBuilder sb = new StringBuilder(value.length() + 2).append('<');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c <= ' ' || "<>\"{}|^`\\".indexOf(c) >= 0) {
+                sb.append(String.format("\\u%04X", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('>').toString();
+    }
+
+    /**
+     * @param lang     language tag or null
+     * @param datatype datatype IRI or null
+     * @return the literal in N-Triples syntax
+     */
+    public static String literal(String value, String lang, String datatype) {
+        final StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < ' ') {
+                        sb.append(String.format("\\u%04X", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+        if (lang != null && !lang.isEmpty()) {
+            sb.append('@').append(lang.toLowerCase(Locale.ROOT));
+        } else if (datatype != null && !datatype.isEmpty() && !datatype.equals(XSD_STRING)) {
+            sb.append("^^").append(iri(datatype));
+        }
+        return sb.toString();
+    }
+}